@@ -0,0 +1,114 @@
+package com.hikvision.hbfa.sf.dag;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DAGTask}在不同形状和规模的图上的调度开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DAGTaskBenchmark {
+
+    public enum Shape {
+        // 0 -> 1 -> 2 -> ...
+        CHAIN,
+        // 0 -> (1..n-2) -> n-1
+        FAN_OUT,
+        // 连续的菱形：a -> (b, c) -> d -> (e, f) -> g ...
+        DIAMOND,
+    }
+
+    @Param({"CHAIN", "FAN_OUT", "DIAMOND"})
+    Shape shape;
+
+    @Param({"10", "100", "1000"})
+    int size;
+
+    DAGGraph<Integer> graph;
+    ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        graph = graphOf(shape, size);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @TearDown
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 节点同步完成，只衡量调度本身
+     */
+    @Benchmark
+    public Map<Integer, Integer> sync() {
+        var task = new DAGTask<Integer, Integer>(graph,
+                (k, results) -> CompletableFuture.completedFuture(k + results.size()));
+        task.run();
+        return task.join();
+    }
+
+    /**
+     * 节点在线程池中完成，包含线程切换
+     */
+    @Benchmark
+    public Map<Integer, Integer> async() {
+        var task = new DAGTask<Integer, Integer>(graph,
+                (k, results) -> CompletableFuture.supplyAsync(() -> k + results.size(), executor));
+        task.run();
+        return task.join();
+    }
+
+
+    //
+
+    static DAGGraph<Integer> graphOf(Shape shape, int size) {
+        var nodes = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            nodes.add(i);
+        }
+        var edges = new ArrayList<Map.Entry<Integer, Integer>>(size * 2);
+        switch (shape) {
+            case CHAIN:
+                chain(edges, 0, size);
+                break;
+            case FAN_OUT:
+                for (int i = 1; i < size - 1; i++) {
+                    edges.add(Map.entry(0, i));
+                    edges.add(Map.entry(i, size - 1));
+                }
+                break;
+            case DIAMOND:
+                int top = 0;
+                for (; top + 3 < size; top += 3) {
+                    edges.add(Map.entry(top, top + 1));
+                    edges.add(Map.entry(top, top + 2));
+                    edges.add(Map.entry(top + 1, top + 3));
+                    edges.add(Map.entry(top + 2, top + 3));
+                }
+                chain(edges, top, size);
+                break;
+        }
+        return new DAGGraph<>(nodes, edges);
+    }
+
+    private static void chain(List<Map.Entry<Integer, Integer>> edges, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            edges.add(Map.entry(i - 1, i));
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExpiringCache}多线程竞争下的set/get/del
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExpiringCacheBenchmark {
+
+    static final int KEYS = 1024;
+
+    ExpiringCache<String, Object> cache;
+
+    @Setup
+    public void setup() {
+        cache = new ExpiringCache<>(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @TearDown
+    public void shutdown() {
+        cache.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+        final String[] keys = new String[KEYS];
+        int cursor;
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < KEYS; i++) {
+                keys[i] = ValueUtil.newUUID();
+            }
+        }
+
+        String next() {
+            return keys[cursor++ & (KEYS - 1)];
+        }
+    }
+
+    /**
+     * 与任务缓存的用法一致：写入、读取、完成后删除
+     */
+    @Benchmark
+    public Object setGetDel(Keys keys) {
+        var key = keys.next();
+        cache.put(key, key, 0);
+        cache.get(key);
+        return cache.del(key);
+    }
+
+    @Benchmark
+    public Object get(Keys keys) {
+        return cache.get(keys.next());
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@link FutureUtil#collect}的收集开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FutureUtilBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int size;
+
+    List<CompletableFuture<Integer>> completed;
+
+    @Setup
+    public void setup() {
+        completed = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            completed.add(CompletableFuture.completedFuture(i));
+        }
+    }
+
+    /**
+     * 收集前已全部完成
+     */
+    @Benchmark
+    public List<Integer> collectCompleted() {
+        return FutureUtil.collect(completed, Collectors.toList()).join();
+    }
+
+    /**
+     * 收集后逐个完成，与BATCH节点的情形一致
+     */
+    @Benchmark
+    public List<Integer> collectPending() {
+        var futures = new ArrayList<CompletableFuture<Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        var result = FutureUtil.collect(futures, Collectors.toList());
+        for (int i = 0; i < size; i++) {
+            futures.get(i).complete(i);
+        }
+        return result.join();
+    }
+
+    /**
+     * 按下标收集，不经过Collector
+     */
+    @Benchmark
+    public List<Integer> collectIndexed() {
+        var futures = new ArrayList<CompletableFuture<Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        var result = FutureUtil.collect(futures);
+        for (int i = 0; i < size; i++) {
+            futures.get(i).complete(i);
+        }
+        return result.join();
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hikvision.hbfa.sf.util.ParameterUtil.*;
+
+/**
+ * {@link ParameterUtil#replaceAllParams}和{@link ParameterTemplate}在典型节点输入模板上的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParameterUtilBenchmark {
+
+    Map<String, Object> parameters;
+    ParameterTemplate template;
+    Map<String, Object> arguments;
+
+    @Setup
+    public void setup() {
+        parameters = Map.of(
+                "deviceId", "${task.input.device.id}",
+                "channel", "${task.input.device.channel}",
+                "image", Map.of(
+                        "url", "${detect.output.image.url}",
+                        "width", "${detect.output.image.width}",
+                        "height", "${detect.output.image.height}"
+                ),
+                "targets", "${detect.output.targets[?score > `0.5`].{id: id, label: label}}",
+                "labels", "${join(',', detect.output.targets[*].label)}",
+                "callback", "${submit.rest}",
+                "ids", List.of("${task.id}", "${id}", "${name}"),
+                "mode", "fast",
+                "options", Map.of("lang", "zh", "retries", 3)
+        );
+        template = ParameterTemplate.compile(parameters);
+
+        var targets = List.of(
+                Map.of("id", 1, "label", "person", "score", 0.91),
+                Map.of("id", 2, "label", "car", "score", 0.42),
+                Map.of("id", 3, "label", "bike", "score", 0.77)
+        );
+        arguments = Map.of(
+                KEY_TASK, Map.of(
+                        KEY_ID, ValueUtil.newUUID(),
+                        KEY_INPUT, Map.of("device", Map.of("id", "D-10086", "channel", 2))
+                ),
+                "detect", argumentMap(Map.of(
+                        "image", Map.of("url", "http://127.0.0.1/a.jpg", "width", 1920, "height", 1080),
+                        "targets", targets
+                ), null),
+                KEY_SUBMIT, Map.of("rest", Map.of("host", "127.0.0.1:9457", "path", "/v1/task/submit/x")),
+                KEY_ID, ValueUtil.newUUID(),
+                KEY_NAME, "recognize"
+        );
+    }
+
+    @Benchmark
+    public Map<String, Object> replaceAll() {
+        return replaceAllParams(parameters, arguments);
+    }
+
+    @Benchmark
+    public Map<String, Object> compiled() {
+        return template.apply(arguments);
+    }
+
+}
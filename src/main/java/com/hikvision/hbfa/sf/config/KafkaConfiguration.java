@@ -10,8 +10,8 @@ import org.springframework.context.annotation.Configuration;
 public class KafkaConfiguration {
 
     @Bean
-    KafkaPublisher kafkaPublisher(KafkaProperties properties) {
-        return new KafkaPublisher(properties);
+    KafkaPublisher kafkaPublisher(KafkaProperties properties, TaskProperties taskProperties) {
+        return new KafkaPublisher(properties, taskProperties.getKafkaProducers());
     }
 
 }
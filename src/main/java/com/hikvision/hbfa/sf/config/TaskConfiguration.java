@@ -1,65 +1,150 @@
 package com.hikvision.hbfa.sf.config;
 
 import com.hikvision.hbfa.sf.handler.dag.SequenceGenerator;
+import com.hikvision.hbfa.sf.handler.dag.SnowflakeGenerator;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGAsyncSubtask;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGCachedTask;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGWorkflow;
+import com.hikvision.hbfa.sf.handler.dag.impl.AsyncSubtaskJournal;
+import com.hikvision.hbfa.sf.util.EventLoopGroup;
 import com.hikvision.hbfa.sf.util.ExpiringCache;
-import com.hikvision.hbfa.sf.util.SimpleCache;
+import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.MeterUtil;
+import com.hikvision.hbfa.sf.util.NamedRegistry;
 import com.hikvision.hbfa.sf.util.TagThreadFactory;
 import com.hikvision.hbfa.sf.util.ValueUtil;
+import com.hikvision.hbfa.sf.util.WorkerPool;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
+@Slf4j
 @Configuration
 public class TaskConfiguration {
 
+    /**
+     * 工作线程池：脚本等耗CPU的处理，以及消息分发、接口提交等
+     */
     @Primary
     @Bean
-    ExecutorService taskExecutor(
+    WorkerPool taskExecutor(
             TaskProperties properties) {
         var pool = properties.getThreadPool();
-        return new ThreadPoolExecutor(pool.getThreads(), pool.getThreads(),
-                0L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(pool.getQueueSize()),
-                new TagThreadFactory("Task"));
+        var executor = new WorkerPool("Task", pool.getThreads(), pool.getQueueSize());
+        // 队列长度、活跃线程数等；准入失败和在调用线程中执行的次数
+        new ExecutorServiceMetrics(executor, "task", List.of()).bindTo(MeterUtil.registry());
+        MeterUtil.functionCounter("executor.rejected", executor,
+                WorkerPool::rejectedCount, "name", "task");
+        MeterUtil.functionCounter("executor.caller.runs", executor,
+                WorkerPool::callerRunsCount, "name", "task");
+        return executor;
+    }
+
+    /**
+     * 编排用的事件循环：DAG任务的派发和节点完成回调，每个任务固定在一个循环上
+     */
+    @Bean
+    EventLoopGroup taskLoops(
+            TaskProperties properties) {
+        var loop = properties.getEventLoop();
+        var loops = new EventLoopGroup("TaskLoop", loop.getThreads(), loop.getMaxPending());
+        MeterUtil.gauge("executor.pending", loops, EventLoopGroup::pending, "name", "loop");
+        MeterUtil.functionCounter("executor.rejected", loops,
+                EventLoopGroup::rejectedCount, "name", "loop");
+        return loops;
     }
 
 
+    /**
+     * 按时间排序的64位ID，节点号必须配置，单实例部署时可以不配置
+     */
     @Bean
-    SequenceGenerator<String> IDGenerator() {
-        return ValueUtil::newUUID;
+    SnowflakeGenerator snowflakeGenerator(
+            TaskProperties properties) {
+        int nodeId = properties.getNodeId();
+        if (nodeId < 0) {
+            if (!properties.isSingleInstance()) {
+                throw new IllegalStateException(
+                        "task.node-id not set, required unless task.single-instance=true");
+            }
+            nodeId = 0;
+        }
+        return new SnowflakeGenerator(nodeId);
     }
 
+    /**
+     * 任务、子任务ID：{@link SnowflakeGenerator}的定长62进制形式，字符串顺序即创建顺序
+     */
     @Bean
-    SimpleCache<Object, DAGNode> nodeCache() {
-        return new SimpleCache<>();
+    SequenceGenerator<String> IDGenerator(
+            SnowflakeGenerator snowflakeGenerator) {
+        return () -> ValueUtil.toBase62(snowflakeGenerator.nextLong());
     }
 
     @Bean
-    SimpleCache<Object, DAGWorkflow> workflowCache() {
-        return new SimpleCache<>();
+    NamedRegistry<DAGNode> nodeRegistry() {
+        return new NamedRegistry<>(DAGNode::name, DAGNode::id);
     }
 
+    @Bean
+    NamedRegistry<DAGWorkflow> workflowRegistry() {
+        return new NamedRegistry<>(DAGWorkflow::name, DAGWorkflow::id);
+    }
+
+    // 过期处理被线程池拒绝后的重试间隔（毫秒）
+    private static final long EXPIRE_RETRY_MILLIS = 100;
+
+    /**
+     * 过期处理被工作线程池拒绝时用于延后重试，本身不执行过期处理
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    ScheduledExecutorService expireRetryScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(new TagThreadFactory("ExpireRetry", true));
+    }
+
+    /**
+     * 过期回调在时间轮线程中，整批转到任务线程池处理；线程池满时延后重试，不在时间轮线程中执行
+     */
     @Bean
     ExpiringCache<String, DAGAsyncSubtask> asyncSubtaskCache(
-            TaskProperties properties) {
-        return new ExpiringCache<>(
-                properties.getCacheExpires().toMillis());
+            TaskProperties properties, WorkerPool taskExecutor,
+            ScheduledExecutorService expireRetryScheduler,
+            AsyncSubtaskJournal asyncSubtaskJournal) {
+        var cache = new ExpiringCache<String, DAGAsyncSubtask>(
+                properties.getCacheExpires().toMillis(),
+                expired -> taskExecutor.executeLater(() -> {
+                    for (var e : expired) {
+                        var s = e.getValue().subtask();
+                        log.warn("Subtask-{}/Node-{} expired: {}",
+                                s.id(), s.node().name(), JsonUtil.lazyJson(asyncSubtaskJournal.inputOf(s)));
+                        e.getValue().expire();
+                    }
+                }, expireRetryScheduler, EXPIRE_RETRY_MILLIS));
+        MeterUtil.bindCache("subtask", cache);
+        return cache;
     }
 
     @Bean
     ExpiringCache<String, DAGCachedTask> taskCache(
-            TaskProperties properties) {
-        return new ExpiringCache<>(
-                properties.getCacheExpires().toMillis());
+            TaskProperties properties, WorkerPool taskExecutor,
+            ScheduledExecutorService expireRetryScheduler) {
+        var cache = new ExpiringCache<String, DAGCachedTask>(
+                properties.getCacheExpires().toMillis(),
+                expired -> taskExecutor.executeLater(() -> {
+                    for (var e : expired) {
+                        log.warn("Task-{} timeout, will cancel now", e.getKey());
+                        e.getValue().expire();
+                    }
+                }, expireRetryScheduler, EXPIRE_RETRY_MILLIS));
+        MeterUtil.bindCache("task", cache);
+        return cache;
     }
 
 
@@ -1,11 +1,18 @@
 package com.hikvision.hbfa.sf.config;
 
+import com.hikvision.hbfa.sf.kafka.KafkaSubscription;
+import com.hikvision.hbfa.sf.util.ConcurrencyLimiter;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import reactor.netty.http.HttpProtocol;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "task")
@@ -13,42 +20,190 @@ import java.time.Duration;
 @Setter
 public class TaskProperties {
 
-    // autoDeleteTask=false时有效，周期删除expireDays天以前的任务
+    // enableTaskLog=true时有效，周期删除expireDays天以前的执行记录（按天分区整个删除）
     private int expireDays = 7;     // 保存一个星期
 
+    // 任务和子任务的执行记录写入数据库，任务结束后仍可查询
     private boolean enableTaskLog = false;
 
+    private final LogWriter logWriter = new LogWriter();
+
+    private final Checkpoint checkpoint = new Checkpoint();
+
+    private final AsyncJournal asyncJournal = new AsyncJournal();
+
     // 消息重试次数
     private int queueRetries = 5;
 
+    // ID生成器的节点号（0~1023），多实例时必须不同；-1为未设置，只有单实例部署时允许，取0
+    private int nodeId = -1;
+
+    // 单实例部署，未设置节点号时才用到
+    private boolean singleInstance = false;
+
 
     private final TaskThreadPool threadPool = new TaskThreadPool();
 
+    private final TaskEventLoop eventLoop = new TaskEventLoop();
+
+    private final Admission admission = new Admission();
+
 
     private Duration cacheExpires = Duration.ofMinutes(1);
 
+    // 释放下游不再需要、也不是工作流输出的节点结果（verbose调用除外）
+    private boolean pruneResults = true;
+
+    // BATCH节点未配置maxConcurrency时，单次批量调用的并发上限
+    private int batchConcurrency = 100;
+
     private final Dispatcher dispatcher = new Dispatcher();
 
+    // REST节点的HTTP客户端：名字 -> 配置，节点config.client指定，未指定时使用default
+    private Map<String, HttpClientProfile> httpClients = new HashMap<>();
+
+    // KAFKA节点的生产者：名字 -> 配置，节点config.producer指定，未指定时使用default
+    private Map<String, KafkaProducerProfile> kafkaProducers = new HashMap<>();
+
 
     @Getter
     @Setter
     public static class TaskThreadPool {
-        // 任务线程池大小
+        // 工作线程池（脚本等耗CPU的处理）大小
         private int threads = 100;
-        // 任务线程池队列长度
+        // 工作线程池队列长度
         private int queueSize = 1000;
     }
 
+    @Getter
+    @Setter
+    public static class LogWriter {
+        // 执行记录队列长度，满了丢弃
+        private int queueSize = 10000;
+        // 每批写入的任务数
+        private int batchSize = 200;
+        // 攒批的最长时间
+        private Duration flushInterval = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Checkpoint {
+        // 实例标识，重启后恢复本实例未结束的任务；为空时取主机名
+        private String owner = "";
+        // 检查点队列长度，满了丢弃（对应节点重启后重新执行）
+        private int queueSize = 10000;
+        // 每批写入的检查点数
+        private int batchSize = 500;
+        // 攒批的最长时间，也是重启时可能重新执行的节点完成的时间窗口
+        private Duration flushInterval = Duration.ofMillis(100);
+    }
+
+    @Getter
+    @Setter
+    public static class AsyncJournal {
+        // 等待回传的异步子任务参数写入内存映射的日志文件，不占用堆
+        private boolean enabled = false;
+        // 日志目录
+        private String dir = "data/async-journal";
+        // 段文件大小，也是单个子任务记录的上限
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+    }
+
+    @Getter
+    @Setter
+    public static class TaskEventLoop {
+        // 编排用的事件循环数，0-取CPU核数
+        private int threads = 0;
+        // 单个事件循环积压的上限，超过后新任务被拒绝
+        private int maxPending = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class Admission {
+        // 上限算法：FIXED、AIMD、GRADIENT（后两种按任务耗时自适应，maxInFlight是上界）
+        private ConcurrencyLimiter.Mode mode = ConcurrencyLimiter.Mode.FIXED;
+        // 全局处理中任务数的上限，0-不限制
+        private int maxInFlight = 0;
+        // 每个工作流处理中任务数的上限，0-不限制
+        private int workflowMaxInFlight = 0;
+        // 单独配置的工作流上限，key为工作流名
+        private Map<String, Integer> workflows = new HashMap<>();
+        // 自适应时上限的下界
+        private int minInFlight = 10;
+        // 超过上限时排队等待的时间，0-立即拒绝
+        private Duration maxWait = Duration.ZERO;
+        // 排队任务数的上限
+        private int maxQueue = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class HttpClientProfile {
+        // 每个目标地址的连接数上限
+        private int maxConnections = 500;
+        // 每个目标地址等待连接的请求数上限，超过直接失败；-1不限制
+        private int pendingAcquireMaxCount = 1000;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+        // 空闲、存活超过后关闭连接，0不限制
+        private Duration maxIdleTime = Duration.ofMinutes(1);
+        private Duration maxLifeTime = Duration.ZERO;
+        // 后台关闭过期连接的间隔，0只在获取连接时检查
+        private Duration evictInterval = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        // 响应超时，节点config.timeout优先
+        private Duration responseTimeout = Duration.ofHours(1);
+        // HTTP11、H2（TLS）、H2C（明文），多个时协商
+        private List<HttpProtocol> protocols = List.of(HttpProtocol.HTTP11);
+        private boolean compress = true;
+    }
+
+    @Getter
+    @Setter
+    public static class KafkaProducerProfile {
+        // 以下为空时使用spring.kafka.producer的配置
+        // none、gzip、snappy、lz4、zstd
+        private String compressionType;
+        private Duration linger;
+        private DataSize batchSize;
+        private DataSize bufferMemory;
+        // send等待缓冲区、元数据的最长时间（max.block.ms），超过后返回BUSY，不长时间阻塞调用线程
+        private Duration maxBlock = Duration.ofMillis(500);
+        // 其它生产者参数，优先级最高
+        private Map<String, String> properties = new HashMap<>();
+        // 未确认的记录数上限，超过后排队等待maxWait，仍没有许可则返回BUSY；0-不限制
+        private int maxInFlight = 10000;
+        private Duration maxWait = Duration.ofSeconds(1);
+        // 排队记录数的上限
+        private int maxQueue = 1000;
+    }
+
     @Getter
     @Setter
     public static class Dispatcher {
 
+        // kafka按key顺序消费时，并行处理的key上限
         private int messageConcurrency = 20;
 
         private int messagePullInterval = 1000;
 
         private boolean pollingMessage = false;
 
+        // kafka流水线消费：未提交记录的上限，0-不启用，处理完一批再同步提交
+        private int maxInFlight = 0;
+        // kafka流水线消费：offset提交间隔
+        private Duration commitInterval = Duration.ofSeconds(1);
+        // kafka流水线消费：完成的记录达到这个数量也提交
+        private int commitRecords = 500;
+
+        public KafkaSubscription.Pipeline pipeline() {
+            if (maxInFlight <= 0) {
+                return null;
+            }
+            return new KafkaSubscription.Pipeline(maxInFlight, commitInterval, commitRecords);
+        }
+
     }
 
 }
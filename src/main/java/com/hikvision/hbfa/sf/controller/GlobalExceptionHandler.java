@@ -1,6 +1,8 @@
 package com.hikvision.hbfa.sf.controller;
 
+import com.hikvision.hbfa.sf.entity.enumeration.ResultCode;
 import com.hikvision.hbfa.sf.ex.NotFoundException;
+import com.hikvision.hbfa.sf.handler.dag.BusyException;
 import com.hikvision.hbfa.sf.handler.dag.CallTimeoutException;
 import io.burt.jmespath.function.FunctionCallException;
 import io.burt.jmespath.function.FunctionConfigurationException;
@@ -68,6 +70,13 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(REQUEST_TIMEOUT).body(e.getMessage());
     }
 
+    @ExceptionHandler(BusyException.class)
+    public Object busy(BusyException e) {
+        log.warn("busy: {}", e.getMessage());
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .body(BaseResult.error(ResultCode.BUSY.getValue(), e.getMessage()));
+    }
+
     @ExceptionHandler(ConnectException.class)
     public Object connect(ConnectException e) {
         log.error("client connect error", e);
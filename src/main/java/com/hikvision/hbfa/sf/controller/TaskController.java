@@ -2,9 +2,11 @@ package com.hikvision.hbfa.sf.controller;
 
 import com.hikvision.hbfa.sf.dto.TaskStartDto;
 import com.hikvision.hbfa.sf.entity.json.ObjectMap;
+import com.hikvision.hbfa.sf.handler.dag.BusyException;
 import com.hikvision.hbfa.sf.handler.dag.DAGTaskService;
 import com.hikvision.hbfa.sf.service.TaskSourceService;
 import com.hikvision.hbfa.sf.util.ParameterUtil;
+import com.hikvision.hbfa.sf.util.WorkerPool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.validation.annotation.Validated;
@@ -13,7 +15,6 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 @Slf4j
@@ -28,7 +29,7 @@ public class TaskController {
     TaskSourceService taskSourceService;
 
     @Autowired
-    ExecutorService taskExecutor;
+    WorkerPool taskExecutor;
 
 
     @PostMapping("start")
@@ -44,18 +45,33 @@ public class TaskController {
     }
 
 
+    /**
+     * 在网络事件循环中调用，线程池满时以{@link BusyException}结束（503），不在调用线程中执行
+     */
     @RequestMapping(ParameterUtil.SUBMIT_PATH + "{id}")
     public CompletableFuture<?> submit(@PathVariable String id,
                                        @RequestBody @Valid @NotNull ObjectMap dto) {
-        return CompletableFuture.runAsync(() -> {
-            log.debug("async submit Subtask-{} through api: {}", id, dto);
-            dagTaskService.submitAsync(id, dto);
-        }, taskExecutor);
+        var future = new CompletableFuture<Void>();
+        var accepted = taskExecutor.tryExecute(() -> {
+            try {
+                log.debug("async submit Subtask-{} through api: {}", id, dto);
+                dagTaskService.submitAsync(id, dto);
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        if (!accepted) {
+            future.completeExceptionally(new BusyException(
+                    "Subtask-" + id + " rejected: worker pool busy"));
+        }
+        return future;
     }
 
     @GetMapping("/detail/{key}")
-    public BaseResult<?> getTask(@PathVariable String key) {
-        var task = dagTaskService.getTask(key);
+    public BaseResult<?> getTask(@PathVariable String key,
+                                 @RequestParam(required = false) boolean verbose) {
+        var task = dagTaskService.getTask(key, verbose);
         return BaseResult.success(task);
     }
 
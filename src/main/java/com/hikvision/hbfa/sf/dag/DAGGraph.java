@@ -1,7 +1,9 @@
 package com.hikvision.hbfa.sf.dag;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -24,6 +26,14 @@ public class DAGGraph<Key> {
     private final Map<Key, Set<Key>> forwardIndex;
     private final Map<Key, Set<Key>> reverseIndex;
 
+    // 编译后的执行计划：节点按拓扑序映射为连续的int下标
+    private final List<Key> indexedNodes;
+    private final Map<Key, Integer> indexMap;
+    private final int[] inDegrees;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private final int[] headIndexes;
+
     public DAGGraph(Collection<Key> allNodes,
                     Iterable<Map.Entry<Key, Key>> edges) {
         if (null == allNodes || allNodes.isEmpty()) {
@@ -53,7 +63,8 @@ public class DAGGraph<Key> {
             forward.computeIfAbsent(from, DAGUtil.hashSet()).add(to);
             reverse.computeIfAbsent(to, DAGUtil.hashSet()).add(from);
         }
-        if (!DAGUtil.checkAcyclic(this.allNodes, forward, reverse)) {
+        var sorted = DAGUtil.topologicalSort(this.allNodes, forward, reverse);
+        if (!sorted.getKey()) {
             throw new IllegalArgumentException("Serious error: graph has cycle！");
         }
 
@@ -61,6 +72,30 @@ public class DAGGraph<Key> {
         this.reverseIndex = DAGUtil.toImmutable(reverse);
         this.tails = Set.copyOf(DAGUtil.subtract(this.allNodes, this.forwardIndex.keySet()));
         this.heads = Set.copyOf(DAGUtil.subtract(this.allNodes, this.reverseIndex.keySet()));
+
+        // 编译执行计划
+        this.indexedNodes = List.copyOf(sorted.getValue());
+        int size = this.indexedNodes.size();
+        var indexMap = new HashMap<Key, Integer>(size);
+        for (int i = 0; i < size; i++) {
+            indexMap.put(this.indexedNodes.get(i), i);
+        }
+        this.indexMap = Map.copyOf(indexMap);
+        this.inDegrees = new int[size];
+        this.successors = new int[size][];
+        this.predecessors = new int[size][];
+        int headCount = 0;
+        for (int i = 0; i < size; i++) {
+            var key = this.indexedNodes.get(i);
+            this.successors[i] = DAGUtil.toIndexes(next(key), indexMap);
+            this.predecessors[i] = DAGUtil.toIndexes(prev(key), indexMap);
+            this.inDegrees[i] = this.predecessors[i].length;
+            if (this.inDegrees[i] == 0) headCount++;
+        }
+        this.headIndexes = new int[headCount];
+        for (int i = 0, j = 0; i < size; i++) {
+            if (this.inDegrees[i] == 0) this.headIndexes[j++] = i;
+        }
     }
 
 
@@ -86,6 +121,91 @@ public class DAGGraph<Key> {
         return forwardIndex.getOrDefault(key, Set.of());
     }
 
+    //
+    // 执行计划：下标按拓扑排序分配，头节点在前
+    //
+
+    public int size() {
+        return indexedNodes.size();
+    }
+
+    /**
+     * @return 节点的下标，不存在返回-1
+     */
+    public int indexOf(Key key) {
+        var i = indexMap.get(key);
+        return null == i ? -1 : i;
+    }
+
+    public Key keyOf(int index) {
+        return indexedNodes.get(index);
+    }
+
+    /**
+     * 按下标排列的节点
+     */
+    public List<Key> indexedNodes() {
+        return indexedNodes;
+    }
+
+    // 以下数组共享，调用方不可修改
+
+    int[] inDegrees() {
+        return inDegrees;
+    }
+
+    int[] successors(int index) {
+        return successors[index];
+    }
+
+    int[] predecessors(int index) {
+        return predecessors[index];
+    }
+
+    int[] headIndexes() {
+        return headIndexes;
+    }
+
+    /**
+     * 关键路径：从最晚完成的节点开始，逐个回溯到最晚完成的前驱（即最后让它就绪的那个）
+     *
+     * @param finishTimes 按下标的完成时间，0表示未完成
+     * @return 从头节点开始的下标，没有完成的节点则为空
+     */
+    int[] criticalPath(long[] finishTimes) {
+        int end = latest(finishTimes, null);
+        if (end < 0) {
+            return new int[0];
+        }
+        var path = new ArrayList<Integer>();
+        for (int i = end; i >= 0; i = latest(finishTimes, predecessors[i])) {
+            path.add(i);
+        }
+        var result = new int[path.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = path.get(result.length - 1 - i);
+        }
+        return result;
+    }
+
+    /**
+     * @param indexes 候选的下标，null则为全部
+     * @return 完成时间最晚的下标，都未完成返回-1
+     */
+    private static int latest(long[] finishTimes, int[] indexes) {
+        int found = -1;
+        long max = 0;
+        int n = null == indexes ? finishTimes.length : indexes.length;
+        for (int k = 0; k < n; k++) {
+            int i = null == indexes ? k : indexes[k];
+            if (finishTimes[i] != 0 && (found < 0 || finishTimes[i] - max > 0)) {
+                found = i;
+                max = finishTimes[i];
+            }
+        }
+        return found;
+    }
+
     //
 
     public void bfs(Consumer<Key> consumer) {
@@ -40,6 +40,13 @@ public class DAGResult<D> {
         return Map.of("success", false, "error", error);
     }
 
+    /**
+     * @return 去掉数据，只保留状态和错误信息
+     */
+    public DAGResult<D> pruned() {
+        return null == data ? this : new DAGResult<>(success, null, error);
+    }
+
     //
 
     public static <D> DAGResult<D> success(D output) {
@@ -6,9 +6,23 @@ import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
+/**
+ * <h3>DAG任务</h3>
+ * <div>按{@link DAGGraph}编译好的执行计划运行：每个节点记录剩余未完成的前驱数，
+ * 前驱全部完成（计数归零）时立即派发该节点，结果按下标保存。</div>
+ * <div>可选的结果裁剪：节点的后继全部派发（都已读取其结果）后，
+ * 不需要保留的结果用裁剪函数替换（比如去掉输出数据），以降低长链路大数据量任务的内存占用。</div>
+ * <div>可选的回调执行器：异步完成的节点在执行器中推进，用单线程的事件循环时任务的状态维护都在同一个线程上。</div>
+ * <div>可以在启动前恢复已完成节点的结果（{@link #restore(Map)}），启动时只派发剩余的节点。</div>
+ */
 final
 public class DAGTask<Key, Result>
         extends CompletableFuture<Map<Key, Result>>
@@ -33,91 +47,292 @@ public class DAGTask<Key, Result>
             CompletableFuture<Result>> handler;
 
     // 运行状态Future
-    private final Map<Key, CompletableFuture<?>> futures =
-            new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<CompletableFuture<Result>> futures;
     // 执行结果集
-    private final Map<Key, Result> results =
-            new ConcurrentHashMap<>();
-    private final Map<Key, Result> immutableResults =
-            Collections.unmodifiableMap(results);
+    private final AtomicReferenceArray<Result> results;
+    private final Map<Key, Result> immutableResults = new ResultView();
+    // 每个节点剩余未完成的前驱数
+    private final AtomicIntegerArray remains;
+    // 未完成的节点数
+    private final AtomicInteger pending;
     // 是否已经启动
     private volatile boolean started = false;
+    // 是否恢复过结果
+    private boolean restored = false;
+
+    // 结果裁剪，pruner为null则不裁剪
+    private final UnaryOperator<Result> pruner;
+    // 可以裁剪的节点
+    private final boolean[] prunable;
+    // 每个节点还未读取其结果的后继数
+    private final AtomicIntegerArray readers;
+    // 保留完整结果的节点数及其峰值
+    private final AtomicInteger retained = new AtomicInteger();
+    private final AtomicInteger maxRetained = new AtomicInteger();
+
+    // 各节点就绪、派发、完成的时间（System.nanoTime），0表示未发生；
+    // 任务完成后读取是安全的，运行中读取只用于展示
+    private final long[] readyAt, dispatchedAt, completedAt;
+    private volatile long startedAt;
+
+    // 节点完成回调的执行器，null则在完成节点的线程中执行
+    private final Executor executor;
 
 
     public DAGTask(DAGGraph<Key> graph,
                    BiFunction<Key, Map<Key, Result>,
                            CompletableFuture<Result>> handler) {
+        this(graph, handler, null, null, null);
+    }
+
+    /**
+     * @param retain 需要保留完整结果的节点，null则全部保留
+     * @param pruner 裁剪函数，null则不裁剪
+     */
+    public DAGTask(DAGGraph<Key> graph,
+                   BiFunction<Key, Map<Key, Result>,
+                           CompletableFuture<Result>> handler,
+                   Predicate<Key> retain,
+                   UnaryOperator<Result> pruner) {
+        this(graph, handler, retain, pruner, null);
+    }
+
+    /**
+     * @param retain   需要保留完整结果的节点，null则全部保留
+     * @param pruner   裁剪函数，null则不裁剪
+     * @param executor 节点完成回调（结果保存、后继派发）的执行器，
+     *                 单线程执行器可以把任务的状态维护固定在一个线程上；null则在完成节点的线程中执行
+     */
+    public DAGTask(DAGGraph<Key> graph,
+                   BiFunction<Key, Map<Key, Result>,
+                           CompletableFuture<Result>> handler,
+                   Predicate<Key> retain,
+                   UnaryOperator<Result> pruner,
+                   Executor executor) {
         this.graph = Objects.requireNonNull(graph);
         this.handler = Objects.requireNonNull(handler);
+        this.executor = executor;
 
+        int size = graph.size();
+        this.futures = new AtomicReferenceArray<>(size);
+        this.results = new AtomicReferenceArray<>(size);
+        this.remains = new AtomicIntegerArray(graph.inDegrees());
+        this.pending = new AtomicInteger(size);
+        this.readyAt = new long[size];
+        this.dispatchedAt = new long[size];
+        this.completedAt = new long[size];
+
+        if (null == retain || null == pruner) {
+            this.pruner = null;
+            this.prunable = null;
+            this.readers = null;
+        } else {
+            this.pruner = pruner;
+            this.prunable = new boolean[size];
+            var outDegrees = new int[size];
+            for (int i = 0; i < size; i++) {
+                prunable[i] = !retain.test(graph.keyOf(i));
+                outDegrees[i] = graph.successors(i).length;
+            }
+            this.readers = new AtomicIntegerArray(outDegrees);
+        }
     }
 
-    private Map<Key, Result> dependentResults(Key key) {
-        var prev = graph.prev(key);
-        if (prev.isEmpty()) {
+    private Map<Key, Result> dependentResults(int index) {
+        var prev = graph.predecessors(index);
+        if (prev.length == 0) {
             return Map.of();
         }
 
-        var resultMap = new HashMap<Key, Result>(prev.size());
-        for (Key k : prev) {
-            var v = results.get(k);
+        var resultMap = new HashMap<Key, Result>(prev.length);
+        for (int i : prev) {
+            var v = results.get(i);
             if (null != v) {
-                resultMap.put(k, v);
+                resultMap.put(graph.keyOf(i), v);
             }
         }
         return resultMap;
     }
 
-    private CompletableFuture<?> execHandler(Key key) {
-        return handler.apply(key, dependentResults(key))
-                .thenAccept(r -> this.results.put(key, r));
+    /**
+     * 派发一个节点
+     *
+     * @return 节点的Future，任务已结束或者派发失败时返回null
+     */
+    private CompletableFuture<Result> dispatch(int index) {
+        if (isDone()) {
+            return null;
+        }
+
+        CompletableFuture<Result> future;
+        try {
+            var dependents = dependentResults(index);
+            releaseReaders(index);
+            dispatchedAt[index] = nanoTime();
+            future = handler.apply(graph.keyOf(index), dependents);
+        } catch (Throwable e) {
+            completeExceptionally(e);
+            return null;
+        }
+        futures.set(index, future);
+        if (isDone()) {
+            // 派发过程中任务被取消
+            future.cancel(false);
+            return null;
+        }
+        return future;
     }
 
-    private CompletableFuture<?> execOne(Key key) {
-        return futures.computeIfAbsent(key, this::execHandler);
+    /**
+     * 派发就绪的节点：同步完成的节点就地推进后继，避免长链路递归过深
+     */
+    private void drain(IntStack ready) {
+        while (!ready.isEmpty()) {
+            int index = ready.pop();
+            var future = dispatch(index);
+            if (null == future) {
+                continue;
+            }
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                release(index, future.getNow(null), ready);
+            } else if (null == executor) {
+                future.whenComplete((r, e) -> onComplete(index, r, e));
+            } else {
+                future.whenCompleteAsync((r, e) -> onComplete(index, r, e), executor);
+            }
+        }
     }
 
-    private CompletableFuture<?> execBatch(Collection<Key> keys) {
-        var futures = keys.stream().map(this::execDependencies)
-                .toArray(CompletableFuture[]::new);
-        return CompletableFuture.allOf(futures);
+    /**
+     * 保存结果并将前驱全部完成的后继放入就绪栈
+     */
+    private void release(int index, Result result, IntStack ready) {
+        long now = nanoTime();
+        completedAt[index] = now;
+        if (null != pruner && prunable[index] && graph.successors(index).length == 0) {
+            // 没有后继读取
+            results.set(index, pruner.apply(result));
+        } else {
+            results.set(index, result);
+            maxRetained.accumulateAndGet(retained.incrementAndGet(), Math::max);
+        }
+        for (int next : graph.successors(index)) {
+            // 最后一个前驱完成时派发
+            if (remains.decrementAndGet(next) == 0) {
+                readyAt[next] = now;
+                ready.push(next);
+            }
+        }
+        if (pending.decrementAndGet() == 0) {
+            complete(immutableResults);
+        }
     }
 
-    private CompletableFuture<?> execDependencies(Key key) {
-        var dependencies = graph.prev(key);
-        if (dependencies.isEmpty()) {
-            return execOne(key);
+    /**
+     * 节点派发时已经复制了前驱的结果，最后一个后继派发后裁剪前驱的结果
+     */
+    private void releaseReaders(int index) {
+        if (null == pruner) return;
+        for (int prev : graph.predecessors(index)) {
+            if (readers.decrementAndGet(prev) == 0 && prunable[prev]) {
+                var r = results.get(prev);
+                if (null != r) {
+                    results.set(prev, pruner.apply(r));
+                    retained.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void onComplete(int index, Result result, Throwable e) {
+        if (null != e) {
+            onError(e);
+            return;
+        }
+        var ready = new IntStack(graph.successors(index).length);
+        release(index, result, ready);
+        drain(ready);
+    }
+
+    private void onError(Throwable e) {
+        if (e instanceof CompletionException && null != e.getCause()) {
+            e = e.getCause();
+        }
+        if (e instanceof CancellationException) {
+            cancel(false);
         } else {
-            return execBatch(dependencies)
-                    .thenCompose(v -> execOne(key));
+            completeExceptionally(e);
         }
     }
 
     private void execute() {
         try {
-            execBatch(graph.tails()).whenComplete((v, e) -> {
-                if (null == e) {
-                    complete(results);
-                } else {
-                    if (e instanceof CancellationException) {
-                        cancel(false);
-                    } else if (e instanceof CompletionException) {
-                        var ex = e.getCause();
-                        if (ex instanceof CancellationException) {
-                            cancel(false);
-                        } else {
-                            completeExceptionally(e);
-                        }
-                    } else {
-                        completeExceptionally(e);
+            long now = nanoTime();
+            startedAt = now;
+            if (restored && pending.get() == 0) {
+                complete(immutableResults);
+                return;
+            }
+            IntStack ready;
+            if (!restored) {
+                var heads = graph.headIndexes();
+                ready = new IntStack(heads.length);
+                for (int i = heads.length - 1; i >= 0; i--) {
+                    readyAt[heads[i]] = now;
+                    ready.push(heads[i]);
+                }
+            } else {
+                // 未完成、前驱全部完成的节点
+                ready = new IntStack(graph.size());
+                for (int i = graph.size() - 1; i >= 0; i--) {
+                    if (null == results.get(i) && remains.get(i) == 0) {
+                        readyAt[i] = now;
+                        ready.push(i);
                     }
                 }
-            });
+            }
+            drain(ready);
         } catch (Throwable e) {
             completeExceptionally(e);
         }
     }
 
+    /**
+     * 恢复已完成节点的结果（比如从检查点），必须在{@link #run()}之前调用；
+     * 不在图中的节点忽略。恢复的节点不再派发，启动时派发前驱全部完成的剩余节点
+     *
+     * @param completed 已完成节点的结果
+     */
+    public void restore(Map<Key, Result> completed) {
+        if (started) {
+            throw new IllegalStateException("task already started");
+        }
+        var indexes = new IntStack(completed.size());
+        for (var e : completed.entrySet()) {
+            int i = graph.indexOf(e.getKey());
+            if (i < 0 || null == e.getValue() || null != results.get(i)) {
+                continue;
+            }
+            results.set(i, e.getValue());
+            maxRetained.accumulateAndGet(retained.incrementAndGet(), Math::max);
+            pending.decrementAndGet();
+            for (int next : graph.successors(i)) {
+                remains.decrementAndGet(next);
+            }
+            indexes.push(i);
+        }
+        // 结果全部放好后再裁剪：已恢复的后继不会再读取前驱的结果
+        while (!indexes.isEmpty()) {
+            int i = indexes.pop();
+            releaseReaders(i);
+            if (null != pruner && prunable[i] && graph.successors(i).length == 0) {
+                results.set(i, pruner.apply(results.get(i)));
+                retained.decrementAndGet();
+            }
+        }
+        restored = true;
+    }
+
 
     public void run() {
         if (!STARTED.compareAndSet(this, false, true)) {
@@ -131,8 +346,11 @@ public class DAGTask<Key, Result>
     public boolean cancel(boolean mayInterruptIfRunning) {
         boolean canceled = super.cancel(mayInterruptIfRunning);
         if (canceled) {
-            for (CompletableFuture<?> future : futures.values()) {
-                future.cancel(mayInterruptIfRunning);
+            for (int i = 0; i < futures.length(); i++) {
+                var future = futures.get(i);
+                if (null != future) {
+                    future.cancel(mayInterruptIfRunning);
+                }
             }
         }
         return canceled;
@@ -146,4 +364,159 @@ public class DAGTask<Key, Result>
         return immutableResults;
     }
 
+    /**
+     * @return 启动时间（{@link System#nanoTime()}），未启动为0
+     */
+    public long startedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return 节点就绪（前驱全部完成）的时间，未发生为0
+     */
+    public long readyAt(Key key) {
+        int i = graph.indexOf(key);
+        return i < 0 ? 0 : readyAt[i];
+    }
+
+    /**
+     * @return 节点派发的时间，未发生为0
+     */
+    public long dispatchedAt(Key key) {
+        int i = graph.indexOf(key);
+        return i < 0 ? 0 : dispatchedAt[i];
+    }
+
+    /**
+     * @return 节点完成的时间，未发生为0
+     */
+    public long completedAt(Key key) {
+        int i = graph.indexOf(key);
+        return i < 0 ? 0 : completedAt[i];
+    }
+
+    /**
+     * @return 关键路径，从头节点开始；任务未完成时是到目前为止的
+     */
+    public List<Key> criticalPath() {
+        var path = graph.criticalPath(completedAt);
+        var keys = new ArrayList<Key>(path.length);
+        for (int i : path) {
+            keys.add(graph.keyOf(i));
+        }
+        return keys;
+    }
+
+    private static long nanoTime() {
+        // 0表示未发生，避开
+        long t = System.nanoTime();
+        return t == 0 ? 1 : t;
+    }
+
+    /**
+     * @return 当前保留完整结果的节点数
+     */
+    public int retainedResults() {
+        return retained.get();
+    }
+
+    /**
+     * @return 保留完整结果的节点数的峰值
+     */
+    public int maxRetainedResults() {
+        return maxRetained.get();
+    }
+
+
+    //
+
+    /**
+     * 结果数组的只读Map视图，不复制数据
+     */
+    private class ResultView extends AbstractMap<Key, Result> {
+
+        @Override
+        public Result get(Object key) {
+            @SuppressWarnings("unchecked")
+            int i = graph.indexOf((Key) key);
+            return i < 0 ? null : results.get(i);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return null != get(key);
+        }
+
+        @Override
+        public Set<Entry<Key, Result>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Key, Result>> iterator() {
+                    return new ResultIterator();
+                }
+
+                @Override
+                public int size() {
+                    int n = 0;
+                    for (int i = 0; i < results.length(); i++) {
+                        if (null != results.get(i)) n++;
+                    }
+                    return n;
+                }
+            };
+        }
+    }
+
+    private static final class IntStack {
+        private int[] elements;
+        private int size;
+
+        IntStack(int capacity) {
+            elements = new int[Math.max(capacity, 4)];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int e) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size << 1);
+            }
+            elements[size++] = e;
+        }
+
+        int pop() {
+            return elements[--size];
+        }
+    }
+
+    private class ResultIterator implements Iterator<Map.Entry<Key, Result>> {
+        private int cursor = -1;
+        private Result nextResult;
+
+        private void advance() {
+            while (null == nextResult && ++cursor < results.length()) {
+                nextResult = results.get(cursor);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            advance();
+            return null != nextResult;
+        }
+
+        @Override
+        public Map.Entry<Key, Result> next() {
+            advance();
+            if (null == nextResult) {
+                throw new NoSuchElementException();
+            }
+            var entry = Map.entry(graph.keyOf(cursor), nextResult);
+            nextResult = null;
+            return entry;
+        }
+    }
+
 }
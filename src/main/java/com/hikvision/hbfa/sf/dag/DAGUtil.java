@@ -27,6 +27,16 @@ class DAGUtil {
     }
 
 
+    public static <Key> int[] toIndexes(Set<Key> keys, Map<Key, Integer> indexMap) {
+        var indexes = new int[keys.size()];
+        int i = 0;
+        for (Key k : keys) {
+            indexes[i++] = indexMap.get(k);
+        }
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
     public static <Key> Map<Key, Set<Key>> toImmutable(Map<Key, Set<Key>> src) {
         var dst = new HashMap<>(src);
         for (var entry : dst.entrySet()) {
@@ -0,0 +1,33 @@
+package com.hikvision.hbfa.sf.dao;
+
+import com.hikvision.hbfa.sf.entity.AsyncCheckpoint;
+import com.hikvision.hbfa.sf.entity.NodeCheckpoint;
+import com.hikvision.hbfa.sf.entity.TaskCheckpoint;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TaskCheckpointDao {
+
+    void insertTasks(@Param("list") List<TaskCheckpoint> list);
+
+    /**
+     * 任务的检查点已删除（任务已结束）时忽略
+     */
+    void insertNodes(@Param("list") List<NodeCheckpoint> list);
+
+    /**
+     * 任务的检查点已删除（任务已结束）时忽略
+     */
+    void insertAsyncs(@Param("list") List<AsyncCheckpoint> list);
+
+    void deleteTasks(@Param("ids") Collection<String> ids);
+
+    List<TaskCheckpoint> listTasks(@Param("owner") String owner);
+
+    List<NodeCheckpoint> listNodes(@Param("taskId") String taskId);
+
+    List<AsyncCheckpoint> listAsyncs(@Param("taskId") String taskId);
+
+}
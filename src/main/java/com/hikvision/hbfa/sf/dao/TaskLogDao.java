@@ -0,0 +1,33 @@
+package com.hikvision.hbfa.sf.dao;
+
+import com.hikvision.hbfa.sf.entity.SubtaskLog;
+import com.hikvision.hbfa.sf.entity.TaskLog;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface TaskLogDao {
+
+    void insertTasks(@Param("list") List<TaskLog> list);
+
+    void insertSubtasks(@Param("list") List<SubtaskLog> list);
+
+    TaskLog find(String id);
+
+    List<SubtaskLog> listSubtasks(@Param("taskId") String taskId,
+                                  @Param("createdAt") Instant createdAt);
+
+    /**
+     * 表名、分区名由调用方生成，不能来自外部输入
+     */
+    void createPartition(@Param("table") String table,
+                         @Param("name") String name,
+                         @Param("from") String from,
+                         @Param("to") String to);
+
+    List<String> listPartitions(@Param("table") String table);
+
+    void dropPartition(@Param("name") String name);
+
+}
@@ -2,15 +2,16 @@ package com.hikvision.hbfa.sf.dispatch;
 
 
 import com.hikvision.hbfa.sf.config.KafkaProperties;
+import com.hikvision.hbfa.sf.config.TaskProperties;
 import com.hikvision.hbfa.sf.entity.Node;
-import com.hikvision.hbfa.sf.entity.json.ObjectMap;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
 import com.hikvision.hbfa.sf.handler.dag.DAGTaskService;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
 import com.hikvision.hbfa.sf.kafka.KafkaRecvHandler;
 import com.hikvision.hbfa.sf.kafka.KafkaSubscription;
 import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.NamedRegistry;
 import com.hikvision.hbfa.sf.util.ParameterUtil;
-import com.hikvision.hbfa.sf.util.SimpleCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -29,33 +30,37 @@ import java.util.concurrent.ExecutorService;
  */
 @Slf4j
 @Component
-public class SubtaskSubmitSubscriber implements KafkaRecvHandler<Long, ObjectMap> {
+public class SubtaskSubmitSubscriber implements KafkaRecvHandler<Long, LazyJsonObject> {
 
     private final KafkaProperties properties;
+    private final TaskProperties taskProperties;
 
     private final DAGTaskService dagTaskService;
 
-    private final SimpleCache<Object, DAGNode> nodeCache;
+    private final NamedRegistry<DAGNode> nodeRegistry;
     private final ExecutorService taskExecutor;
 
     public SubtaskSubmitSubscriber(KafkaProperties properties,
+                                   TaskProperties taskProperties,
                                    DAGTaskService dagTaskService,
-                                   SimpleCache<Object, DAGNode> nodeCache,
+                                   NamedRegistry<DAGNode> nodeRegistry,
                                    ExecutorService taskExecutor) {
         this.properties = properties;
+        this.taskProperties = taskProperties;
         this.dagTaskService = dagTaskService;
-        this.nodeCache = nodeCache;
+        this.nodeRegistry = nodeRegistry;
         this.taskExecutor = taskExecutor;
     }
 
-    private KafkaSubscription<Long, ObjectMap> subscription;
+    private KafkaSubscription<Long, LazyJsonObject> subscription;
 
     @PostConstruct
     public void start() {
         subscription = new KafkaSubscription<>(
                 properties.buildConsumerProperties(),
-                ObjectMap.class, this,
-                Duration.ofSeconds(1), 3, "Subtask");
+                LazyJsonObject.class, this,
+                Duration.ofSeconds(1), 3, "Subtask",
+                taskProperties.getDispatcher().pipeline());
         subscription.start();
     }
 
@@ -76,8 +81,8 @@ public class SubtaskSubmitSubscriber implements KafkaRecvHandler<Long, ObjectMap
 
 
     @Override
-    public CompletableFuture<?> receive(Long nodeId, ObjectMap output) {
-        var node = nodeCache.get(nodeId);
+    public CompletableFuture<?> receive(Long nodeId, LazyJsonObject output) {
+        var node = nodeRegistry.getById(nodeId);
         log.debug("receive Node-{} submit: {}", node.name(), JsonUtil.lazyJson(output));
 
         var arg = ParameterUtil.readParam(output, node.submitId());
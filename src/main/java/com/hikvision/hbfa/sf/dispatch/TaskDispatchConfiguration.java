@@ -1,5 +1,6 @@
 package com.hikvision.hbfa.sf.dispatch;
 
+import com.hikvision.hbfa.sf.handler.dag.DAGTaskService;
 import com.hikvision.hbfa.sf.service.impl.NodeServiceImpl;
 import com.hikvision.hbfa.sf.service.impl.TaskSourceServiceImpl;
 import com.hikvision.hbfa.sf.service.impl.WorkflowServiceImpl;
@@ -28,6 +29,8 @@ public class TaskDispatchConfiguration implements ApplicationRunner {
     private WorkflowServiceImpl workflowService;
     @Autowired
     private TaskSourceServiceImpl taskSourceService;
+    @Autowired
+    private DAGTaskService dagTaskService;
 
     @Autowired
     private ExecutorService taskExecutor;
@@ -40,6 +43,13 @@ public class TaskDispatchConfiguration implements ApplicationRunner {
                 () -> nodeService.initNodes(),
                 () -> workflowService.initWorkflows()),
                 taskExecutor).join();
+        // 节点和工作流就绪后，先于任务源恢复未结束的持久化任务
+        try {
+            int resumed = dagTaskService.resumeTasks();
+            log.info("{} durable tasks resumed", resumed);
+        } catch (Exception e) {
+            log.error("resume durable tasks error", e);
+        }
         taskSourceService.initTaskSources();
     }
 
@@ -4,6 +4,7 @@ import com.hikvision.hbfa.sf.entity.TaskSource;
 import com.hikvision.hbfa.sf.entity.enumeration.TaskSourceStatus;
 import com.hikvision.hbfa.sf.entity.enumeration.TaskSourceType;
 import com.hikvision.hbfa.sf.handler.dag.DAGTaskService;
+import com.hikvision.hbfa.sf.handler.dag.impl.TaskAdmission;
 import com.hikvision.hbfa.sf.util.TypedBeanManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -20,11 +21,14 @@ public class TaskSourceDispatcherService extends TypedBeanManager<TaskSourceType
     private final Map<String, TaskSourceDispatcher> dispatchers = new ConcurrentHashMap<>();
 
     private final DAGTaskService dagTaskService;
+    private final TaskAdmission taskAdmission;
 
     public TaskSourceDispatcherService(List<TaskSourceDispatcherFactory> factories,
-                                       DAGTaskService dagTaskService) {
+                                       DAGTaskService dagTaskService,
+                                       TaskAdmission taskAdmission) {
         super("TaskSourceDispatcherFactories", factories);
         this.dagTaskService = dagTaskService;
+        this.taskAdmission = taskAdmission;
     }
 
 
@@ -33,9 +37,17 @@ public class TaskSourceDispatcherService extends TypedBeanManager<TaskSourceType
             log.info("start TaskSource-{}", name);
             var factory = this.get(source.getType());
             log.info("do create TaskSource-{}", name);
-            var dispatcher = factory.create(source, (param, input) -> {
-                log.debug("run task by TaskSource-{}", param.getName());
-                return dagTaskService.runTask(param.getWorkflow(), input, param.getTimeout());
+            var dispatcher = factory.create(source, new TaskSourceReceiver() {
+                @Override
+                public CompletableFuture<?> receive(SourceParam param, Map<String, Object> input) {
+                    log.debug("run task by TaskSource-{}", param.getName());
+                    return dagTaskService.runTask(param.getWorkflow(), input, param.getTimeout());
+                }
+
+                @Override
+                public boolean saturated(SourceParam param) {
+                    return taskAdmission.saturated(param.getWorkflow());
+                }
             });
             log.info("do start TaskSource-{}", name);
             dispatcher.start();
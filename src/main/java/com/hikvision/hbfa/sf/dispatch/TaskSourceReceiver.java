@@ -1,12 +1,18 @@
 package com.hikvision.hbfa.sf.dispatch;
 
-import com.hikvision.hbfa.sf.entity.json.ObjectMap;
-
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 @FunctionalInterface
 public interface TaskSourceReceiver {
 
-    CompletableFuture<?> receive(SourceParam param, ObjectMap input);
+    CompletableFuture<?> receive(SourceParam param, Map<String, Object> input);
+
+    /**
+     * @return 任务数达到上限，任务源应暂停拉取
+     */
+    default boolean saturated(SourceParam param) {
+        return false;
+    }
 
 }
@@ -1,8 +1,10 @@
 package com.hikvision.hbfa.sf.dispatch;
 
 import com.hikvision.hbfa.sf.config.KafkaProperties;
+import com.hikvision.hbfa.sf.config.TaskProperties;
 import com.hikvision.hbfa.sf.dto.TaskStartDto;
 import com.hikvision.hbfa.sf.handler.dag.DAGTaskService;
+import com.hikvision.hbfa.sf.handler.dag.impl.TaskAdmission;
 import com.hikvision.hbfa.sf.kafka.KafkaRecvHandler;
 import com.hikvision.hbfa.sf.kafka.KafkaSubscription;
 import com.hikvision.hbfa.sf.util.ParameterUtil;
@@ -21,12 +23,18 @@ public class TaskStartSubscriber implements
         KafkaRecvHandler<String, TaskStartDto> {
 
     private final KafkaProperties properties;
+    private final TaskProperties taskProperties;
     private final DAGTaskService dagTaskService;
+    private final TaskAdmission taskAdmission;
 
     public TaskStartSubscriber(KafkaProperties properties,
-                               DAGTaskService dagTaskService) {
+                               TaskProperties taskProperties,
+                               DAGTaskService dagTaskService,
+                               TaskAdmission taskAdmission) {
         this.properties = properties;
+        this.taskProperties = taskProperties;
         this.dagTaskService = dagTaskService;
+        this.taskAdmission = taskAdmission;
     }
 
 
@@ -38,7 +46,10 @@ public class TaskStartSubscriber implements
         subscription = new KafkaSubscription<>(
                 properties.buildConsumerProperties(),
                 TaskStartDto.class, this,
-                Duration.ofSeconds(1), 3, "TaskRun");
+                Duration.ofSeconds(1), 3, "TaskRun",
+                taskProperties.getDispatcher().pipeline());
+        // 全局任务数达到上限时暂停消费
+        subscription.pauseWhen(taskAdmission::saturated);
         subscription.updateSubscribe(
                 ParameterUtil.TOPIC_TASK_START,
                 "");
@@ -6,4 +6,6 @@ import lombok.Data;
 public class KafkaSourceConfig {
     private String topic;
     private String groupId;
+    // 同一个key（没有key则同一个分区）的消息按顺序处理
+    private boolean ordered;
 }
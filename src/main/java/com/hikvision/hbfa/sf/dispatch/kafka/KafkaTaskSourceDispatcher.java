@@ -4,7 +4,7 @@ import com.hikvision.hbfa.sf.dispatch.SourceParam;
 import com.hikvision.hbfa.sf.dispatch.TaskSourceDispatcher;
 import com.hikvision.hbfa.sf.dispatch.TaskSourceReceiver;
 import com.hikvision.hbfa.sf.entity.enumeration.TaskSourceStatus;
-import com.hikvision.hbfa.sf.entity.json.ObjectMap;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
 import com.hikvision.hbfa.sf.kafka.KafkaRecvHandler;
 import com.hikvision.hbfa.sf.kafka.KafkaSubscription;
 
@@ -14,10 +14,10 @@ import java.util.concurrent.CompletableFuture;
 
 class KafkaTaskSourceDispatcher implements
         TaskSourceDispatcher,
-        KafkaRecvHandler<String, ObjectMap> {
+        KafkaRecvHandler<String, LazyJsonObject> {
 
     private final SourceParam param;
-    private final KafkaSubscription<String, ObjectMap> subscription;
+    private final KafkaSubscription<String, LazyJsonObject> subscription;
 
     private final TaskSourceReceiver receiver;
 
@@ -25,14 +25,22 @@ class KafkaTaskSourceDispatcher implements
             SourceParam param,
             Map<String, Object> props,
             String topic,
+            KafkaSubscription.Pipeline pipeline,
+            int orderedConcurrency,
             TaskSourceReceiver receiver) {
         this.param = param;
         subscription = new KafkaSubscription<>(
                 props,
-                ObjectMap.class, this,
+                // 消息原样透传的部分不解析、不重新编码
+                LazyJsonObject.class, this,
                 Duration.ofSeconds(1),
                 param.getRetries(),
-                "TaskRun-" + param.getName());
+                "TaskRun-" + param.getName(),
+                pipeline);
+        if (orderedConcurrency > 0) {
+            subscription.ordered(orderedConcurrency);
+        }
+        subscription.pauseWhen(() -> receiver.saturated(param));
         subscription.updateSubscribe(topic, "");
         this.receiver = receiver;
     }
@@ -54,7 +62,7 @@ class KafkaTaskSourceDispatcher implements
     }
 
     @Override
-    public CompletableFuture<?> receive(String p, ObjectMap input) {
+    public CompletableFuture<?> receive(String p, LazyJsonObject input) {
         return receiver.receive(param, input);
     }
 
@@ -1,6 +1,7 @@
 package com.hikvision.hbfa.sf.dispatch.kafka;
 
 import com.hikvision.hbfa.sf.config.KafkaProperties;
+import com.hikvision.hbfa.sf.config.TaskProperties;
 import com.hikvision.hbfa.sf.dispatch.SourceParam;
 import com.hikvision.hbfa.sf.dispatch.TaskSourceDispatcher;
 import com.hikvision.hbfa.sf.dispatch.TaskSourceDispatcherFactory;
@@ -18,9 +19,12 @@ import java.util.Map;
 public class KafkaTaskSourceDispatcherFactory implements TaskSourceDispatcherFactory {
 
     final Map<String, Object> defaultProperties;
+    final TaskProperties.Dispatcher dispatcher;
 
-    public KafkaTaskSourceDispatcherFactory(KafkaProperties properties) {
+    public KafkaTaskSourceDispatcherFactory(KafkaProperties properties,
+                                            TaskProperties taskProperties) {
         this.defaultProperties = properties.buildConsumerProperties();
+        this.dispatcher = taskProperties.getDispatcher();
     }
 
     @Override
@@ -43,7 +47,10 @@ public class KafkaTaskSourceDispatcherFactory implements TaskSourceDispatcherFac
             properties.put(ConsumerConfig.GROUP_ID_CONFIG, config.getGroupId());
         }
 
-        return new KafkaTaskSourceDispatcher(param, properties, config.getTopic(), receiver);
+        return new KafkaTaskSourceDispatcher(param, properties, config.getTopic(),
+                dispatcher.pipeline(),
+                config.isOrdered() ? dispatcher.getMessageConcurrency() : 0,
+                receiver);
     }
 
 }
@@ -3,6 +3,7 @@ package com.hikvision.hbfa.sf.dto;
 import com.hikvision.hbfa.sf.entity.Node;
 import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.entity.enumeration.ResultCode;
+import com.hikvision.hbfa.sf.entity.json.CacheConfig;
 import com.hikvision.hbfa.sf.entity.json.ObjectMap;
 import com.hikvision.hbfa.sf.entity.json.SubmitConfig;
 import lombok.Data;
@@ -35,6 +36,7 @@ public class NodeDto {
 
     @Min(0)
     private int maxRetries;
+    private CacheConfig cacheConfig;
     private String remark;
 
 
@@ -16,6 +16,9 @@ public class SubtaskDto {
     private String errMsg;
     private int retries;
 
+    // verbose时返回
+    private SubtaskTraceDto trace;
+
     private Instant createdAt;
     private Instant updatedAt;
 
@@ -0,0 +1,25 @@
+package com.hikvision.hbfa.sf.dto;
+
+import lombok.Data;
+
+/**
+ * 子任务各阶段的时间，相对任务启动的毫秒数，未发生的为null
+ */
+@Data
+public class SubtaskTraceDto {
+    // 前驱全部完成
+    private Double ready;
+    // 开始生成参数
+    private Double dispatched;
+    // 参数生成完成，开始调用
+    private Double paramMade;
+    // 调用返回，异步节点是受理，命中结果缓存时是拿到缓存的结果
+    private Double returned;
+    // 异步节点回传
+    private Double submitted;
+    private Double completed;
+    // 是否命中节点结果缓存
+    private boolean cached;
+    // 是否在关键路径上
+    private boolean critical;
+}
@@ -22,4 +22,7 @@ public class TaskDto {
 
     private List<SubtaskDto> subtasks;
 
+    // verbose时返回：关键路径上的节点名，从头节点开始
+    private List<String> criticalPath;
+
 }
@@ -27,6 +27,8 @@ public class WorkflowDto {
     private CallType notifier;
     private Map<String, Object> notifierConfig;
     private long timeout;
+    // 持久化：重启后恢复未结束的任务
+    private boolean durable;
     private String remark;
 
 
@@ -0,0 +1,16 @@
+package com.hikvision.hbfa.sf.entity;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class AsyncCheckpoint {
+    private String subtaskId;
+    private String taskId;
+    private String nodeName;
+    private String input;
+
+    // 等待回传的超时时刻
+    private Instant deadline;
+}
@@ -1,6 +1,7 @@
 package com.hikvision.hbfa.sf.entity;
 
 import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
+import com.hikvision.hbfa.sf.entity.json.CacheConfig;
 import com.hikvision.hbfa.sf.entity.json.ObjectMap;
 import com.hikvision.hbfa.sf.entity.json.SubmitConfig;
 import lombok.Data;
@@ -26,6 +27,8 @@ public class Node {
 
     // 重试次数。
     private int maxRetries;
+    // 结果缓存，为空不缓存
+    private CacheConfig cacheConfig;
     // 备注说明
     private String remark;
 
@@ -0,0 +1,13 @@
+package com.hikvision.hbfa.sf.entity;
+
+import lombok.Data;
+
+@Data
+public class NodeCheckpoint {
+    private String taskId;
+    private String nodeName;
+    private String subtaskId;
+    private boolean success;
+    private String output;
+    private String errMsg;
+}
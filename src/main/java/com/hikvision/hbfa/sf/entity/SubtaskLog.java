@@ -0,0 +1,19 @@
+package com.hikvision.hbfa.sf.entity;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class SubtaskLog {
+    private String id;
+    private String taskId;
+    private Long nodeId;
+    private String nodeName;
+    private boolean success;
+    private String output;
+    private String errMsg;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -0,0 +1,18 @@
+package com.hikvision.hbfa.sf.entity;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class TaskCheckpoint {
+    private String id;
+    // 执行任务的实例
+    private String owner;
+    private String workflowName;
+    private String input;
+
+    private Instant startedAt;
+    // 超时时刻
+    private Instant deadline;
+}
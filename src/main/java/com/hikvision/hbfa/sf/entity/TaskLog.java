@@ -0,0 +1,20 @@
+package com.hikvision.hbfa.sf.entity;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class TaskLog {
+    private String id;
+    private Long workflowId;
+    private String workflowName;
+    private boolean success;
+    private String input;
+    private String output;
+    private String errMsg;
+    private String criticalPath;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -19,6 +19,8 @@ public class Workflow {
 
     // 超时时间
     private long timeout;
+    // 持久化：记录节点完成的检查点，重启后恢复未结束的任务
+    private boolean durable;
 
     private String remark;
     private Instant createdAt;
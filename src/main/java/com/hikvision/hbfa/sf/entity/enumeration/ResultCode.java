@@ -9,6 +9,8 @@ public enum ResultCode {
     TASK_ERROR(5),
     BAD_CONFIG(6),
     BAD_RESPONSE(8),
+    // 超过并发上限被拒绝，稍后重试
+    BUSY(9),
     ;
     final int value;
 
@@ -0,0 +1,19 @@
+package com.hikvision.hbfa.sf.entity.json;
+
+import lombok.Data;
+
+/**
+ * <h2>节点结果缓存的配置</h2>
+ * 相同输入的调用结果相同的节点（查询、字典翻译等）可以启用，异步节点不缓存。
+ */
+@Data
+public class CacheConfig {
+    // 写入后的过期时间（毫秒），0不过期
+    private long ttl;
+    // 缓存结果的总大小（按JSON字节数估算），0使用默认的条数上限
+    private long maxWeight;
+
+    public boolean enabled() {
+        return ttl > 0 || maxWeight > 0;
+    }
+}
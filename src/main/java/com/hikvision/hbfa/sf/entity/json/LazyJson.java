@@ -0,0 +1,302 @@
+package com.hikvision.hbfa.sf.entity.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h3>延迟解析的JSON</h3>
+ * {@link LazyJsonObject}、{@link LazyJsonArray}持有原始的UTF-8字节，按Map、List使用：
+ * <ol>
+ *     <li>第一次访问时只索引本层：标量直接解析，对象、数组记下字节范围，成为新的延迟节点；
+ *     按JMESPath读参数时只有表达式经过的子树被解析</li>
+ *     <li>序列化时没有被修改过的节点（包括访问过的子节点）直接写出原始字节；
+ *     修改过的逐个写出成员，其中没有修改的子节点仍写出原始字节</li>
+ *     <li>按键排序（{@link SerializationFeature#ORDER_MAP_ENTRIES_BY_KEYS}）时，
+ *     或者不是输出JSON文本的生成器（TokenBuffer、其它格式）时按普通的Map、List序列化</li>
+ * </ol>
+ * 和HashMap一样，并发读是安全的，并发修改不安全。
+ */
+final
+public class LazyJson {
+    private LazyJson() {
+    }
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * 检查整个JSON并索引第一层
+     *
+     * @throws IllegalArgumentException 不是JSON对象
+     */
+    public static LazyJsonObject parseObject(byte[] bytes) {
+        return LazyJsonObject.parse(bytes);
+    }
+
+    /**
+     * @return 节点没有被修改过，可以直接写出原始字节
+     */
+    public static boolean untouched(Object o) {
+        return !(o instanceof Node) || ((Node) o).untouched();
+    }
+
+    /**
+     * @return 没有修改过的延迟节点的原文，其它返回null
+     */
+    public static String rawText(Object o) {
+        if (o instanceof Node && ((Node) o).untouched()) {
+            return ((Node) o).raw().getValue();
+        }
+        return null;
+    }
+
+
+    //
+
+    interface Node {
+        Raw raw();
+
+        boolean untouched();
+    }
+
+    /**
+     * 读取当前的值，对象、数组只跳过，记下字节范围
+     */
+    static Object readValue(JsonParser p, JsonToken t, Raw raw) throws IOException {
+        switch (t) {
+            case START_OBJECT:
+            case START_ARRAY:
+                int start = raw.offset + (int) p.getTokenLocation().getByteOffset();
+                p.skipChildren();
+                int end = raw.offset + (int) p.getCurrentLocation().getByteOffset();
+                var child = new Raw(raw.bytes, start, end - start);
+                return t == JsonToken.START_OBJECT ? new LazyJsonObject(child) : new LazyJsonArray(child);
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_NUMBER_INT:
+                // 和Jackson解析Object一致：Integer、Long、BigInteger
+                return p.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new JsonParseException(p, "unexpected token " + t);
+        }
+    }
+
+    /**
+     * 原始字节的一段，作为{@link SerializableString}直接写出；
+     * 作为字符串值写出（quoted）时按JSON字符串转义
+     */
+    static final class Raw implements SerializableString {
+        final byte[] bytes;
+        final int offset;
+        final int length;
+
+        Raw(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        JsonParser parser() throws IOException {
+            return FACTORY.createParser(bytes, offset, length);
+        }
+
+        @Override
+        public String getValue() {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return JsonStringEncoder.getInstance().quoteAsString(getValue());
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            var copy = new byte[length];
+            System.arraycopy(bytes, offset, copy, 0, length);
+            return copy;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            var quoted = asQuotedUTF8();
+            if (offset + quoted.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+            return quoted.length;
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            var quoted = asQuotedChars();
+            if (offset + quoted.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+            return quoted.length;
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (offset + length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(bytes, this.offset, buffer, offset, length);
+            return length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            var chars = getValue();
+            if (offset + chars.length() > buffer.length) {
+                return -1;
+            }
+            chars.getChars(0, chars.length(), buffer, offset);
+            return chars.length();
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            var quoted = asQuotedUTF8();
+            out.write(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            var quoted = asQuotedUTF8();
+            if (quoted.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer out) {
+            if (length > out.remaining()) {
+                return -1;
+            }
+            out.put(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return getValue();
+        }
+    }
+
+    static final class Serializer extends StdSerializer<Object> {
+        Serializer() {
+            super(Object.class);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Object value) {
+            return value instanceof Map ? ((Map<?, ?>) value).isEmpty() : ((Collection<?>) value).isEmpty();
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            var node = (Node) value;
+            // TokenBuffer（convertValue等）会把原文当作内嵌对象，只对输出JSON文本的生成器原样写出
+            if (gen instanceof JsonGeneratorImpl
+                    && !provider.isEnabled(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS) && node.untouched()) {
+                gen.writeRawValue(node.raw());
+                return;
+            }
+            // 逐个写出成员，没有修改的子节点仍原样写出
+            provider.findPrimaryPropertySerializer(value instanceof Map ? Map.class : List.class, null)
+                    .serialize(value, gen, provider);
+        }
+    }
+
+    abstract static class Deserializer<T> extends StdDeserializer<T> {
+        private final JsonToken start;
+
+        Deserializer(Class<T> type, JsonToken start) {
+            super(type);
+            this.start = start;
+        }
+
+        abstract T create(Raw raw);
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() != start) {
+                return (T) ctxt.handleUnexpectedToken(handledType(), p);
+            }
+            // 嵌在其它对象中时拿不到原始字节，复制一份
+            var out = new ByteArrayBuilder();
+            try (var g = FACTORY.createGenerator(out)) {
+                g.copyCurrentStructure(p);
+            }
+            var bytes = out.toByteArray();
+            return create(new Raw(bytes, 0, bytes.length));
+        }
+    }
+
+    static final class ObjectDeserializer extends Deserializer<LazyJsonObject> {
+        ObjectDeserializer() {
+            super(LazyJsonObject.class, JsonToken.START_OBJECT);
+        }
+
+        @Override
+        LazyJsonObject create(Raw raw) {
+            return new LazyJsonObject(raw);
+        }
+    }
+
+    static final class ArrayDeserializer extends Deserializer<LazyJsonArray> {
+        ArrayDeserializer() {
+            super(LazyJsonArray.class, JsonToken.START_ARRAY);
+        }
+
+        @Override
+        LazyJsonArray create(Raw raw) {
+            return new LazyJsonArray(raw);
+        }
+    }
+
+}
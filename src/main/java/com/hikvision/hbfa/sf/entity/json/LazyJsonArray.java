@@ -0,0 +1,114 @@
+package com.hikvision.hbfa.sf.entity.json;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * 延迟解析的JSON数组，见{@link LazyJson}
+ */
+@JsonSerialize(using = LazyJson.Serializer.class)
+@JsonDeserialize(using = LazyJson.ArrayDeserializer.class)
+public class LazyJsonArray extends AbstractList<Object> implements RandomAccess, LazyJson.Node {
+
+    private final LazyJson.Raw raw;
+    private volatile ArrayList<Object> elements;
+    // 索引时的元素，用于判断是否修改过
+    private Object[] originals;
+
+    LazyJsonArray(LazyJson.Raw raw) {
+        this.raw = raw;
+    }
+
+    @Override
+    public LazyJson.Raw raw() {
+        return raw;
+    }
+
+    @Override
+    public boolean untouched() {
+        var e = elements;
+        if (null == e) {
+            return true;
+        }
+        if (e.size() != originals.length) {
+            return false;
+        }
+        for (int i = 0; i < originals.length; i++) {
+            var v = e.get(i);
+            if (v != originals[i] || !LazyJson.untouched(v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    @Override
+    public Object get(int index) {
+        return elements().get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements().size();
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        return elements().set(index, element);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        elements().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public Object remove(int index) {
+        var old = elements().remove(index);
+        modCount++;
+        return old;
+    }
+
+
+    //
+
+    private ArrayList<Object> elements() {
+        var e = elements;
+        if (null != e) {
+            return e;
+        }
+        synchronized (this) {
+            e = elements;
+            if (null == e) {
+                elements = e = index();
+            }
+            return e;
+        }
+    }
+
+    private ArrayList<Object> index() {
+        try (var p = raw.parser()) {
+            if (p.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("not a json array");
+            }
+            var list = new ArrayList<>();
+            JsonToken t;
+            while (null != (t = p.nextToken()) && t != JsonToken.END_ARRAY) {
+                list.add(LazyJson.readValue(p, t, raw));
+            }
+            originals = list.toArray();
+            return list;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid json", e);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.hikvision.hbfa.sf.entity.json;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 延迟解析的JSON对象，见{@link LazyJson}
+ */
+@JsonSerialize(using = LazyJson.Serializer.class)
+@JsonDeserialize(using = LazyJson.ObjectDeserializer.class)
+public class LazyJsonObject extends AbstractMap<String, Object> implements LazyJson.Node {
+
+    private final LazyJson.Raw raw;
+    private volatile LinkedHashMap<String, Object> fields;
+    // 索引时的键值，用于判断是否修改过
+    private String[] keys;
+    private Object[] values;
+
+    LazyJsonObject(LazyJson.Raw raw) {
+        this.raw = raw;
+    }
+
+    static LazyJsonObject parse(byte[] bytes) {
+        var o = new LazyJsonObject(new LazyJson.Raw(bytes, 0, bytes.length));
+        // 跳过子节点时也检查了语法
+        o.fields();
+        return o;
+    }
+
+    @Override
+    public LazyJson.Raw raw() {
+        return raw;
+    }
+
+    @Override
+    public boolean untouched() {
+        var f = fields;
+        if (null == f) {
+            return true;
+        }
+        if (f.size() != keys.length) {
+            return false;
+        }
+        int i = 0;
+        for (var entry : f.entrySet()) {
+            var v = entry.getValue();
+            if (v != values[i] || !keys[i].equals(entry.getKey()) || !LazyJson.untouched(v)) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+
+    @Override
+    public int size() {
+        return fields().size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return fields().containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return fields().get(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return fields().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return fields().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        fields().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        fields().clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return fields().keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return fields().values();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return fields().entrySet();
+    }
+
+
+    //
+
+    private Map<String, Object> fields() {
+        var f = fields;
+        if (null != f) {
+            return f;
+        }
+        synchronized (this) {
+            f = fields;
+            if (null == f) {
+                fields = f = index();
+            }
+            return f;
+        }
+    }
+
+    private LinkedHashMap<String, Object> index() {
+        try (var p = raw.parser()) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("not a json object");
+            }
+            var map = new LinkedHashMap<String, Object>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                var name = p.getCurrentName();
+                map.put(name, LazyJson.readValue(p, p.nextToken(), raw));
+            }
+            if (null != p.nextToken()) {
+                throw new IllegalArgumentException("trailing content after json object");
+            }
+            keys = map.keySet().toArray(new String[0]);
+            values = map.values().toArray();
+            return map;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid json", e);
+        }
+    }
+
+}
@@ -233,7 +233,10 @@ public class VoiceAnalysisComponent
                                 "voiceAnalysisFinished", Boolean.TRUE,
                                 "voiceAnalysisTaskId", taskId,
                                 "voiceAnalysisNodeName", node.name
-                        ));
+                        )).exceptionally(e -> {
+                            log.error("VoiceTask-{} send finished error", taskId, e);
+                            return null;
+                        });
                     });
                     break;
                 case 13:
@@ -406,19 +409,17 @@ public class VoiceAnalysisComponent
             }
             vaTaskCache.put(taskID, new VoiceAnalysisTask(subtaskId, taskID));
             vaNode.addId(taskID);
-            asyncSubtaskCache.set(subtaskId, asyncSubtask, timeout).thenAcceptAsync(e -> {
-                var s = e.getValue();
-                log.warn("Subtask-{} Node-{} expired: {}",
-                        s.subtask().id(), s.subtask().node().name(),
-                        JsonUtil.lazyJson(s.subtask().input()));
-
-                vaNode.delId(taskID);
-                vaNode.delTask(Collections.singletonList(taskID));
-
-                s.completeExceptionally(new CallTimeoutException(
-                        "Subtask-" + s.subtask().id() + " timeout."));
-
-            }, taskExecutor);
+            // 过期由asyncSubtaskCache的过期监听在工作线程池中处理（以CallTimeoutException结束），这里只清理语音任务
+            asyncSubtask.whenComplete((r, e) -> {
+                if (e instanceof CompletionException) {
+                    e = e.getCause();
+                }
+                if (e instanceof CallTimeoutException) {
+                    vaNode.delId(taskID);
+                    vaNode.delTask(Collections.singletonList(taskID));
+                }
+            });
+            asyncSubtaskCache.put(subtaskId, asyncSubtask, timeout);
             log.info("Subtask-{} create success: taskID={}", subtaskId, taskID);
         });
         return asyncSubtask;
@@ -1,6 +1,7 @@
 package com.hikvision.hbfa.sf.handler.call;
 
 import com.hikvision.hbfa.sf.entity.enumeration.CallType;
+import com.hikvision.hbfa.sf.util.MeterUtil;
 import com.hikvision.hbfa.sf.util.TypedBean;
 
 import java.util.Map;
@@ -12,9 +13,18 @@ public interface Callable<Config> extends TypedBean<CallType> {
 
     CompletableFuture<CallResult> doAsyncCall(CallParam<Config> param);
 
+    /**
+     * 调用并记录耗时和结果码（taskflow.call），返回的是{@link #doAsyncCall}的Future本身，取消可以传递
+     */
     default CompletableFuture<CallResult> asyncCall(
             String key, String config, Map<String, Object> input) {
-        return doAsyncCall(new CallParam<>(key, parseConfig(config), input));
+        var start = System.nanoTime();
+        var future = doAsyncCall(new CallParam<>(key, parseConfig(config), input));
+        future.whenComplete((r, e) -> MeterUtil.time("call", start,
+                "type", type().name(),
+                "code", null != e ? MeterUtil.outcome(e)
+                        : null == r || null == r.getCode() ? "" : r.getCode().name()));
+        return future;
     }
 
 }
@@ -7,6 +7,7 @@ import com.hikvision.hbfa.sf.handler.call.CallResult;
 import com.hikvision.hbfa.sf.handler.call.Callable;
 import com.hikvision.hbfa.sf.handler.call.ConfigCallable;
 import com.hikvision.hbfa.sf.kafka.KafkaPublisher;
+import com.hikvision.hbfa.sf.util.ParameterUtil;
 import com.hikvision.hbfa.sf.util.ValueUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -39,7 +40,22 @@ public class KafkaCallable
             return CompletableFuture.completedFuture(
                     new CallResult(ResultCode.BAD_CONFIG, "topic empty"));
         }
-        return publisher.send(config.getTopic(), param.getInput())
-                .thenApply(m -> new CallResult());
+        String key = null;
+        if (!ValueUtil.isEmpty(config.getKey())) {
+            var k = ParameterUtil.readParam(param.getInput(), config.getKey());
+            if (null == k) {
+                log.warn("kafka key[{}] not exists", config.getKey());
+            } else {
+                key = k.toString();
+            }
+        }
+        try {
+            // 超过生产者未确认记录数上限时以BusyException结束，由节点重试
+            return publisher.send(config.getProducer(), config.getTopic(), key, param.getInput(), null)
+                    .thenApply(m -> new CallResult());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(
+                    new CallResult(ResultCode.BAD_CONFIG, e.getMessage()));
+        }
     }
 }
@@ -5,4 +5,8 @@ import lombok.Data;
 @Data
 public class KafkaConfig {
     private String topic;
+    // 分区键，${jsonpath}从输入中读取；为空时由分区器决定
+    private String key;
+    // task.kafka-producers中的生产者名，为空使用default
+    private String producer;
 }
@@ -1,8 +1,10 @@
 package com.hikvision.hbfa.sf.handler.call.rest;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hikvision.hbfa.sf.entity.enumeration.CallType;
 import com.hikvision.hbfa.sf.entity.enumeration.ResultCode;
-import com.hikvision.hbfa.sf.entity.json.ObjectMap;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
 import com.hikvision.hbfa.sf.ex.HttpStatusException;
 import com.hikvision.hbfa.sf.handler.call.CallParam;
 import com.hikvision.hbfa.sf.handler.call.CallResult;
@@ -10,7 +12,9 @@ import com.hikvision.hbfa.sf.handler.call.Callable;
 import com.hikvision.hbfa.sf.handler.call.ConfigCallable;
 import com.hikvision.hbfa.sf.util.HttpClientUtil;
 import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.MicroBatcher;
 import com.hikvision.hbfa.sf.util.ParameterUtil;
+import com.hikvision.hbfa.sf.util.TagThreadFactory;
 import com.hikvision.hbfa.sf.util.ValueUtil;
 import io.netty.channel.ConnectTimeoutException;
 import io.netty.handler.timeout.TimeoutException;
@@ -18,9 +22,20 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.http.client.utils.URIBuilder;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+import reactor.netty.http.client.HttpClient;
 
+import javax.annotation.PreDestroy;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
@@ -28,8 +43,16 @@ public class RestCallable
         extends ConfigCallable<RestConfig>
         implements Callable<RestConfig> {
 
-    public RestCallable() {
+    private final RestClientProfiles clientProfiles;
+    // 按配置和解析出的URL的批量调用，配置相同的节点共用
+    private final Cache<BatchKey, MicroBatcher<Map<String, Object>, CallResult>> batchers =
+            Caffeine.newBuilder().expireAfterAccess(15, TimeUnit.MINUTES).build();
+    private final ScheduledExecutorService batchScheduler =
+            Executors.newSingleThreadScheduledExecutor(new TagThreadFactory("rest-batch", true));
+
+    public RestCallable(RestClientProfiles clientProfiles) {
         super(RestConfig.class);
+        this.clientProfiles = clientProfiles;
     }
 
     @Override
@@ -40,61 +63,208 @@ public class RestCallable
 
     private Mono<CallResult> request(CallParam<RestConfig> param) {
         var config = param.getConfig();
-        var queries = config.getQueries();
         var input = param.getInput();
         log.debug("call rest[{}]: {}", param.getKey(), JsonUtil.lazyJson(input));
 
+        var invalid = checkConfig(config);
+        if (null != invalid) {
+            return Mono.just(invalid);
+        }
+        HttpClient client;
+        try {
+            client = clientProfiles.client(config.getClient());
+        } catch (IllegalArgumentException e) {
+            return Mono.just(new CallResult(ResultCode.BAD_CONFIG, e.getMessage()));
+        }
+
+        var uri = uriOf(config, input);
+        return HttpClientUtil.<LazyJsonObject>newBuilder()
+                .client(client)
+                .method(config.getMethod()).uri(uri).headers(config.getHeaders())
+                .timeout(timeoutOf(config))
+                .send(bodyOf(config, input)).recv(LazyJsonObject.class)
+                .log(log).tag(config.getUri()).build()
+                .map(CallResult.successFun())
+                .onErrorResume(e -> errorResult(uri, e))
+                .defaultIfEmpty(new CallResult());
+    }
+
+    /**
+     * 一批调用合并成一个请求，同一批的调用URL相同
+     *
+     * @return 和inputs一一对应的结果
+     */
+    private Mono<List<CallResult>> batchRequest(RestConfig config, String uri, List<Map<String, Object>> inputs) {
+        int n = inputs.size();
+        log.debug("call rest batch[{}]: {} items", uri, n);
+
+        HttpClient client;
+        try {
+            client = clientProfiles.client(config.getClient());
+        } catch (IllegalArgumentException e) {
+            return Mono.just(repeat(n, ResultCode.BAD_CONFIG, e.getMessage()));
+        }
+
+        var items = new ArrayList<>(n);
+        for (var input : inputs) {
+            items.add(bodyOf(config, input));
+        }
+        var batch = config.getBatch();
+        Object body = ValueUtil.isEmpty(batch.getItemsKey()) ? items : Map.of(batch.getItemsKey(), items);
+
+        return HttpClientUtil.<Object>newBuilder()
+                .client(client)
+                .method(config.getMethod()).uri(uri).headers(config.getHeaders())
+                .timeout(timeoutOf(config))
+                .send(body).recv(Object.class)
+                .log(log).tag(config.getUri()).build()
+                .map(response -> split(batch, response, n))
+                .onErrorResume(e -> errorResult(uri, e).map(cr -> repeat(n, cr.getCode(), cr.getMsg())))
+                .defaultIfEmpty(repeat(n, ResultCode.BAD_RESPONSE, "empty batch response"));
+    }
+
+    /**
+     * 按位置拆分批量响应
+     */
+    @SuppressWarnings("unchecked")
+    static List<CallResult> split(RestConfig.Batch batch, Object response, int n) {
+        Object results = response;
+        if (!ValueUtil.isEmpty(batch.getResults())) {
+            try {
+                results = ParameterUtil.getExpression(batch.getResults()).search(response);
+            } catch (IllegalArgumentException e) {
+                return repeat(n, ResultCode.BAD_CONFIG, "batch results: " + e.getMessage());
+            }
+        }
+        if (!(results instanceof List) || ((List<?>) results).size() != n) {
+            return repeat(n, ResultCode.BAD_RESPONSE, "expect " + n + " batch results");
+        }
+        var list = (List<?>) results;
+        var crs = new ArrayList<CallResult>(n);
+        for (var item : list) {
+            if (null == item) {
+                crs.add(new CallResult());
+            } else if (item instanceof Map) {
+                crs.add(new CallResult((Map<String, Object>) item));
+            } else {
+                crs.add(new CallResult(ResultCode.BAD_RESPONSE, "batch result is not an object"));
+            }
+        }
+        return crs;
+    }
+
+    private static List<CallResult> repeat(int n, ResultCode code, String msg) {
+        var crs = new ArrayList<CallResult>(n);
+        for (int i = 0; i < n; i++) {
+            crs.add(new CallResult(code, msg));
+        }
+        return crs;
+    }
+
+    private static CallResult checkConfig(RestConfig config) {
         if (ValueUtil.isEmpty(config.getUri())) {
-            return Mono.just(new CallResult(ResultCode.BAD_CONFIG, "url empty"));
+            return new CallResult(ResultCode.BAD_CONFIG, "url empty");
         }
         if (null == config.getMethod()) {
-            return Mono.just(new CallResult(ResultCode.BAD_CONFIG, "http method empty"));
+            return new CallResult(ResultCode.BAD_CONFIG, "http method empty");
         }
+        return null;
+    }
 
-        String uri;
+    static String uriOf(RestConfig config, Map<String, Object> input) {
+        var queries = config.getQueries();
         if (ValueUtil.isEmpty(queries)) {
-            uri = config.getUri();
-        } else {
-            var ub = new URIBuilder(URI.create(config.getUri()));
-            for (var entry : queries.entrySet()) {
-                var argument = ParameterUtil.readParam(input, entry.getValue());
-                if (null != argument) {
-                    ub.addParameter(entry.getKey(), argument.toString());
-                } else {
-                    log.warn("query-param[{}] not exists", entry.getKey());
-                }
+            return config.getUri();
+        }
+        var ub = new URIBuilder(URI.create(config.getUri()));
+        for (var entry : queries.entrySet()) {
+            var argument = ParameterUtil.readParam(input, entry.getValue());
+            if (null != argument) {
+                ub.addParameter(entry.getKey(), argument.toString());
+            } else {
+                log.warn("query-param[{}] not exists", entry.getKey());
             }
-            uri = ub.toString();
         }
+        return ub.toString();
+    }
 
-        Object body = input;
+    private static Object bodyOf(RestConfig config, Map<String, Object> input) {
         if (null != config.getBody()) {
-            body = ParameterUtil.readParam(input, config.getBody());
+            return ParameterUtil.readParam(input, config.getBody());
         }
+        return input;
+    }
+
+    private static Duration timeoutOf(RestConfig config) {
+        return config.getTimeout() > 0 ? Duration.ofMillis(config.getTimeout()) : null;
+    }
 
+    private static Mono<CallResult> errorResult(String uri, Throwable e) {
+        log.error("REST [{}] error", uri);
+        CallResult cr;
+        if (e instanceof TimeoutException || e instanceof ConnectTimeoutException
+                || e instanceof PoolAcquireTimeoutException) {
+            cr = new CallResult(ResultCode.NETWORK, e.getMessage());
+        } else if (e instanceof PoolAcquirePendingLimitException) {
+            // 客户端的连接池排满
+            cr = new CallResult(ResultCode.BUSY, e.getMessage());
+        } else if (e instanceof HttpStatusException) {
+            cr = new CallResult(ResultCode.BAD_REQUEST, e.getMessage());
+        } else {
+            return Mono.error(e);
+        }
+        return Mono.just(cr);
+    }
 
-        return HttpClientUtil.<ObjectMap>newBuilder()
-                .method(config.getMethod()).uri(uri).headers(config.getHeaders())
-                .send(body).recv(ObjectMap.class)
-                .log(log).tag(config.getUri()).build()
-                .map(CallResult.successFun())
-                .onErrorResume(e -> {
-                    log.error("REST [{}] error", uri);
-                    CallResult cr;
-                    if (e instanceof TimeoutException || e instanceof ConnectTimeoutException) {
-                        cr = new CallResult(ResultCode.NETWORK, e.getMessage());
-                    } else if (e instanceof HttpStatusException) {
-                        cr = new CallResult(ResultCode.BAD_REQUEST, e.getMessage());
-                    } else {
-                        return Mono.error(e);
-                    }
-                    return Mono.just(cr);
-                }).defaultIfEmpty(new CallResult());
+    private MicroBatcher<Map<String, Object>, CallResult> batcher(RestConfig config, String uri) {
+        return batchers.get(new BatchKey(config, uri), k -> new MicroBatcher<>(
+                config.getBatch().getMaxSize(), config.getBatch().getLinger(),
+                inputs -> batchRequest(config, uri, inputs).toFuture(),
+                batchScheduler));
+    }
+
+    @PreDestroy
+    public void close() {
+        batchScheduler.shutdownNow();
     }
 
 
     @Override
     public CompletableFuture<CallResult> doAsyncCall(CallParam<RestConfig> param) {
+        var config = param.getConfig();
+        if (null != config.getBatch()) {
+            log.debug("call rest[{}] in batch: {}", param.getKey(), JsonUtil.lazyJson(param.getInput()));
+            var invalid = checkConfig(config);
+            if (null != invalid) {
+                return CompletableFuture.completedFuture(invalid);
+            }
+            // queries按各自的输入解析，URL不同的调用不在一批
+            return batcher(config, uriOf(config, param.getInput())).submit(param.getInput());
+        }
         return request(param).toFuture();
     }
+
+
+    static final class BatchKey {
+        final RestConfig config;
+        final String uri;
+
+        BatchKey(RestConfig config, String uri) {
+            this.config = config;
+            this.uri = uri;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BatchKey)) return false;
+            var k = (BatchKey) o;
+            return config.equals(k.config) && uri.equals(k.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * config.hashCode() + uri.hashCode();
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.hikvision.hbfa.sf.handler.call.rest;
+
+import com.hikvision.hbfa.sf.config.TaskProperties;
+import com.hikvision.hbfa.sf.util.HttpClientUtil;
+import com.hikvision.hbfa.sf.util.MeterUtil;
+import com.hikvision.hbfa.sf.util.ValueUtil;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <h3>REST节点的HTTP客户端</h3>
+ * 按task.http-clients配置，每个客户端有独立的连接池，第一次使用时创建，之后复用。
+ * 一个下游变慢只会占满它所用客户端的连接池，不影响其它客户端。
+ * <p>
+ * 指标（client=名字）：
+ * <ul>
+ *     <li>taskflow.http.client.connections（remote、state=active/idle/pending）</li>
+ *     <li>taskflow.http.client.acquire：从发起请求到拿到连接的耗时，包括新建连接</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RestClientProfiles {
+
+    public static final String DEFAULT = "default";
+
+    private final Map<String, TaskProperties.HttpClientProfile> profiles;
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+    // 连接池的指标对象只被Gauge弱引用
+    private final List<ConnectionPoolMetrics> poolMetrics = new CopyOnWriteArrayList<>();
+
+    public RestClientProfiles(TaskProperties properties) {
+        this.profiles = properties.getHttpClients();
+    }
+
+    @PreDestroy
+    public void close() {
+        providers.values().forEach(ConnectionProvider::dispose);
+    }
+
+    /**
+     * @param name 客户端名，为空时使用default；default未配置时使用默认值
+     * @throws IllegalArgumentException 客户端未配置
+     */
+    public HttpClient client(String name) {
+        if (ValueUtil.isEmpty(name)) {
+            name = DEFAULT;
+        }
+        var client = clients.get(name);
+        if (null != client) {
+            return client;
+        }
+        return clients.computeIfAbsent(name, this::create);
+    }
+
+    private HttpClient create(String name) {
+        var profile = profiles.get(name);
+        if (null == profile) {
+            if (!DEFAULT.equals(name)) {
+                throw new IllegalArgumentException("http client '" + name + "' not configured");
+            }
+            profile = new TaskProperties.HttpClientProfile();
+        }
+        var builder = ConnectionProvider.builder("rest-" + name)
+                .maxConnections(profile.getMaxConnections())
+                .pendingAcquireMaxCount(profile.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(profile.getPendingAcquireTimeout())
+                .metrics(true, () -> (poolName, id, remote, metrics) -> {
+                    poolMetrics.add(metrics);
+                    var address = String.valueOf(remote);
+                    MeterUtil.gauge("http.client.connections", metrics, ConnectionPoolMetrics::acquiredSize,
+                            "client", name, "remote", address, "state", "active");
+                    MeterUtil.gauge("http.client.connections", metrics, ConnectionPoolMetrics::idleSize,
+                            "client", name, "remote", address, "state", "idle");
+                    MeterUtil.gauge("http.client.connections", metrics, ConnectionPoolMetrics::pendingAcquireSize,
+                            "client", name, "remote", address, "state", "pending");
+                });
+        if (!profile.getMaxIdleTime().isZero()) {
+            builder.maxIdleTime(profile.getMaxIdleTime());
+        }
+        if (!profile.getMaxLifeTime().isZero()) {
+            builder.maxLifeTime(profile.getMaxLifeTime());
+        }
+        if (!profile.getEvictInterval().isZero()) {
+            builder.evictInBackground(profile.getEvictInterval());
+        }
+        var provider = builder.build();
+        providers.put(name, provider);
+
+        var protocols = profile.getProtocols().toArray(new HttpProtocol[0]);
+        log.info("create http client {}: maxConnections={}, protocols={}",
+                name, profile.getMaxConnections(), profile.getProtocols());
+        return HttpClientUtil.restfulClient(provider)
+                .protocol(protocols)
+                .compress(profile.isCompress())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) profile.getConnectTimeout().toMillis())
+                .responseTimeout(profile.getResponseTimeout())
+                .doOnRequest((request, connection) -> {
+                    Long start = request.currentContextView().getOrDefault(HttpClientUtil.REQUEST_START, null);
+                    if (null != start) {
+                        MeterUtil.time("http.client.acquire", start, "client", name);
+                    }
+                });
+    }
+
+}
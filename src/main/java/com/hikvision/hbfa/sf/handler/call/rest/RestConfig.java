@@ -13,4 +13,27 @@ public class RestConfig {
     private Map<String, String> params;
     private Map<String, String> queries;
     private String body;
+
+    // task.http-clients中的客户端名，为空使用default
+    private String client;
+    // 响应超时（毫秒），0使用客户端的配置
+    private long timeout;
+    // 批量调用，为空时每次调用一个请求
+    private Batch batch;
+
+    /**
+     * 同一配置、同一URL（queries按各自的输入解析）的并发调用攒成一个请求：请求体是每次调用的body组成的数组，
+     * 响应中results取出的数组按位置对应每次调用的结果
+     */
+    @Data
+    public static class Batch {
+        // 每批的最大调用数
+        private int maxSize = 100;
+        // 批次的最长等待时间（毫秒）
+        private long linger = 10;
+        // 数组在请求体中的字段名，为空时请求体就是数组
+        private String itemsKey;
+        // 从响应中取出结果数组的JMESPath（不带${}），为空时响应就是数组
+        private String results;
+    }
 }
@@ -0,0 +1,13 @@
+package com.hikvision.hbfa.sf.handler.dag;
+
+/**
+ * 准入失败：事件循环或者工作线程池积压已满，稍后可以重试
+ */
+public class BusyException extends RetryException {
+    public BusyException() {
+    }
+
+    public BusyException(String message) {
+        super(message);
+    }
+}
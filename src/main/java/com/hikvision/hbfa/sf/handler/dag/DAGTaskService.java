@@ -5,7 +5,9 @@ import com.hikvision.hbfa.sf.config.TaskProperties;
 import com.hikvision.hbfa.sf.dag.DAGNodeHandler;
 import com.hikvision.hbfa.sf.dag.DAGResult;
 import com.hikvision.hbfa.sf.dag.DAGTask;
+import com.hikvision.hbfa.sf.dag.TriFunction;
 import com.hikvision.hbfa.sf.dto.SubtaskDto;
+import com.hikvision.hbfa.sf.dto.SubtaskTraceDto;
 import com.hikvision.hbfa.sf.dto.TaskDto;
 import com.hikvision.hbfa.sf.dto.TaskStartDto;
 import com.hikvision.hbfa.sf.entity.enumeration.ResultCode;
@@ -13,25 +15,31 @@ import com.hikvision.hbfa.sf.entity.json.ObjectMap;
 import com.hikvision.hbfa.sf.ex.NotFoundException;
 import com.hikvision.hbfa.sf.handler.call.CallableManager;
 import com.hikvision.hbfa.sf.handler.dag.data.*;
+import com.hikvision.hbfa.sf.handler.dag.impl.AsyncSubtaskJournal;
 import com.hikvision.hbfa.sf.handler.dag.impl.DAGNodeService;
 import com.hikvision.hbfa.sf.handler.dag.impl.JsonDAGParamMaker;
+import com.hikvision.hbfa.sf.handler.dag.impl.TaskAdmission;
+import com.hikvision.hbfa.sf.service.TaskCheckpointService;
+import com.hikvision.hbfa.sf.service.TaskLogService;
+import com.hikvision.hbfa.sf.util.EventLoopGroup;
 import com.hikvision.hbfa.sf.util.ExpiringCache;
 import com.hikvision.hbfa.sf.util.JsonUtil;
 import com.hikvision.hbfa.sf.util.MapUtil;
-import com.hikvision.hbfa.sf.util.SimpleCache;
+import com.hikvision.hbfa.sf.util.MeterUtil;
+import com.hikvision.hbfa.sf.util.NamedRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static com.hikvision.hbfa.sf.util.ParameterUtil.*;
@@ -47,12 +55,12 @@ public class DAGTaskService {
     SubmitManager submitManager;
 
     @Autowired
-    ExecutorService taskExecutor;
+    EventLoopGroup taskLoops;
 
     @Autowired
-    SimpleCache<Object, DAGNode> nodeCache;
+    NamedRegistry<DAGNode> nodeRegistry;
     @Autowired
-    SimpleCache<Object, DAGWorkflow> workflowCache;
+    NamedRegistry<DAGWorkflow> workflowRegistry;
     @Autowired
     ExpiringCache<String, DAGCachedTask> taskCache;
     @Autowired
@@ -62,10 +70,22 @@ public class DAGTaskService {
     CallableManager callableManager;
     @Autowired
     DAGNodeService dagNodeService;
+    @Autowired
+    TaskAdmission taskAdmission;
+    @Autowired
+    TaskLogService taskLogService;
+    @Autowired
+    TaskCheckpointService taskCheckpointService;
+    @Autowired
+    AsyncSubtaskJournal asyncSubtaskJournal;
 
     @Autowired
     TaskProperties properties;
 
+    // 单个任务保留完整结果的节点数峰值
+    private final AtomicInteger maxRetainedResults = new AtomicInteger();
+    private final CriticalPathStats criticalPathStats = new CriticalPathStats();
+
     private DAGResult<Map<String, Object>> makeParams(
             String taskId, Map<String, Object> input,
             Map<String, DAGResult<Map<String, Object>>> results,
@@ -91,7 +111,7 @@ public class DAGTaskService {
                         argumentMap(result.getData(), result.getError()));
             }
         }
-        var output = replaceAllParams(workflow.outputParameters(), arguments);
+        var output = workflow.outputTemplate().apply(arguments);
         return new DAGResult<>(!setError, output, String.join(",", errors));
     }
 
@@ -104,10 +124,22 @@ public class DAGTaskService {
      */
     public CompletableFuture<DAGTaskResult>
     runTask(Object workflowKey, Map<String, Object> input, long timeout) {
+        return runTask(workflowKey, input, timeout, false);
+    }
+
+    /**
+     * @param workflowKey   workflow的id或name
+     * @param input         输入arguments集
+     * @param timeout       超时（毫秒）
+     * @param retainResults 保留所有节点的完整结果，否则下游不再需要、也不是输出的结果会被裁剪
+     * @return 输出结果的Future
+     */
+    public CompletableFuture<DAGTaskResult>
+    runTask(Object workflowKey, Map<String, Object> input, long timeout, boolean retainResults) {
         if (StringUtils.isEmpty(workflowKey)) {
             throw new IllegalArgumentException("require workflow");
         }
-        var workflow = workflowCache.get(workflowKey);
+        var workflow = workflowRegistry.getByKey(workflowKey);
         if (null == workflow) {
             log.debug("Workflow-{} not found", workflowKey);
             throw new NotFoundException(workflowKey.toString());
@@ -115,32 +147,129 @@ public class DAGTaskService {
         if (timeout <= 0) {
             timeout = workflow.timeout();
         }
-        String taskId = IDGenerator.next();
+        return admitTask(workflow, input, timeout, retainResults, null);
+    }
+
+    /**
+     * 恢复本实例未结束的持久化任务（工作流durable=true）：
+     * 已完成的节点不再执行，等待回传的异步子任务重新登记，其余节点重新派发
+     *
+     * @return 恢复的任务数
+     */
+    public int resumeTasks() {
+        int resumed = 0;
+        // 重新等待回传的子任务，其余的日志记录已无法回传
+        var pendingAsyncs = new HashSet<String>();
+        for (var cp : taskCheckpointService.listUnfinished()) {
+            var workflow = workflowRegistry.getByName(cp.workflow());
+            long remains = Duration.between(Instant.now(), cp.deadline()).toMillis();
+            if (null == workflow || !workflow.durable() || remains <= 0) {
+                log.warn("Task-{} of Workflow-{} can not resume: {}", cp.id(), cp.workflow(),
+                        null == workflow ? "workflow not found" : !workflow.durable() ? "not durable" : "timeout");
+                taskCheckpointService.ended(cp.id());
+                continue;
+            }
+            log.info("Resume Task-{} of Workflow-{}: {} nodes completed, {} async subtasks pending",
+                    cp.id(), workflow.name(), cp.results().size(), cp.asyncs().size());
+            cp.asyncs().values().forEach(a -> pendingAsyncs.add(a.subtaskId()));
+            admitTask(workflow, cp.input(), remains, false, cp).whenComplete((r, e) -> {
+                if (null != e) {
+                    log.warn("Resumed Task-{} error: {}", cp.id(), e.getMessage());
+                }
+            });
+            resumed++;
+        }
+        int orphans = asyncSubtaskJournal.expireOrphans(pendingAsyncs);
+        if (orphans > 0) {
+            log.warn("{} async subtasks lost after restart", orphans);
+        }
+        return resumed;
+    }
+
+    /**
+     * @param resume 恢复的任务，null则是新任务
+     */
+    private CompletableFuture<DAGTaskResult>
+    admitTask(DAGWorkflow workflow, Map<String, Object> input, long timeout, boolean retainResults,
+              DAGTaskCheckpoint resume) {
+        var admitStart = System.nanoTime();
+        return taskAdmission.acquire(workflow.name()).whenComplete((p, e) -> {
+            if (null != e) {
+                log.warn("Workflow-{} task rejected: {}", workflow.name(), e.getMessage());
+                MeterUtil.time("task", admitStart,
+                        "workflow", workflow.name(), "result", MeterUtil.REJECTED);
+            }
+        }).thenCompose(permit -> {
+            try {
+                return startTask(workflow, input, timeout, retainResults, permit, resume);
+            } catch (RuntimeException e) {
+                permit.cancel();
+                throw e;
+            }
+        });
+    }
+
+    private CompletableFuture<DAGTaskResult>
+    startTask(DAGWorkflow workflow, Map<String, Object> input, long timeout, boolean retainResults,
+              TaskAdmission.Permit permit, DAGTaskCheckpoint resume) {
+        String taskId = null != resume ? resume.id() : IDGenerator.next();
         log.debug("Run Task-{} of Workflow-{} timeout in {}ms with input: {}",
-                taskId, workflowKey, timeout, input);
-        var startTime = Instant.now();
+                taskId, workflow.name(), timeout, input);
+        var startTime = null != resume ? resume.startTime() : Instant.now();
+        var start = System.nanoTime();
+        var durable = workflow.durable();
 
         // 用于收集子任务ID
         var subtaskNodeMap = new ConcurrentHashMap<String, String>();
+        // 用于收集节点内部的时间
+        var traces = new ConcurrentHashMap<String, DAGNodeTrace>();
         // 用于格式化节点的输入参数
         var paramMaker = new JsonDAGParamMaker(taskId,
-                MapUtil.nonnull(input), nodeCache, workflow, submitManager);
+                MapUtil.nonnull(input), workflow, submitManager);
         // 节点执行
-        var handler = new DAGNodeHandler<>(IDGenerator,
-                paramMaker, dagNodeService.nodeExecutor(taskId, subtaskNodeMap));
-        // 创建和启动任务
-        var task = new DAGTask<>(workflow.graph(), handler);
-        taskExecutor.execute(task);
+        var nodeExecutor = dagNodeService.nodeExecutor(taskId, workflow, subtaskNodeMap, traces);
+        if (durable) {
+            nodeExecutor = checkpointed(taskId, workflow, nodeExecutor, subtaskNodeMap,
+                    null != resume ? new ConcurrentHashMap<>(resume.asyncs()) : null);
+        }
+        var handler = new DAGNodeHandler<>(IDGenerator, paramMaker, nodeExecutor);
+        // 创建任务，派发和节点完成回调都固定在同一个事件循环上
+        var loop = taskLoops.next();
+        DAGTask<String, DAGResult<Map<String, Object>>> task;
+        if (retainResults || !properties.isPruneResults()) {
+            task = new DAGTask<>(workflow.graph(), handler, null, null, loop);
+        } else {
+            var outputTemplate = workflow.outputTemplate();
+            task = new DAGTask<>(workflow.graph(), handler,
+                    outputTemplate::references, DAGResult::pruned, loop);
+        }
+        if (null != resume) {
+            task.restore(resume.results());
+            subtaskNodeMap.putAll(resume.subtaskNodeMap());
+        } else if (durable) {
+            // 先于节点的检查点入队
+            taskCheckpointService.started(taskId, workflow.name(), input,
+                    startTime, startTime.plusMillis(timeout));
+        }
+        // 准入：事件循环积压已满时拒绝，不进入缓存
+        if (!loop.tryExecute(task)) {
+            permit.cancel();
+            if (durable && null == resume) {
+                taskCheckpointService.ended(taskId);
+            }
+            log.warn("Task-{} of Workflow-{} rejected: event loop busy", taskId, workflow.name());
+            MeterUtil.time("task", start,
+                    "workflow", workflow.name(), "result", MeterUtil.REJECTED);
+            return CompletableFuture.failedFuture(
+                    new BusyException("Task-" + taskId + " rejected: event loop busy"));
+        }
 
         // 缓存起来
-        var cachedTask = new DAGCachedTask(taskId, workflow.name(), task,
-                Collections.unmodifiableMap(subtaskNodeMap));
-        taskCache.set(taskId, cachedTask, timeout).thenAcceptAsync(e -> {
-            log.warn("Task-{} timeout, will cancel now", taskId);
-            task.cancel(false);
-            e.getValue().task().completeExceptionally(
-                    new CallTimeoutException("Task-" + taskId + " timeout"));
-        }, taskExecutor);
+        var cachedTask = new DAGCachedTask(taskId, workflow, task,
+                Collections.unmodifiableMap(subtaskNodeMap),
+                Collections.unmodifiableMap(traces));
+        // 超时由taskCache的过期监听处理，见TaskConfiguration
+        taskCache.put(taskId, cachedTask, timeout);
 
         return task.thenCompose(results -> {
             if (log.isTraceEnabled()) {
@@ -148,11 +277,12 @@ public class DAGTaskService {
             } else {
                 log.debug("Task-{} complete", taskId);
             }
+            recordCriticalPath(workflow.name(), task);
             var result = makeParams(taskId, input, results, workflow);
             log.debug("Task-{} complete with result: {}", taskId, JsonUtil.lazyJson(result));
 
             var taskResult = new DAGTaskResult(result.isSuccess(), taskId, workflow,
-                    input, result.getData(), task, subtaskNodeMap, startTime, result.getError());
+                    input, result.getData(), task, subtaskNodeMap, traces, startTime, result.getError());
 
             if (null == workflow.notifier()) {
                 return CompletableFuture.completedFuture(taskResult);
@@ -164,17 +294,135 @@ public class DAGTaskService {
                     .thenApply(r -> taskResult);
         }).whenComplete((r, e) -> {
             taskCache.del(taskId);
+            if (durable) {
+                taskCheckpointService.ended(taskId);
+            }
+            var outcome = DAGNodeService.outcome(null != r && r.success(), e);
+            // 超时、下游过载时减小自适应上限
+            permit.release(System.nanoTime() - start,
+                    MeterUtil.TIMEOUT.equals(outcome) || MeterUtil.REJECTED.equals(outcome));
+            MeterUtil.time("task", start,
+                    "workflow", workflow.name(), "result", outcome);
+            maxRetainedResults.accumulateAndGet(task.maxRetainedResults(), Math::max);
             if (null == e) {
                 log.debug("Task-{} complete.", taskId);
+                taskLogService.record(r);
             } else {
                 log.error("Task-{} error", taskId, e);
+                var cause = e instanceof CompletionException && null != e.getCause() ? e.getCause() : e;
+                taskLogService.record(new DAGTaskResult(false, taskId, workflow, input, null,
+                        task, subtaskNodeMap, traces, startTime, String.valueOf(cause.getMessage())));
             }
         });
     }
 
+    /**
+     * 节点完成时记录检查点；异步节点调用时记录等待回传的子任务，
+     * 恢复的任务中等待回传的节点不再调用，重新登记原来的子任务
+     *
+     * @param asyncs 恢复的任务中等待回传的异步子任务，按节点名；新任务为null
+     */
+    private TriFunction<String, String, Map<String, Object>,
+            CompletableFuture<DAGResult<Map<String, Object>>>>
+    checkpointed(String taskId, DAGWorkflow workflow,
+                 TriFunction<String, String, Map<String, Object>,
+                         CompletableFuture<DAGResult<Map<String, Object>>>> executor,
+                 ConcurrentMap<String, String> subtaskNodeMap,
+                 ConcurrentMap<String, DAGTaskCheckpoint.PendingAsync> asyncs) {
+        return (subtaskId, nodeKey, input) -> {
+            var pending = null != asyncs ? asyncs.remove(nodeKey) : null;
+            CompletableFuture<DAGResult<Map<String, Object>>> future;
+            String id;
+            if (null != pending) {
+                id = pending.subtaskId();
+                future = awaitAsync(taskId, workflow, nodeKey, pending, subtaskNodeMap);
+            } else {
+                id = subtaskId;
+                var node = workflow.apply(nodeKey).node();
+                if (null != node && node.async()) {
+                    taskCheckpointService.asyncPending(taskId, nodeKey, subtaskId, input,
+                            Instant.now().plusMillis(node.timeout()));
+                }
+                future = executor.apply(subtaskId, nodeKey, input);
+            }
+            future.thenAccept(r -> taskCheckpointService.nodeCompleted(taskId, nodeKey, id, r));
+            return future;
+        };
+    }
+
+    /**
+     * 重新登记恢复的异步子任务，回传仍由{@link #submitAsync(String, Map)}处理
+     */
+    private CompletableFuture<DAGResult<Map<String, Object>>>
+    awaitAsync(String taskId, DAGWorkflow workflow, String nodeKey,
+               DAGTaskCheckpoint.PendingAsync pending,
+               ConcurrentMap<String, String> subtaskNodeMap) {
+        var node = workflow.apply(nodeKey).node();
+        var subtask = new DAGSubtask(pending.subtaskId(), taskId, node, pending.input());
+        subtaskNodeMap.put(subtask.id(), node.name());
+        long timeout = Duration.between(Instant.now(), pending.deadline()).toMillis();
+        if (timeout <= 0) {
+            var asyncSubtask = new DAGAsyncSubtask(subtask);
+            asyncSubtask.expire();
+            return asyncSubtask;
+        }
+        var asyncSubtask = new DAGAsyncSubtask(asyncSubtaskJournal.track(subtask, timeout));
+        asyncSubtask.whenComplete((r, e) -> asyncSubtaskJournal.untrack(subtask.id()));
+        log.info("Subtask-{}/Node-{} of Task-{} waits for submit again, expire in {}ms",
+                subtask.id(), node.name(), taskId, timeout);
+        // 超时由asyncSubtaskCache的过期监听处理，见TaskConfiguration
+        asyncSubtaskCache.put(subtask.id(), asyncSubtask, timeout);
+        return asyncSubtask;
+    }
+
+    private void recordCriticalPath(String workflow,
+                                    DAGTask<String, DAGResult<Map<String, Object>>> task) {
+        var path = task.criticalPath();
+        var segments = new long[path.size()];
+        long prev = task.startedAt();
+        for (int i = 0; i < segments.length; i++) {
+            long t = task.completedAt(path.get(i));
+            segments[i] = t - prev;
+            prev = t;
+        }
+        criticalPathStats.record(workflow, path, segments);
+    }
+
+    /**
+     * 子任务各阶段的时间
+     */
+    private static SubtaskTraceDto traceOf(String nodeName,
+                                           DAGTask<String, DAGResult<Map<String, Object>>> task,
+                                           Map<String, DAGNodeTrace> traces,
+                                           Set<String> criticalPath) {
+        long base = task.startedAt();
+        var dto = new SubtaskTraceDto();
+        dto.setReady(offset(base, task.readyAt(nodeName)));
+        dto.setDispatched(offset(base, task.dispatchedAt(nodeName)));
+        var trace = traces.get(nodeName);
+        if (null != trace) {
+            dto.setParamMade(offset(base, trace.paramMadeAt()));
+            dto.setReturned(offset(base, trace.returnedAt()));
+            dto.setSubmitted(offset(base, trace.submittedAt()));
+            dto.setCached(trace.cached());
+        }
+        dto.setCompleted(offset(base, task.completedAt(nodeName)));
+        dto.setCritical(criticalPath.contains(nodeName));
+        return dto;
+    }
+
+    /**
+     * @return 相对base的毫秒数，未发生返回null
+     */
+    private static Double offset(long base, long nanos) {
+        if (0 == base || 0 == nanos) return null;
+        return (nanos - base) / 1_000_000.0;
+    }
+
     public CompletableFuture<TaskDto> callTask(TaskStartDto start) {
         var verbose = start.isVerbose();
-        var future = runTask(start.getName(), start.getInput(), start.getTimeout());
+        // verbose需要返回每个节点的输出，不裁剪
+        var future = runTask(start.getName(), start.getInput(), start.getTimeout(), verbose);
         return future.thenApply(result -> {
             var dto = new TaskDto();
             dto.setId(result.id());
@@ -187,10 +435,17 @@ public class DAGTaskService {
             dto.setUpdatedAt(Instant.now());
             dto.setErrMsg(result.error());
             // TODO 更多数据
-            var originalResults = result.task().results();
+            var task = result.task();
+            var originalResults = task.results();
             var subtasks = result.subtaskNodeMap();
             var subs = new ArrayList<SubtaskDto>(subtasks.size());
             dto.setSubtasks(subs);
+            Set<String> criticalPath = Set.of();
+            if (verbose) {
+                var path = task.criticalPath();
+                dto.setCriticalPath(path);
+                criticalPath = new HashSet<>(path);
+            }
             for (var e : subtasks.entrySet()) {
                 var sd = new SubtaskDto();
                 subs.add(sd);
@@ -206,6 +461,9 @@ public class DAGTaskService {
                     }
                     sd.setErrMsg(r.getError());
                 }
+                if (verbose) {
+                    sd.setTrace(traceOf(e.getValue(), task, result.traces(), criticalPath));
+                }
             }
             return dto;
         });
@@ -221,6 +479,10 @@ public class DAGTaskService {
         log.debug("Subtask-{}/Node-{} submit async",
                 subtaskId, asyncSubtask.subtask().node().name());
 
+        var trace = asyncSubtask.subtask().trace();
+        if (null != trace) {
+            trace.submitted();
+        }
         try {
             var node = asyncSubtask.subtask().node();
             var codeVal = readParam(output, node.submitCode());
@@ -235,20 +497,39 @@ public class DAGTaskService {
     }
 
 
-    public TaskDto getTask(String taskId) {
+    /**
+     * 执行中的任务从缓存中取，已结束的从执行记录中取（enableTaskLog=true时）
+     *
+     * @param verbose 返回各子任务的时间和到目前为止的关键路径
+     */
+    public TaskDto getTask(String taskId, boolean verbose) {
         var ct = taskCache.get(taskId);
         if (null == ct) {
-            throw new NotFoundException();
+            var logged = taskLogService.find(taskId);
+            if (null == logged) {
+                throw new NotFoundException();
+            }
+            if (!verbose) {
+                logged.setCriticalPath(null);
+            }
+            return logged;
         }
-        var results = ct.task().results();
+        var task = ct.task();
+        var results = task.results();
         var dto = new TaskDto();
         var subtasks = ct.subtaskNodeMap();
         var subs = new ArrayList<SubtaskDto>(subtasks.size());
         dto.setSubtasks(subs);
+        Set<String> criticalPath = Set.of();
+        if (verbose) {
+            var path = task.criticalPath();
+            dto.setCriticalPath(path);
+            criticalPath = new HashSet<>(path);
+        }
         for (var e : subtasks.entrySet()) {
             String id = e.getKey();
             var key = e.getValue();
-            var node = nodeCache.get(key);
+            var node = ct.workflow().apply(key).node();
 
             var sd = new SubtaskDto();
             subs.add(sd);
@@ -261,6 +542,9 @@ public class DAGTaskService {
                 sd.setOutput(r.getData());
                 sd.setErrMsg(r.getError());
             }
+            if (verbose) {
+                sd.setTrace(traceOf(key, task, ct.traces(), criticalPath));
+            }
         }
         return dto;
     }
@@ -268,26 +552,37 @@ public class DAGTaskService {
 
     public Map<String, Object> stats(boolean verbose) {
         var data = new LinkedHashMap<String, Object>(4);
-        data.put("node", Map.of("size", nodeCache.size()));
-        data.put("workflow", Map.of("size", workflowCache.size()));
+        data.put("node", Map.of("size", nodeRegistry.size()));
+        data.put("workflow", Map.of("size", workflowRegistry.size()));
         if (verbose) {
             var ids = taskCache.stream((s, t) -> t.id()).collect(Collectors.toList());
+            var retained = taskCache.stream((s, t) -> Map.of(
+                    "id", t.id(),
+                    "retainedResults", t.task().retainedResults(),
+                    "maxRetainedResults", t.task().maxRetainedResults()
+            )).collect(Collectors.toList());
             data.put("task", Map.of(
                     "size", taskCache.size(),
                     "maxSize", taskCache.maxSize(),
-                    "list", ids
+                    "maxRetainedResults", maxRetainedResults.get(),
+                    "list", ids,
+                    "retained", retained
             ));
         } else {
 
             data.put("task", Map.of(
                     "size", taskCache.size(),
-                    "maxSize", taskCache.maxSize()
+                    "maxSize", taskCache.maxSize(),
+                    "maxRetainedResults", maxRetainedResults.get()
             ));
         }
         data.put("subtask", Map.of(
                 "size", asyncSubtaskCache.size(),
                 "sizeMax", asyncSubtaskCache.maxSize()
         ));
+        if (verbose) {
+            data.put("criticalPath", criticalPathStats.snapshot());
+        }
         return data;
     }
 
@@ -0,0 +1,82 @@
+package com.hikvision.hbfa.sf.handler.dag;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <h3>按时间排序的64位ID</h3>
+ * [41位 毫秒时间戳（自{@link #EPOCH}）][10位 节点号][12位 毫秒内序号]
+ * <ol>
+ *     <li>时间戳和序号打包在一个{@link AtomicLong}里CAS更新，无锁</li>
+ *     <li>一毫秒内序号用完或者时钟回拨时，向后借用时间戳，不等待，ID保持单调递增</li>
+ *     <li>不同实例必须配置不同的节点号</li>
+ * </ol>
+ */
+final
+public class SnowflakeGenerator implements SequenceGenerator<Long> {
+
+    // 2020-01-01T00:00:00Z
+    public static final long EPOCH = 1577836800000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+    private final LongSupplier clock;
+    // 时间戳<<SEQUENCE_BITS | 序号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeGenerator(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    SnowflakeGenerator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("node must be in [0, " + MAX_NODE + "]");
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    @Override
+    public Long next() {
+        return nextLong();
+    }
+
+    public long nextLong() {
+        while (true) {
+            long last = state.get();
+            long lastTime = last >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH;
+            long time, sequence;
+            if (now > lastTime) {
+                time = now;
+                sequence = 0;
+            } else {
+                time = lastTime;
+                sequence = (last & SEQUENCE_MASK) + 1;
+                if (sequence > SEQUENCE_MASK) {
+                    time++;
+                    sequence = 0;
+                }
+            }
+            if (state.compareAndSet(last, time << SEQUENCE_BITS | sequence)) {
+                return time << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | sequence;
+            }
+        }
+    }
+
+    /**
+     * @return ID中的时间（毫秒）
+     */
+    public static long timeOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+
+}
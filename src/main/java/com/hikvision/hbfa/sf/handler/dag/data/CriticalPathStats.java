@@ -0,0 +1,87 @@
+package com.hikvision.hbfa.sf.handler.dag.data;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3>按工作流汇总的关键路径</h3>
+ * 关键路径上每个节点贡献的时间是它与前一个节点完成时间的差（头节点从任务启动算起），
+ * 累加后可以看出哪些节点主导了端到端耗时。
+ */
+final
+public class CriticalPathStats {
+
+    private final ConcurrentMap<String, WorkflowStats> workflows = new ConcurrentHashMap<>();
+
+    /**
+     * @param workflow  工作流名
+     * @param path      关键路径上的节点名，从头节点开始
+     * @param segments  每个节点贡献的时间（纳秒），与path一一对应
+     */
+    public void record(String workflow, List<String> path, long[] segments) {
+        if (path.isEmpty()) return;
+        var ws = workflows.computeIfAbsent(workflow, k -> new WorkflowStats());
+        ws.tasks.increment();
+        for (int i = 0; i < segments.length; i++) {
+            ws.nodes.computeIfAbsent(path.get(i), k -> new NodeStats()).add(segments[i]);
+            ws.nanos.add(segments[i]);
+        }
+    }
+
+    /**
+     * @return 工作流 -> {tasks, avgMillis, nodes: 节点 -> {count, totalMillis, share}}，节点按累计时间降序
+     */
+    public Map<String, Object> snapshot() {
+        var data = new TreeMap<String, Object>();
+        for (var e : workflows.entrySet()) {
+            var ws = e.getValue();
+            long tasks = ws.tasks.sum();
+            long total = ws.nanos.sum();
+
+            var nodes = new ArrayList<Map.Entry<String, NodeStats>>(ws.nodes.entrySet());
+            nodes.sort(Comparator.comparingLong(
+                    (Map.Entry<String, NodeStats> n) -> n.getValue().nanos.sum()).reversed());
+            var nodeData = new LinkedHashMap<String, Object>(nodes.size());
+            for (var n : nodes) {
+                long nanos = n.getValue().nanos.sum();
+                nodeData.put(n.getKey(), Map.of(
+                        "count", n.getValue().count.sum(),
+                        "totalMillis", millis(nanos),
+                        "share", total > 0 ? (double) nanos / total : 0.0
+                ));
+            }
+            data.put(e.getKey(), Map.of(
+                    "tasks", tasks,
+                    "avgMillis", tasks > 0 ? millis(total) / tasks : 0.0,
+                    "nodes", nodeData
+            ));
+        }
+        return data;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+
+    //
+
+    private static final class WorkflowStats {
+        final LongAdder tasks = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final ConcurrentMap<String, NodeStats> nodes = new ConcurrentHashMap<>();
+    }
+
+    private static final class NodeStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        void add(long n) {
+            count.increment();
+            nanos.add(n);
+        }
+    }
+
+}
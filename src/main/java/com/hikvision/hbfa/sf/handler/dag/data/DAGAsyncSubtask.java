@@ -1,6 +1,7 @@
 package com.hikvision.hbfa.sf.handler.dag.data;
 
 import com.hikvision.hbfa.sf.dag.DAGResult;
+import com.hikvision.hbfa.sf.handler.dag.CallTimeoutException;
 
 import java.util.Map;
 import java.util.Objects;
@@ -9,6 +10,7 @@ import java.util.concurrent.CompletableFuture;
 public class DAGAsyncSubtask extends
         CompletableFuture<DAGResult<Map<String, Object>>> {
     private final DAGSubtask subtask;
+    private volatile CompletableFuture<?> call;
 
     public DAGAsyncSubtask(DAGSubtask subtask) {
         this.subtask = Objects.requireNonNull(subtask);
@@ -17,4 +19,23 @@ public class DAGAsyncSubtask extends
     public DAGSubtask subtask() {
         return subtask;
     }
+
+    /**
+     * 关联发起的调用，超时时一起取消
+     */
+    public void bindCall(CompletableFuture<?> call) {
+        this.call = call;
+    }
+
+    /**
+     * 超时：取消调用，并以{@link CallTimeoutException}结束
+     */
+    public boolean expire() {
+        var c = call;
+        if (null != c) {
+            c.cancel(false);
+        }
+        return completeExceptionally(new CallTimeoutException(
+                "Subtask-" + subtask.id() + " timeout."));
+    }
 }
@@ -2,6 +2,7 @@ package com.hikvision.hbfa.sf.handler.dag.data;
 
 import com.hikvision.hbfa.sf.dag.DAGResult;
 import com.hikvision.hbfa.sf.dag.DAGTask;
+import com.hikvision.hbfa.sf.handler.dag.CallTimeoutException;
 
 import java.util.Map;
 
@@ -9,24 +10,30 @@ import static java.util.Objects.requireNonNull;
 
 public class DAGCachedTask {
     private final String id;
-    private final String workflow;
+    private final DAGWorkflow workflow;
     private final DAGTask<String, DAGResult<Map<String, Object>>> task;
     private final Map<String, String> subtaskNodeMap;
+    private final Map<String, DAGNodeTrace> traces;
 
-    public DAGCachedTask(String id, String workflow,
+    public DAGCachedTask(String id, DAGWorkflow workflow,
                          DAGTask<String, DAGResult<Map<String, Object>>> task,
-                         Map<String, String> subtaskNodeMap) {
+                         Map<String, String> subtaskNodeMap,
+                         Map<String, DAGNodeTrace> traces) {
         this.id = requireNonNull(id);
         this.workflow = requireNonNull(workflow);
         this.task = requireNonNull(task);
         this.subtaskNodeMap = requireNonNull(subtaskNodeMap);
+        this.traces = requireNonNull(traces);
     }
 
     public String id() {
         return id;
     }
 
-    public String workflow() {
+    /**
+     * @return 任务开始时的工作流快照
+     */
+    public DAGWorkflow workflow() {
         return workflow;
     }
 
@@ -38,4 +45,17 @@ public class DAGCachedTask {
         return subtaskNodeMap;
     }
 
+    public Map<String, DAGNodeTrace> traces() {
+        return traces;
+    }
+
+    /**
+     * 超时：取消任务，并以{@link CallTimeoutException}结束
+     */
+    public boolean expire() {
+        task.cancel(false);
+        return task.completeExceptionally(
+                new CallTimeoutException("Task-" + id + " timeout"));
+    }
+
 }
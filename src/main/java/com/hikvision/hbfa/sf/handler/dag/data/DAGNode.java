@@ -3,6 +3,7 @@ package com.hikvision.hbfa.sf.handler.dag.data;
 import com.hikvision.hbfa.sf.entity.Node;
 import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.entity.enumeration.ResultCode;
+import com.hikvision.hbfa.sf.entity.json.CacheConfig;
 import com.hikvision.hbfa.sf.entity.json.SubmitConfig;
 import com.hikvision.hbfa.sf.util.MapUtil;
 
@@ -23,6 +24,8 @@ public class DAGNode {
     private final SubmitConfig submitConfig;
 
     private final int maxRetries;
+    // 未启用时为null
+    private final CacheConfig cacheConfig;
 
     public DAGNode(Node n) {
         id = n.getId();
@@ -37,6 +40,8 @@ public class DAGNode {
             submitConfig = new SubmitConfig();
         }
         maxRetries = n.getMaxRetries();
+        var cc = n.getCacheConfig();
+        cacheConfig = null != cc && cc.enabled() && !async ? cc : null;
     }
 
     public Long id() {
@@ -87,6 +92,13 @@ public class DAGNode {
         return maxRetries;
     }
 
+    /**
+     * @return 结果缓存的配置，未启用（包括异步节点）时为null
+     */
+    public CacheConfig cacheConfig() {
+        return cacheConfig;
+    }
+
 
     @Override
     public boolean equals(Object o) {
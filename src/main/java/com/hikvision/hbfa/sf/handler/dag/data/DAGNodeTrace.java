@@ -0,0 +1,50 @@
+package com.hikvision.hbfa.sf.handler.dag.data;
+
+/**
+ * 节点内部的时间点（System.nanoTime），0表示未发生：
+ * 参数生成、调用返回（异步节点是受理，命中结果缓存时是拿到缓存的结果）、异步回传。
+ * 就绪、派发、完成的时间由{@link com.hikvision.hbfa.sf.dag.DAGTask}记录。
+ */
+public class DAGNodeTrace {
+    private volatile long paramMadeAt;
+    private volatile long returnedAt;
+    private volatile long submittedAt;
+    private volatile boolean cached;
+
+    public void paramMade() {
+        paramMadeAt = System.nanoTime();
+    }
+
+    public void returned() {
+        returnedAt = System.nanoTime();
+    }
+
+    /**
+     * 命中节点结果缓存，没有调用节点
+     */
+    public void cacheHit() {
+        cached = true;
+        returnedAt = System.nanoTime();
+    }
+
+    public void submitted() {
+        submittedAt = System.nanoTime();
+    }
+
+    public long paramMadeAt() {
+        return paramMadeAt;
+    }
+
+    public long returnedAt() {
+        return returnedAt;
+    }
+
+    public long submittedAt() {
+        return submittedAt;
+    }
+
+    public boolean cached() {
+        return cached;
+    }
+
+}
@@ -9,13 +9,24 @@ public class DAGSubtask {
     private final String taskId;
     private final DAGNode node;
     private final Map<String, Object> input;
+    private final DAGNodeTrace trace;
 
     public DAGSubtask(String id, String taskId,
                       DAGNode node, Map<String, Object> input) {
+        this(id, taskId, node, input, null);
+    }
+
+    /**
+     * @param trace 节点的时间记录，null则不记录
+     */
+    public DAGSubtask(String id, String taskId,
+                      DAGNode node, Map<String, Object> input,
+                      DAGNodeTrace trace) {
         this.id = Objects.requireNonNull(id);
         this.taskId = Objects.requireNonNull(taskId);
         this.node = Objects.requireNonNull(node);
         this.input = Objects.requireNonNull(input);
+        this.trace = trace;
     }
 
     public String id() {
@@ -34,6 +45,13 @@ public class DAGSubtask {
         return input;
     }
 
+    /**
+     * @return 节点的时间记录，可能为null
+     */
+    public DAGNodeTrace trace() {
+        return trace;
+    }
+
 
     @Override
     public String toString() {
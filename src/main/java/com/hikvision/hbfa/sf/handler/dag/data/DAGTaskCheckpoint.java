@@ -0,0 +1,99 @@
+package com.hikvision.hbfa.sf.handler.dag.data;
+
+import com.hikvision.hbfa.sf.dag.DAGResult;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * 从检查点恢复的未结束任务
+ */
+public class DAGTaskCheckpoint {
+    private final String id;
+    private final String workflow;
+    private final Map<String, Object> input;
+    private final Instant startTime;
+    private final Instant deadline;
+    // 已完成节点的结果
+    private final Map<String, DAGResult<Map<String, Object>>> results;
+    // 已完成节点的子任务ID对应的节点名
+    private final Map<String, String> subtaskNodeMap;
+    // 等待回传的异步子任务，按节点名
+    private final Map<String, PendingAsync> asyncs;
+
+    public DAGTaskCheckpoint(String id, String workflow,
+                             Map<String, Object> input,
+                             Instant startTime, Instant deadline,
+                             Map<String, DAGResult<Map<String, Object>>> results,
+                             Map<String, String> subtaskNodeMap,
+                             Map<String, PendingAsync> asyncs) {
+        this.id = requireNonNull(id);
+        this.workflow = requireNonNull(workflow);
+        this.input = input;
+        this.startTime = requireNonNull(startTime);
+        this.deadline = requireNonNull(deadline);
+        this.results = requireNonNull(results);
+        this.subtaskNodeMap = requireNonNull(subtaskNodeMap);
+        this.asyncs = requireNonNull(asyncs);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String workflow() {
+        return workflow;
+    }
+
+    public Map<String, Object> input() {
+        return input;
+    }
+
+    public Instant startTime() {
+        return startTime;
+    }
+
+    public Instant deadline() {
+        return deadline;
+    }
+
+    public Map<String, DAGResult<Map<String, Object>>> results() {
+        return results;
+    }
+
+    public Map<String, String> subtaskNodeMap() {
+        return subtaskNodeMap;
+    }
+
+    public Map<String, PendingAsync> asyncs() {
+        return asyncs;
+    }
+
+
+    public static class PendingAsync {
+        private final String subtaskId;
+        private final Map<String, Object> input;
+        private final Instant deadline;
+
+        public PendingAsync(String subtaskId, Map<String, Object> input, Instant deadline) {
+            this.subtaskId = requireNonNull(subtaskId);
+            this.input = requireNonNull(input);
+            this.deadline = requireNonNull(deadline);
+        }
+
+        public String subtaskId() {
+            return subtaskId;
+        }
+
+        public Map<String, Object> input() {
+            return input;
+        }
+
+        public Instant deadline() {
+            return deadline;
+        }
+    }
+
+}
@@ -14,6 +14,7 @@ public class DAGTaskResult {
     private final Map<String, Object> output;
     private final DAGTask<String, DAGResult<Map<String, Object>>> task;
     private final Map<String, String> subtaskNodeMap;
+    private final Map<String, DAGNodeTrace> traces;
     private final Instant startTime;
     private final String error;
 
@@ -23,6 +24,7 @@ public class DAGTaskResult {
                          Map<String, Object> input, Map<String, Object> output,
                          DAGTask<String, DAGResult<Map<String, Object>>> task,
                          Map<String, String> subtaskNodeMap,
+                         Map<String, DAGNodeTrace> traces,
                          Instant startTime,
                          String error) {
         this.success = success;
@@ -32,6 +34,7 @@ public class DAGTaskResult {
         this.output = output;
         this.task = task;
         this.subtaskNodeMap = subtaskNodeMap;
+        this.traces = traces;
         this.startTime = startTime;
         this.error = error;
     }
@@ -64,6 +67,10 @@ public class DAGTaskResult {
         return subtaskNodeMap;
     }
 
+    public Map<String, DAGNodeTrace> traces() {
+        return traces;
+    }
+
     public Instant startTime() {
         return startTime;
     }
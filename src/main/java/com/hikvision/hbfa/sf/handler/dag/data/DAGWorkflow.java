@@ -4,23 +4,34 @@ import com.hikvision.hbfa.sf.dag.DAGGraph;
 import com.hikvision.hbfa.sf.entity.Workflow;
 import com.hikvision.hbfa.sf.entity.enumeration.CallType;
 import com.hikvision.hbfa.sf.util.MapUtil;
+import com.hikvision.hbfa.sf.util.ParameterTemplate;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 
+/**
+ * 工作流的不可变快照：图、编译好的输入模板和各节点的{@link DAGNode}版本。
+ * 工作流或者其中的节点更新时生成新版本的快照整体替换，运行中的任务固定使用开始时的快照。
+ */
 public class DAGWorkflow implements Function<String, DAGWorkflow.DAGNodeIo> {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
     private final Long id;
     private final String name;
+    private final long version;
 
     private final Map<String, Object> outputParameters;
+    private final ParameterTemplate outputTemplate;
 
     private final CallType notifier;
     private final String notifierConfig;
 
     private final long timeout;
+    private final boolean durable;
 
     private final DAGGraph<String> graph;
 
@@ -31,10 +42,13 @@ public class DAGWorkflow implements Function<String, DAGWorkflow.DAGNodeIo> {
                        List<Map.Entry<String, String>> edges) {
         id = w.getId();
         name = w.getName();
+        version = VERSIONS.incrementAndGet();
         outputParameters = MapUtil.copyOf(w.getOutputParameters());
+        outputTemplate = ParameterTemplate.compile(outputParameters);
         notifier = w.getNotifier();
         notifierConfig = w.getNotifierConfig();
         timeout = w.getTimeout();
+        durable = w.isDurable();
 
         var ioMap = new HashMap<String, DAGNodeIo>(ios.size());
         for (var io : ios) {
@@ -44,6 +58,33 @@ public class DAGWorkflow implements Function<String, DAGWorkflow.DAGNodeIo> {
         this.graph = new DAGGraph<>(ioMap.keySet(), edges);
     }
 
+    private DAGWorkflow(DAGWorkflow w, Map<String, DAGNodeIo> ioMap) {
+        id = w.id;
+        name = w.name;
+        version = VERSIONS.incrementAndGet();
+        outputParameters = w.outputParameters;
+        outputTemplate = w.outputTemplate;
+        notifier = w.notifier;
+        notifierConfig = w.notifierConfig;
+        timeout = w.timeout;
+        durable = w.durable;
+        graph = w.graph;
+        this.ioMap = ioMap;
+    }
+
+    /**
+     * @return 使用新版本节点的快照，不包含该节点时返回自身
+     */
+    public DAGWorkflow withNode(DAGNode node) {
+        var io = ioMap.get(node.name());
+        if (null == io || io.node() == node) {
+            return this;
+        }
+        var ioMap = new HashMap<>(this.ioMap);
+        ioMap.put(node.name(), io.withNode(node));
+        return new DAGWorkflow(this, ioMap);
+    }
+
     public Long id() {
         return id;
     }
@@ -52,10 +93,21 @@ public class DAGWorkflow implements Function<String, DAGWorkflow.DAGNodeIo> {
         return name;
     }
 
+    /**
+     * @return 快照版本，进程内递增
+     */
+    public long version() {
+        return version;
+    }
+
     public Map<String, Object> outputParameters() {
         return outputParameters;
     }
 
+    public ParameterTemplate outputTemplate() {
+        return outputTemplate;
+    }
+
     public CallType notifier() {
         return notifier;
     }
@@ -68,6 +120,13 @@ public class DAGWorkflow implements Function<String, DAGWorkflow.DAGNodeIo> {
         return timeout;
     }
 
+    /**
+     * @return 是否记录检查点，重启后恢复未结束的任务
+     */
+    public boolean durable() {
+        return durable;
+    }
+
 
     public DAGGraph<String> graph() {
         return graph;
@@ -81,19 +140,23 @@ public class DAGWorkflow implements Function<String, DAGWorkflow.DAGNodeIo> {
 
     @Override
     public String toString() {
-        return "Workflow(" + name + ')';
+        return "Workflow(" + name + '@' + version + ')';
     }
 
     public static class DAGNodeIo {
-        private final String nodeName;
+        private final DAGNode node;
+        // 工作流中配置的参数，节点更新时重新与默认参数合并
+        private final Map<String, Object> ioParameters;
         private final Map<String, Object> inputParameters;
+        private final ParameterTemplate inputTemplate;
         private final boolean ignoreError;
 
-        public DAGNodeIo(String nodeName,
-                         Map<String, Object> defaultArguments,
+        public DAGNodeIo(DAGNode node,
                          Map<String, Object> inputParameters,
                          boolean ignoreError) {
-            this.nodeName = nodeName;
+            this.node = node;
+            this.ioParameters = inputParameters;
+            var defaultArguments = node.defaultArguments();
             if (null == defaultArguments) {
                 if (null == inputParameters) {
                     this.inputParameters = null;
@@ -109,17 +172,30 @@ public class DAGWorkflow implements Function<String, DAGWorkflow.DAGNodeIo> {
                     this.inputParameters = MapUtil.copyOf(parameters);
                 }
             }
+            this.inputTemplate = ParameterTemplate.compile(this.inputParameters);
             this.ignoreError = ignoreError;
         }
 
+        DAGNodeIo withNode(DAGNode node) {
+            return new DAGNodeIo(node, ioParameters, ignoreError);
+        }
+
         public String nodeName() {
-            return nodeName;
+            return node.name();
+        }
+
+        public DAGNode node() {
+            return node;
         }
 
         public Map<String, Object> inputParameters() {
             return inputParameters;
         }
 
+        public ParameterTemplate inputTemplate() {
+            return inputTemplate;
+        }
+
         public boolean ignoreError() {
             return ignoreError;
         }
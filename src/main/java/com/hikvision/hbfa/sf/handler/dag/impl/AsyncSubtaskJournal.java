@@ -0,0 +1,151 @@
+package com.hikvision.hbfa.sf.handler.dag.impl;
+
+import com.hikvision.hbfa.sf.config.TaskProperties;
+import com.hikvision.hbfa.sf.entity.json.ObjectMap;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGSubtask;
+import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.MappedJournal;
+import com.hikvision.hbfa.sf.util.MeterUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <h3>等待回传的异步子任务日志</h3>
+ * 启用时（task.async-journal.enabled）异步子任务的参数写入{@link MappedJournal}（堆外），
+ * asyncSubtaskCache中的子任务不再持有参数，需要时从日志中读取。
+ * <p>
+ * 记录：子任务ID -> 任务ID、节点名、超时时刻、JSON参数；子任务结束时删除。
+ * 重启后没有被恢复的任务重新登记的记录已经无法回传，记录日志后删除。
+ * <p>
+ * 指标：taskflow.journal.entries、taskflow.journal.segments（name=async）
+ */
+@Slf4j
+@Component
+public class AsyncSubtaskJournal {
+
+    // null表示未启用
+    private final MappedJournal journal;
+
+    public AsyncSubtaskJournal(TaskProperties properties) {
+        var config = properties.getAsyncJournal();
+        if (!config.isEnabled()) {
+            this.journal = null;
+            return;
+        }
+        this.journal = new MappedJournal(Path.of(config.getDir()),
+                (int) config.getSegmentSize().toBytes());
+        MeterUtil.gauge("journal.entries", journal, MappedJournal::size, "name", "async");
+        MeterUtil.gauge("journal.segments", journal, MappedJournal::segmentCount, "name", "async");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (null != journal) {
+            journal.close();
+        }
+    }
+
+    /**
+     * 记录异步节点的子任务
+     *
+     * @param timeout 等待回传的超时（毫秒）
+     * @return 不持有参数的子任务；未启用或者不是异步节点时原样返回
+     */
+    public DAGSubtask track(DAGSubtask subtask, long timeout) {
+        if (null == journal || !subtask.node().async()) {
+            return subtask;
+        }
+        journal.put(subtask.id(), encode(subtask, Instant.now().plusMillis(timeout)));
+        return new DAGSubtask(subtask.id(), subtask.taskId(), subtask.node(), Map.of(), subtask.trace());
+    }
+
+    /**
+     * 子任务结束
+     */
+    public void untrack(String subtaskId) {
+        if (null != journal) {
+            journal.remove(subtaskId);
+        }
+    }
+
+    /**
+     * @return 子任务的参数，已写入日志的从日志中读取
+     */
+    public Map<String, Object> inputOf(DAGSubtask subtask) {
+        if (null == journal || !subtask.input().isEmpty()) {
+            return subtask.input();
+        }
+        var value = journal.get(subtask.id());
+        return null != value ? decode(value).input : subtask.input();
+    }
+
+    /**
+     * 删除重启前留下的、不会再回传的记录
+     *
+     * @param resumed 恢复的任务中重新等待回传的子任务ID
+     * @return 删除的记录数
+     */
+    public int expireOrphans(Set<String> resumed) {
+        if (null == journal) {
+            return 0;
+        }
+        var orphans = new ArrayList<Map.Entry<String, Entry>>();
+        journal.forEach((id, value) -> {
+            if (!resumed.contains(id)) {
+                orphans.add(Map.entry(id, decode(value)));
+            }
+        });
+        for (var e : orphans) {
+            var entry = e.getValue();
+            log.warn("Subtask-{}/Node-{} of Task-{} lost after restart, deadline {}: {}",
+                    e.getKey(), entry.node, entry.taskId, entry.deadline, JsonUtil.lazyJson(entry.input));
+            journal.remove(e.getKey());
+        }
+        return orphans.size();
+    }
+
+
+    //
+
+    private static byte[] encode(DAGSubtask subtask, Instant deadline) {
+        var bytes = new ByteArrayOutputStream(256);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeUTF(subtask.taskId());
+            out.writeUTF(subtask.node().name());
+            out.writeLong(deadline.toEpochMilli());
+            JsonUtil.writeJson(out, subtask.input());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] value) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(value))) {
+            var entry = new Entry();
+            entry.taskId = in.readUTF();
+            entry.node = in.readUTF();
+            entry.deadline = Instant.ofEpochMilli(in.readLong());
+            entry.input = JsonUtil.readJson(in, ObjectMap.class);
+            return entry;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Entry {
+        String taskId;
+        String node;
+        Instant deadline;
+        Map<String, Object> input;
+    }
+
+}
@@ -1,23 +1,25 @@
 package com.hikvision.hbfa.sf.handler.dag.impl;
 
 import com.hikvision.hbfa.sf.config.SubmitManager;
+import com.hikvision.hbfa.sf.config.TaskProperties;
 import com.hikvision.hbfa.sf.dag.DAGResult;
 import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.handler.dag.SequenceGenerator;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGSubtask;
 import com.hikvision.hbfa.sf.util.*;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 
 import static com.hikvision.hbfa.sf.util.ParameterUtil.*;
 
@@ -28,19 +30,22 @@ public class BatchDAGNodeExecutor
         BatchDAGNodeExecutor.BatchConfig> {
 
     final SequenceGenerator<String> IDGenerator;
-    final SimpleCache<Object, DAGNode> nodeCache;
+    final NamedRegistry<DAGNode> nodeRegistry;
     final SubmitManager submitManager;
     final DAGNodeService dagNodeService;
+    final TaskProperties properties;
 
     public BatchDAGNodeExecutor(@Lazy DAGNodeService dagNodeService,
-                                SimpleCache<Object, DAGNode> nodeCache,
+                                NamedRegistry<DAGNode> nodeRegistry,
                                 SubmitManager submitManager,
-                                SequenceGenerator<String> IDGenerator) {
+                                SequenceGenerator<String> IDGenerator,
+                                TaskProperties properties) {
         super(BatchConfig.class);
         this.dagNodeService = dagNodeService;
-        this.nodeCache = nodeCache;
+        this.nodeRegistry = nodeRegistry;
         this.submitManager = submitManager;
         this.IDGenerator = IDGenerator;
+        this.properties = properties;
     }
 
 
@@ -70,27 +75,20 @@ public class BatchDAGNodeExecutor
             return CompletableFuture.completedFuture(DAGResult.error(
                     "value of '" + dataKey + "' is not Collection"));
         }
-        var c = (Collection<?>) l;
-
-        var subNode = nodeCache.get(config.getNodeName());
-        Map<String, Object> inputParameters;
-        var defaultArguments = subNode.defaultArguments();
-        var forkParameters = config.getForkParameters();
-        if (null == defaultArguments) {
-            inputParameters = forkParameters;
-        } else {
-            if (null == forkParameters) {
-                inputParameters = defaultArguments;
-            } else {
-                var temp = new HashMap<>(defaultArguments);
-                MapUtil.deepMerge(temp, forkParameters);
-                inputParameters = temp;
-            }
-        }
+        var items = l instanceof List ? (List<?>) l : new ArrayList<>((Collection<?>) l);
+        var chunkSize = Math.max(1, config.getChunkSize());
+        var size = (items.size() + chunkSize - 1) / chunkSize;
+        var concurrency = config.getMaxConcurrency() > 0
+                ? config.getMaxConcurrency() : properties.getBatchConcurrency();
+
+        var subNode = nodeRegistry.getByName(config.getNodeName());
+        var forkTemplate = config.forkTemplate(subNode.defaultArguments());
 
-        var futures = new ArrayList<CompletableFuture<DAGResult<Map<String, Object>>>>(c.size());
         var executor = dagNodeService.nodeExecutor(subtask.taskId(), null);
-        for (var arg : c) {
+        // 滑动窗口：参数在开始执行时才构造，完成一个再开始下一个
+        IntFunction<CompletableFuture<DAGResult<Map<String, Object>>>> fork = index -> {
+            Object arg = chunkSize == 1 ? items.get(index)
+                    : items.subList(index * chunkSize, Math.min(items.size(), (index + 1) * chunkSize));
             var subSubId = IDGenerator.next();
             log.debug("Subtask-{}'s batch call Subtask-{} argument: {}", id, subSubId, JsonUtil.lazyJson(arg));
             var arguments = new HashMap<String, Object>(5);
@@ -98,10 +96,10 @@ public class BatchDAGNodeExecutor
             arguments.put(KEY_TASK, Map.of(KEY_ID, subtask.taskId()));
             arguments.put(KEY_INPUT, arg);
             arguments.put(KEY_NAME, subNode.name());
-            if (subNode.async()) {
+            if (subNode.async() && forkTemplate.references(KEY_SUBMIT)) {
                 submitManager.addSubmitArguments(arguments, subNode.id(), subSubId);
             }
-            var subInput = replaceAllParams(inputParameters, arguments);
+            var subInput = forkTemplate.apply(arguments);
             log.debug("Subtask-{}'s batch call Subtask-{}: {}", id, subSubId, JsonUtil.lazyJson(subInput));
             var future = executor.apply(subSubId, config.getNodeName(), subInput);
             future.whenComplete((r, e) -> {
@@ -115,40 +113,74 @@ public class BatchDAGNodeExecutor
                     log.debug("Subtask-{}/Batch-{} exception", id, subSubId, e);
                 }
             });
-            futures.add(future);
-        }
+            return future;
+        };
 
         var faultTolerant = config.faultTolerant;
-        var joinParameters = config.getJoinParameters();
-        return FutureUtil.collect(futures, Collectors.toList()).thenApply(results -> {
-            var list = new ArrayList<Map<String, Object>>(results.size());
-            var errors = new ArrayList<String>(results.size());
-            for (var result : results) {
-                if (result.isSuccess()) {
-                    list.add(result.getData());
-                } else {
-                    errors.add(result.getError());
+        // 不容错时，有一个失败就取消其余的
+        Predicate<DAGResult<Map<String, Object>>> abort = !faultTolerant && config.failFast
+                ? r -> !r.isSuccess() : null;
+        var indexed = config.indexed;
+        var joinTemplate = config.joinTemplate();
+        return FutureUtil.window(size, concurrency, fork, abort)
+                .thenApply(results -> join(results, indexed, faultTolerant, dataKey, joinTemplate));
+    }
+
+    /**
+     * 合并子调用的结果，results中的null是中止后未执行的
+     */
+    static DAGResult<Map<String, Object>> join(List<DAGResult<Map<String, Object>>> results,
+                                               boolean indexed, boolean faultTolerant,
+                                               String dataKey, ParameterTemplate joinTemplate) {
+        var list = new ArrayList<Map<String, Object>>(results.size());
+        var errors = new ArrayList<String>(results.size());
+        int successes = 0;
+        for (int i = 0; i < results.size(); i++) {
+            var result = results.get(i);
+            if (null == result) {
+                continue;
+            }
+            if (result.isSuccess()) {
+                successes++;
+                list.add(indexed ? indexedItem(i, result) : result.getData());
+            } else {
+                errors.add(result.getError());
+                if (indexed) {
+                    list.add(indexedItem(i, result));
                 }
             }
+        }
 
-            // 全错
-            if (list.isEmpty()) {
+        // 全错
+        if (successes == 0) {
+            return DAGResult.error(String.join(",", errors));
+        }
+        // 部分错
+        if (!errors.isEmpty()) {
+            // 容错
+            if (faultTolerant) {
+                return new DAGResult<>(true,
+                        joinTemplate.apply(Map.of(dataKey, list)),
+                        String.join(",", errors));
+            } else {
                 return DAGResult.error(String.join(",", errors));
             }
-            // 部分错
-            if (!errors.isEmpty()) {
-                // 容错
-                if (faultTolerant) {
-                    return new DAGResult<>(true,
-                            replaceAllParams(joinParameters, Map.of(dataKey, list)),
-                            String.join(",", errors));
-                } else {
-                    return DAGResult.error(String.join(",", errors));
-                }
-            }
-            // 无错
-            return DAGResult.success(replaceAllParams(joinParameters, Map.of(dataKey, list)));
-        });
+        }
+        // 无错
+        return DAGResult.success(joinTemplate.apply(Map.of(dataKey, list)));
+    }
+
+
+    private static Map<String, Object> indexedItem(int index, DAGResult<Map<String, Object>> result) {
+        var item = new HashMap<String, Object>(4);
+        item.put(KEY_INDEX, index);
+        if (result.isSuccess()) {
+            item.put(KEY_OUTPUT, result.getData());
+        }
+        if (null != result.getError()) {
+            item.put(KEY_ERROR, result.getError());
+        }
+        return item;
     }
 
 
@@ -159,6 +191,55 @@ public class BatchDAGNodeExecutor
         private Map<String, Object> forkParameters;
         private Map<String, Object> joinParameters;
         private boolean faultTolerant;
+        // 同时执行的子调用上限，<=0使用task.batch-concurrency
+        private int maxConcurrency;
+        // 每个子调用处理的元素数，>1时子调用的input是元素列表
+        private int chunkSize = 1;
+        // 不容错时，有一个子调用失败就取消未完成的、不再开始新的
+        private boolean failFast;
+        // 输出每个子调用的{index, output, error}，失败的也输出；否则只输出成功的output
+        private boolean indexed;
+
+        // 编译后的模板，随配置对象一起缓存
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private transient volatile Map.Entry<Map<String, Object>, ParameterTemplate> forkTemplate;
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private transient volatile ParameterTemplate joinTemplate;
+
+        /**
+         * 子节点的默认参数合并forkParameters后编译，默认参数变了（节点更新）则重新编译
+         */
+        ParameterTemplate forkTemplate(Map<String, Object> defaultArguments) {
+            var t = forkTemplate;
+            if (null == t || t.getKey() != defaultArguments) {
+                Map<String, Object> inputParameters;
+                if (null == defaultArguments) {
+                    inputParameters = forkParameters;
+                } else {
+                    if (null == forkParameters) {
+                        inputParameters = defaultArguments;
+                    } else {
+                        var temp = new HashMap<>(defaultArguments);
+                        MapUtil.deepMerge(temp, forkParameters);
+                        inputParameters = temp;
+                    }
+                }
+                t = new AbstractMap.SimpleImmutableEntry<>(defaultArguments,
+                        ParameterTemplate.compile(inputParameters));
+                forkTemplate = t;
+            }
+            return t.getValue();
+        }
+
+        ParameterTemplate joinTemplate() {
+            var t = joinTemplate;
+            if (null == t) {
+                joinTemplate = t = ParameterTemplate.compile(joinParameters);
+            }
+            return t;
+        }
     }
 
 }
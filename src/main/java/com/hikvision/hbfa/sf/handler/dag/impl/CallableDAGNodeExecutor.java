@@ -4,7 +4,6 @@ import com.hikvision.hbfa.sf.dag.DAGResult;
 import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.entity.enumeration.ResultCode;
 import com.hikvision.hbfa.sf.handler.call.Callable;
-import com.hikvision.hbfa.sf.handler.dag.CallTimeoutException;
 import com.hikvision.hbfa.sf.handler.dag.DAGNodeExecutor;
 import com.hikvision.hbfa.sf.handler.dag.RetryException;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGAsyncSubtask;
@@ -23,16 +22,19 @@ public class CallableDAGNodeExecutor implements DAGNodeExecutor {
     private final NodeType type;
     private final Callable<?> callable;
     private final ExpiringCache<String, DAGAsyncSubtask> asyncSubtaskCache;
+    private final AsyncSubtaskJournal asyncSubtaskJournal;
     private final Executor executor;
 
     public CallableDAGNodeExecutor(
             NodeType type,
             Callable<?> callable,
             ExpiringCache<String, DAGAsyncSubtask> asyncSubtaskCache,
+            AsyncSubtaskJournal asyncSubtaskJournal,
             Executor executor) {
         this.type = type;
         this.callable = callable;
         this.asyncSubtaskCache = asyncSubtaskCache;
+        this.asyncSubtaskJournal = asyncSubtaskJournal;
         this.executor = executor;
     }
 
@@ -47,18 +49,18 @@ public class CallableDAGNodeExecutor implements DAGNodeExecutor {
         var call = callable.asyncCall(subtask.id(), subtask.node().config(), subtask.input());
         // 异步调用返回成功，缓存并等待回传数据
         var timeout = subtask.node().timeout();
-        var asyncSubtask = new DAGAsyncSubtask(subtask);
+        // 异步节点的参数写入日志，缓存中不再持有
+        var asyncSubtask = new DAGAsyncSubtask(asyncSubtaskJournal.track(subtask, timeout));
+        asyncSubtask.whenComplete((r, e) -> asyncSubtaskJournal.untrack(subtask.id()));
         log.debug("Subtask-{} put in cache, expire in {}",
                 subtask.id(), timeout);
-        asyncSubtaskCache.set(subtask.id(), asyncSubtask, timeout).thenAcceptAsync(e -> {
-            var s = e.getValue();
-            log.warn("Subtask-{}/Node-{} expired: {}",
-                    s.subtask().id(), s.subtask().node().name(),
-                    JsonUtil.lazyJson(s.subtask().input()));
-            call.cancel(false);
-            s.completeExceptionally(new CallTimeoutException(
-                    "Subtask-" + s.subtask().id() + " timeout."));
-        }, executor);
+        // 超时由asyncSubtaskCache的过期监听处理，见TaskConfiguration
+        asyncSubtask.bindCall(call);
+        asyncSubtaskCache.put(subtask.id(), asyncSubtask, timeout);
+        var trace = subtask.trace();
+        if (null != trace) {
+            call.whenComplete((ret, e) -> trace.returned());
+        }
         call.whenCompleteAsync((ret, e) -> {
             var node = subtask.node();
             if (null != e) {
@@ -4,6 +4,7 @@ import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.handler.call.Callable;
 import com.hikvision.hbfa.sf.handler.dag.DAGNodeExecutor;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGAsyncSubtask;
+import com.hikvision.hbfa.sf.util.EventLoopGroup;
 import com.hikvision.hbfa.sf.util.ExpiringCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.SingletonBeanRegistry;
@@ -12,7 +13,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -22,7 +22,7 @@ public class DAGHandlerConfiguration {
     @Autowired
     ExpiringCache<String, DAGAsyncSubtask> asyncSubtaskCache;
     @Autowired
-    ExecutorService taskExecutor;
+    EventLoopGroup taskLoops;
 
 
     @Bean
@@ -30,7 +30,8 @@ public class DAGHandlerConfiguration {
             ApplicationContext context,
             List<Callable<?>> callables,
             ExpiringCache<String, DAGAsyncSubtask> asyncSubtaskCache,
-            ExecutorService taskExecutor) {
+            AsyncSubtaskJournal asyncSubtaskJournal,
+            EventLoopGroup taskLoops) {
         var beanFactory = (SingletonBeanRegistry) context.getAutowireCapableBeanFactory();
         var mm = NodeType.values().stream()
                 .filter(nt -> nt.callType() != null)
@@ -41,7 +42,9 @@ public class DAGHandlerConfiguration {
                     type,
                     callable,
                     asyncSubtaskCache,
-                    taskExecutor
+                    asyncSubtaskJournal,
+                    // 调用返回的处理不阻塞，放在事件循环上
+                    taskLoops
             );
             var name = type.name() + "CallableDAGNodeExecutor";
             beanFactory.registerSingleton(name, executor);
@@ -2,45 +2,84 @@ package com.hikvision.hbfa.sf.handler.dag.impl;
 
 import com.hikvision.hbfa.sf.dag.DAGResult;
 import com.hikvision.hbfa.sf.dag.TriFunction;
+import com.hikvision.hbfa.sf.handler.dag.BusyException;
+import com.hikvision.hbfa.sf.handler.dag.CallTimeoutException;
 import com.hikvision.hbfa.sf.handler.dag.RetryException;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGNodeTrace;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGSubtask;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGWorkflow;
+import com.hikvision.hbfa.sf.util.MeterUtil;
+import com.hikvision.hbfa.sf.util.NamedRegistry;
 import com.hikvision.hbfa.sf.util.RetryFuture;
-import com.hikvision.hbfa.sf.util.SimpleCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentMap;
 
 @Component
 public class DAGNodeService {
 
     @Autowired
-    SimpleCache<Object, DAGNode> nodeCache;
+    NamedRegistry<DAGNode> nodeRegistry;
     @Autowired
     DAGNodeHandlerManager dagNodeHandlerManager;
+    @Autowired
+    NodeResultCache nodeResultCache;
 
     public TriFunction<String, String, Map<String, Object>,
             CompletableFuture<DAGResult<Map<String, Object>>>>
     nodeExecutor(String taskId, ConcurrentMap<String, String> subtaskNodeMap) {
+        return nodeExecutor(taskId, null, subtaskNodeMap, null);
+    }
+
+    /**
+     * @param workflow       任务的工作流快照，使用其中的节点版本；为null时按节点名查找
+     * @param subtaskNodeMap 收集子任务ID对应的节点名，可以为null
+     * @param traces         收集节点的时间记录，可以为null
+     */
+    public TriFunction<String, String, Map<String, Object>,
+            CompletableFuture<DAGResult<Map<String, Object>>>>
+    nodeExecutor(String taskId, DAGWorkflow workflow,
+                 ConcurrentMap<String, String> subtaskNodeMap,
+                 ConcurrentMap<String, DAGNodeTrace> traces) {
         return (subtaskId, nodeKey, input) -> {
-            var node = nodeCache.get(nodeKey);
+            var node = null != workflow
+                    ? workflow.apply(nodeKey).node()
+                    : nodeRegistry.getByName(nodeKey);
             var executor = dagNodeHandlerManager.apply(node.type());
-            var subtask = new DAGSubtask(subtaskId, taskId, node, input);
+            DAGNodeTrace trace = null;
+            if (null != traces) {
+                // 参数在调用前生成
+                trace = new DAGNodeTrace();
+                trace.paramMade();
+                traces.put(node.name(), trace);
+            }
+            var subtask = new DAGSubtask(subtaskId, taskId, node, input, trace);
 
+            var start = System.nanoTime();
             try {
-                if (node.maxRetries() > 0) {
-                    return RetryFuture.builder(() -> executor.exec(subtask))
-                            .on(RetryException.class).retries(node.maxRetries()).build();
-                } else {
+                // 启用了结果缓存时，命中则不调用节点
+                var future = nodeResultCache.get(node, input, trace, () -> {
+                    if (node.maxRetries() > 0) {
+                        return RetryFuture.builder(() -> executor.exec(subtask))
+                                .on(RetryException.class).retries(node.maxRetries())
+                                .name(node.name()).build();
+                    }
                     try {
                         return executor.exec(subtask);
                     } catch (Throwable e) {
                         return CompletableFuture.failedFuture(e);
                     }
-                }
+                });
+                future.whenComplete((r, e) -> MeterUtil.time("node", start,
+                        "node", node.name(),
+                        "type", node.type().name(),
+                        "result", outcome(null != r && r.isSuccess(), e)));
+                return future;
             } finally {
                 if (null != subtaskNodeMap) {
                     subtaskNodeMap.put(subtaskId, node.name());
@@ -49,4 +88,20 @@ public class DAGNodeService {
         };
     }
 
+    /**
+     * @return 指标的结果标签
+     */
+    public static String outcome(boolean success, Throwable e) {
+        if (e instanceof CompletionException && null != e.getCause()) {
+            e = e.getCause();
+        }
+        if (e instanceof CallTimeoutException) {
+            return MeterUtil.TIMEOUT;
+        }
+        if (e instanceof BusyException) {
+            return MeterUtil.REJECTED;
+        }
+        return MeterUtil.outcome(success, e);
+    }
+
 }
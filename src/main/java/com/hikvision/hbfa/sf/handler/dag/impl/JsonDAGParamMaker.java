@@ -3,7 +3,6 @@ package com.hikvision.hbfa.sf.handler.dag.impl;
 import com.hikvision.hbfa.sf.config.SubmitManager;
 import com.hikvision.hbfa.sf.dag.DAGResult;
 import com.hikvision.hbfa.sf.dag.TriFunction;
-import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGWorkflow;
 import lombok.extern.slf4j.Slf4j;
 
@@ -20,17 +19,15 @@ public class JsonDAGParamMaker implements
 
     private final String taskId;
     private final Map<String, Object> input;
-    private final Function<Object, DAGNode> nodeSupplier;
     private final Function<String, DAGWorkflow.DAGNodeIo> ioSupplier;
     private final SubmitManager submitManager;
 
     public JsonDAGParamMaker(String taskId,
-                             Map<String, Object> input, Function<Object, DAGNode> nodeSupplier,
+                             Map<String, Object> input,
                              Function<String, DAGWorkflow.DAGNodeIo> ioSupplier,
                              SubmitManager submitManager) {
         this.taskId = taskId;
         this.input = input;
-        this.nodeSupplier = nodeSupplier;
         this.ioSupplier = ioSupplier;
         this.submitManager = submitManager;
     }
@@ -49,26 +46,31 @@ public class JsonDAGParamMaker implements
             }
         }
 
+        // 只构造输入模板读取到的实参
+        var io = ioSupplier.apply(currentName);
+        var template = io.inputTemplate();
         var arguments = new HashMap<String, Object>(4);
-        arguments.put(KEY_TASK, Map.of(
-                KEY_ID, taskId,
-                KEY_INPUT, input
-        ));
+        if (template.references(KEY_TASK)) {
+            arguments.put(KEY_TASK, Map.of(
+                    KEY_ID, taskId,
+                    KEY_INPUT, input
+            ));
+        }
         for (var e : dependentResults.entrySet()) {
             var name = e.getKey();
+            if (!template.references(name)) continue;
             var result = e.getValue();
             arguments.put(name, argumentMap(result.getData(), result.getError()));
         }
         arguments.put(KEY_ID, subtaskId);
         arguments.put(KEY_NAME, currentName);
-        var node = nodeSupplier.apply(currentName);
-        if (node.async()) {
+        var node = io.node();
+        if (node.async() && template.references(KEY_SUBMIT)) {
             submitManager.addSubmitArguments(arguments, node.id(), subtaskId);
         }
 
-        var io = ioSupplier.apply(currentName);
         try {
-            return DAGResult.success(replaceAllParams(io.inputParameters(), arguments));
+            return DAGResult.success(template.apply(arguments));
         } catch (Exception e) {
             log.error("Subtask-{}/Node-{} parameter parse error: ", subtaskId, node.name(), e);
             return DAGResult.error("parameter parse error: " + e.getMessage());
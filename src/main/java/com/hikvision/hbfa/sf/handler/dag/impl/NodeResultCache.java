@@ -0,0 +1,184 @@
+package com.hikvision.hbfa.sf.handler.dag.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hikvision.hbfa.sf.dag.DAGResult;
+import com.hikvision.hbfa.sf.entity.json.LazyJson;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGNodeTrace;
+import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.MeterUtil;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * <h3>节点结果缓存</h3>
+ * 节点配置了cacheConfig时，键为节点名和输入参数（按键排序的JSON）的128位哈希，
+ * 命中时不再调用节点；相同输入的并发调用合并成一次。
+ * <ol>
+ *     <li>每个节点版本一个Caffeine缓存（W-TinyLFU淘汰），节点更新后旧版本的缓存随快照一起回收</li>
+ *     <li>只缓存成功的结果，失败、异常的在完成时删除</li>
+ *     <li>缓存的是结果数据的JSON快照，每次命中（包括合并的调用）解析出新的对象，
+ *     任务修改拿到的结果不影响缓存和其它任务；不能编码成JSON的结果不缓存</li>
+ * </ol>
+ * 指标：taskflow.node.cache（node、result=hit/miss）
+ */
+@Component
+public class NodeResultCache {
+
+    // 未配置maxWeight时的条数上限
+    static final long DEFAULT_MAX_SIZE = 10000;
+
+    // 按节点对象的引用，不同版本的节点使用不同的缓存；
+    // 值是快照，或者不缓存的结果、异常，异常完成的Future会被Caffeine记录告警日志
+    private final Cache<DAGNode, AsyncCache<Key, Object>> caches =
+            Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * @param trace 命中时记录，可以为null
+     * @param call  未命中时调用节点，不能抛出异常
+     */
+    public CompletableFuture<DAGResult<Map<String, Object>>>
+    get(DAGNode node, Map<String, Object> input, DAGNodeTrace trace,
+        Supplier<CompletableFuture<DAGResult<Map<String, Object>>>> call) {
+        if (null == node.cacheConfig()) {
+            return call.get();
+        }
+        var cache = caches.get(node, NodeResultCache::create);
+        var key = keyOf(node.name(), input);
+        // 未命中时由本次调用节点，加载函数在当前线程中执行
+        var called = new AtomicReference<CompletableFuture<DAGResult<Map<String, Object>>>>();
+        var future = cache.get(key, (k, executor) -> {
+            var f = call.get();
+            called.set(f);
+            return f.handle((r, e) -> null != e ? e : snapshotOf(r));
+        });
+        var hit = null == called.get();
+        MeterUtil.count("node.cache", "node", node.name(), "result", hit ? "hit" : "miss");
+        if (hit) {
+            if (null != trace) {
+                future.whenComplete((v, e) -> trace.cacheHit());
+            }
+            // 新的Future，调用者取消时不影响其它等待的任务
+            return future.thenCompose(NodeResultCache::unwrap);
+        }
+        future.thenAccept(v -> {
+            if (!(v instanceof Snapshot)) {
+                cache.asMap().remove(key, future);
+            }
+        });
+        // 调用的任务拿到原始的结果
+        return called.get().thenApply(r -> r);
+    }
+
+    private static Object snapshotOf(DAGResult<Map<String, Object>> r) {
+        if (!r.isSuccess()) {
+            return r;
+        }
+        try {
+            var data = r.getData();
+            return new Snapshot(null == data ? null : JsonUtil.toJsonBytes(data), r.getError());
+        } catch (IllegalStateException e) {
+            // 不能编码成JSON
+            return r;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<DAGResult<Map<String, Object>>> unwrap(Object v) {
+        if (v instanceof Throwable) {
+            return CompletableFuture.failedFuture((Throwable) v);
+        }
+        if (v instanceof Snapshot) {
+            return CompletableFuture.completedFuture(((Snapshot) v).view());
+        }
+        return CompletableFuture.completedFuture((DAGResult<Map<String, Object>>) v);
+    }
+
+    /**
+     * @return 节点当前版本缓存的结果数
+     */
+    public long size(DAGNode node) {
+        var cache = caches.getIfPresent(node);
+        return null != cache ? cache.synchronous().estimatedSize() : 0;
+    }
+
+    private static AsyncCache<Key, Object> create(DAGNode node) {
+        var config = node.cacheConfig();
+        var builder = Caffeine.newBuilder();
+        if (config.getTtl() > 0) {
+            builder.expireAfterWrite(config.getTtl(), TimeUnit.MILLISECONDS);
+        }
+        if (config.getMaxWeight() > 0) {
+            return builder.maximumWeight(config.getMaxWeight())
+                    .<Key, Object>weigher((k, v) -> weightOf(v))
+                    .buildAsync();
+        }
+        return builder.maximumSize(DEFAULT_MAX_SIZE).buildAsync();
+    }
+
+    private static int weightOf(Object v) {
+        var data = v instanceof Snapshot ? ((Snapshot) v).data : null;
+        return null == data ? 1 : data.length;
+    }
+
+    static Key keyOf(String name, Map<String, Object> input) {
+        var bytes = new ByteArrayOutputStream(256);
+        bytes.writeBytes(name.getBytes(StandardCharsets.UTF_8));
+        bytes.write(0);
+        bytes.writeBytes(JsonUtil.toCanonicalJsonBytes(input));
+        var hash = MurmurHash3.hash128x64(bytes.toByteArray());
+        return new Key(hash[0], hash[1]);
+    }
+
+
+    /**
+     * 成功的结果：数据的JSON，部分失败的错误信息
+     */
+    static final class Snapshot {
+        final byte[] data;
+        final String error;
+
+        Snapshot(byte[] data, String error) {
+            this.data = data;
+            this.error = error;
+        }
+
+        DAGResult<Map<String, Object>> view() {
+            return new DAGResult<>(true, null == data ? null : LazyJson.parseObject(data), error);
+        }
+    }
+
+    static final class Key {
+        final long h1;
+        final long h2;
+
+        Key(long h1, long h2) {
+            this.h1 = h1;
+            this.h2 = h2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            var k = (Key) o;
+            return h1 == k.h1 && h2 == k.h2;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(h1);
+        }
+    }
+
+}
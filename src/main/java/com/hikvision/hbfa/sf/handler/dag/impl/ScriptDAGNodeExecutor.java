@@ -3,27 +3,28 @@ package com.hikvision.hbfa.sf.handler.dag.impl;
 import com.hikvision.hbfa.sf.dag.DAGResult;
 import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.entity.json.Script;
+import com.hikvision.hbfa.sf.handler.dag.BusyException;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGSubtask;
 import com.hikvision.hbfa.sf.handler.script.ScriptExecutorsManager;
+import com.hikvision.hbfa.sf.util.WorkerPool;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
 
 @Component
 public class ScriptDAGNodeExecutor
         extends ConfigDAGNodeExecutor<Script> {
 
     final ScriptExecutorsManager scriptExecutorsManager;
-    final Executor executor;
+    final WorkerPool workerPool;
 
     public ScriptDAGNodeExecutor(ScriptExecutorsManager scriptExecutorsManager,
-                                 Executor executor) {
+                                 WorkerPool workerPool) {
         super(Script.class);
         this.scriptExecutorsManager = scriptExecutorsManager;
-        this.executor = executor;
+        this.workerPool = workerPool;
     }
 
     @Override
@@ -34,11 +35,23 @@ public class ScriptDAGNodeExecutor
     @Override
     public CompletableFuture<DAGResult<Map<String, Object>>>
     doExec(DAGSubtask subtask, Script script, DAGNode node, Map<String, Object> input) {
-        return CompletableFuture.supplyAsync(() -> {
-            var function = scriptExecutorsManager.getFunction(node.id(), script);
-            var output = function.apply(input);
-            return DAGResult.success(output);
-        }, executor);
+        // 脚本在工作线程池中执行，队列满时节点以BusyException失败，按节点配置重试
+        var future = new CompletableFuture<DAGResult<Map<String, Object>>>();
+        Runnable run = () -> {
+            if (future.isDone()) return;
+            try {
+                var function = scriptExecutorsManager.getFunction(node.id(), script);
+                var output = function.apply(input);
+                future.complete(DAGResult.success(output));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        if (!workerPool.tryExecute(run)) {
+            future.completeExceptionally(new BusyException(
+                    "Subtask-" + subtask.id() + " rejected: worker pool busy"));
+        }
+        return future;
     }
 
 }
@@ -5,9 +5,7 @@ import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.handler.dag.DAGTaskService;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGSubtask;
-import com.hikvision.hbfa.sf.handler.dag.data.DAGWorkflow;
 import com.hikvision.hbfa.sf.handler.script.ScriptExecutorsManager;
-import com.hikvision.hbfa.sf.util.SimpleCache;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,8 +29,6 @@ public class SubflowDAGNodeExecutor
     @Autowired
     private DAGTaskService dagTaskService;
     @Autowired
-    SimpleCache<Object, DAGWorkflow> workflowCache;
-    @Autowired
     ScriptExecutorsManager scriptExecutorsManager;
 
     @Override
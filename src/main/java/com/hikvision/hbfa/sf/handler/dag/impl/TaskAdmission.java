@@ -0,0 +1,153 @@
+package com.hikvision.hbfa.sf.handler.dag.impl;
+
+import com.hikvision.hbfa.sf.config.TaskProperties;
+import com.hikvision.hbfa.sf.handler.dag.BusyException;
+import com.hikvision.hbfa.sf.util.ConcurrencyLimiter;
+import com.hikvision.hbfa.sf.util.MeterUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3>任务准入</h3>
+ * 全局和每个工作流处理中的任务数上限（{@link ConcurrencyLimiter}），先取工作流的许可，再取全局的许可，
+ * 超过上限时按配置立即拒绝或者排队等待，拒绝以{@link BusyException}结束。
+ * <p>
+ * 指标（workflow标签，全局为*）：taskflow.admission.limit、taskflow.admission.in.flight、
+ * taskflow.admission.queued、taskflow.admission.rejected
+ */
+@Component
+public class TaskAdmission {
+
+    private static final String GLOBAL = "*";
+
+    private static final Permit NONE = new Permit(null, null);
+    private static final CompletableFuture<Permit> NONE_FUTURE = CompletableFuture.completedFuture(NONE);
+    private static final CompletableFuture<Boolean> TRUE = CompletableFuture.completedFuture(true);
+
+    private final TaskProperties.Admission config;
+    // null表示不限制
+    private final ConcurrencyLimiter global;
+    private final Map<String, ConcurrencyLimiter> workflows = new ConcurrentHashMap<>();
+
+    public TaskAdmission(TaskProperties properties) {
+        this.config = properties.getAdmission();
+        this.global = newLimiter(GLOBAL, config.getMaxInFlight());
+    }
+
+    /**
+     * @return 许可，超过上限时以{@link BusyException}结束
+     */
+    public CompletableFuture<Permit> acquire(String workflow) {
+        var local = workflowLimiter(workflow);
+        if (null == global && null == local) {
+            return NONE_FUTURE;
+        }
+        long maxWait = config.getMaxWait().toMillis();
+        long start = System.nanoTime();
+        return acquire(local, maxWait).thenCompose(localOk -> {
+            if (!localOk) {
+                return CompletableFuture.failedFuture(busy(workflow, "workflow"));
+            }
+            long remains = maxWait - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return acquire(global, Math.max(0, remains)).thenCompose(globalOk -> {
+                if (!globalOk) {
+                    if (null != local) local.cancel();
+                    return CompletableFuture.failedFuture(busy(workflow, "global"));
+                }
+                return CompletableFuture.completedFuture(new Permit(local, global));
+            });
+        });
+    }
+
+    /**
+     * @return 全局处理中的任务数达到上限
+     */
+    public boolean saturated() {
+        return null != global && global.saturated();
+    }
+
+    /**
+     * @return 全局或者工作流处理中的任务数达到上限
+     */
+    public boolean saturated(String workflow) {
+        if (saturated()) {
+            return true;
+        }
+        var local = workflowLimiter(workflow);
+        return null != local && local.saturated();
+    }
+
+
+    //
+
+    private ConcurrencyLimiter workflowLimiter(String workflow) {
+        var limiter = workflows.get(workflow);
+        if (null != limiter) {
+            return limiter;
+        }
+        int max = config.getWorkflows().getOrDefault(workflow, config.getWorkflowMaxInFlight());
+        if (max <= 0) {
+            return null;
+        }
+        return workflows.computeIfAbsent(workflow, w -> newLimiter(w, max));
+    }
+
+    private ConcurrencyLimiter newLimiter(String workflow, int max) {
+        if (max <= 0) {
+            return null;
+        }
+        var limiter = new ConcurrencyLimiter(config.getMode(),
+                config.getMinInFlight(), max, config.getMaxQueue());
+        MeterUtil.gauge("admission.limit", limiter, ConcurrencyLimiter::limit, "workflow", workflow);
+        MeterUtil.gauge("admission.in.flight", limiter, ConcurrencyLimiter::inFlight, "workflow", workflow);
+        MeterUtil.gauge("admission.queued", limiter, ConcurrencyLimiter::queued, "workflow", workflow);
+        MeterUtil.functionCounter("admission.rejected", limiter,
+                ConcurrencyLimiter::rejectedCount, "workflow", workflow);
+        return limiter;
+    }
+
+    private static CompletableFuture<Boolean> acquire(ConcurrencyLimiter limiter, long maxWait) {
+        return null == limiter ? TRUE : limiter.acquire(maxWait);
+    }
+
+    private static BusyException busy(String workflow, String scope) {
+        return new BusyException("Workflow-" + workflow + " rejected: " + scope + " in-flight limit reached");
+    }
+
+
+    //
+
+    /**
+     * 任务结束时释放，只能调用一次
+     */
+    public static final class Permit {
+        private final ConcurrencyLimiter local, global;
+
+        Permit(ConcurrencyLimiter local, ConcurrencyLimiter global) {
+            this.local = local;
+            this.global = global;
+        }
+
+        /**
+         * @param rttNanos 任务耗时
+         * @param dropped  任务超时或者被拒绝，自适应时减小上限
+         */
+        public void release(long rttNanos, boolean dropped) {
+            if (null != global) global.release(rttNanos, dropped);
+            if (null != local) local.release(rttNanos, dropped);
+        }
+
+        /**
+         * 没有执行任务，释放时不调整上限
+         */
+        public void cancel() {
+            if (null != global) global.cancel();
+            if (null != local) local.cancel();
+        }
+    }
+
+}
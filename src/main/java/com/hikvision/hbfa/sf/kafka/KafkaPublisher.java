@@ -1,22 +1,83 @@
 package com.hikvision.hbfa.sf.kafka;
 
 import com.hikvision.hbfa.sf.config.KafkaProperties;
+import com.hikvision.hbfa.sf.config.TaskProperties;
+import com.hikvision.hbfa.sf.handler.dag.BusyException;
+import com.hikvision.hbfa.sf.util.ConcurrencyLimiter;
+import com.hikvision.hbfa.sf.util.MeterUtil;
 import com.hikvision.hbfa.sf.util.ValueUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.errors.TimeoutException;
 
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
-public class KafkaPublisher {
+/**
+ * <h3>Kafka生产者池</h3>
+ * 按task.kafka-producers配置，每个名字一个KafkaProducer，所有节点共用，第一次使用时创建。
+ * <ol>
+ *     <li>在spring.kafka.producer的基础上覆盖压缩、linger.ms、batch.size、buffer.memory等参数</li>
+ *     <li>未确认的记录数有上限，超过后排队等待，等不到许可时以{@link BusyException}结束</li>
+ *     <li>上限按记录数而不是字节数，KafkaProducer.send仍可能等待buffer.memory，
+ *     等待时间由maxBlock（max.block.ms）限制得很短，缓冲区满、等不到元数据同样以{@link BusyException}结束；
+ *     记录发出后的超时（delivery.timeout.ms等）可能已经写入，按普通错误结束，不重试</li>
+ *     <li>{@link #send(String, Object)}、{@link #send(String, Object, Map)}用default生产者，
+ *     不受记录数上限的限制，调用方不用处理排队和拒绝，但同样受maxBlock限制</li>
+ * </ol>
+ * 指标（producer=名字）：
+ * <ul>
+ *     <li>taskflow.kafka.producer.batch.size、taskflow.kafka.producer.record.queue.time（stat=avg/max）：
+ *     取自KafkaProducer自身的统计</li>
+ *     <li>taskflow.kafka.producer.buffer.available</li>
+ *     <li>taskflow.kafka.producer.in.flight、taskflow.kafka.producer.rejected</li>
+ * </ul>
+ */
+@Slf4j
+public class KafkaPublisher implements AutoCloseable {
 
-    private final KafkaProducer<String, Object> kafkaProducer;
+    public static final String DEFAULT = "default";
+
+    private static final String METRIC_GROUP = "producer-metrics";
+
+    private final KafkaProperties properties;
+    private final Map<String, TaskProperties.KafkaProducerProfile> profiles;
+    private final Function<Map<String, Object>, Producer<String, Object>> factory;
+    private final Map<String, PooledProducer> producers = new ConcurrentHashMap<>();
 
     public KafkaPublisher(KafkaProperties properties) {
-        var props = properties.buildProducerProperties();
+        this(properties, Map.of());
+    }
+
+    public KafkaPublisher(KafkaProperties properties,
+                          Map<String, TaskProperties.KafkaProducerProfile> profiles) {
+        this(properties, profiles, KafkaProducer::new);
+    }
+
+    /**
+     * @param factory 按参数创建生产者
+     */
+    KafkaPublisher(KafkaProperties properties,
+                   Map<String, TaskProperties.KafkaProducerProfile> profiles,
+                   Function<Map<String, Object>, Producer<String, Object>> factory) {
+        this.properties = properties;
+        this.profiles = profiles;
+        this.factory = factory;
+    }
 
-        kafkaProducer = new KafkaProducer<>(props);
+    @Override
+    public void close() {
+        producers.values().forEach(p -> p.producer.close(Duration.ofSeconds(10)));
     }
 
 
@@ -24,24 +85,211 @@ public class KafkaPublisher {
         return send(topic, value, null);
     }
 
+    /**
+     * 使用default生产者，不受未确认记录数上限的限制
+     */
     public CompletableFuture<RecordMetadata> send(String topic, Object value, Map<String, String> headers) {
-        var record = new ProducerRecord<String, Object>(topic, null, value);
+        var p = producer(null);
+        return doSend(p, recordOf(topic, null, value, headers));
+    }
+
+    /**
+     * @param producer 生产者名，为空时使用default
+     * @param key      分区键，为空时由分区器决定
+     * @return 超过未确认记录数上限时以{@link BusyException}结束
+     * @throws IllegalArgumentException 生产者未配置
+     */
+    public CompletableFuture<RecordMetadata> send(String producer, String topic, String key,
+                                                  Object value, Map<String, String> headers) {
+        var p = producer(producer);
+        var record = recordOf(topic, key, value, headers);
+        var limiter = p.limiter;
+        if (null == limiter) {
+            return doSend(p, record);
+        }
+        var permit = limiter.acquire(p.maxWaitMillis);
+        if (permit.isDone()) {
+            return permit.thenCompose(ok -> limitedSend(p, record, ok));
+        }
+        // 排队后由其它记录的确认回调放行，不能在生产者的IO线程中调用send
+        return permit.thenComposeAsync(ok -> limitedSend(p, record, ok));
+    }
+
+    private static ProducerRecord<String, Object> recordOf(String topic, String key,
+                                                           Object value, Map<String, String> headers) {
+        var record = new ProducerRecord<String, Object>(topic, key, value);
         if (!ValueUtil.isEmpty(headers)) {
             var rh = record.headers();
             for (var entry : headers.entrySet()) {
                 rh.add(entry.getKey(), entry.getValue().getBytes());
             }
         }
+        return record;
+    }
+
+    private static CompletableFuture<RecordMetadata> limitedSend(
+            PooledProducer p, ProducerRecord<String, Object> record, boolean ok) {
+        if (!ok) {
+            return CompletableFuture.failedFuture(new BusyException(
+                    "Kafka producer-" + p.name + " rejected: in-flight limit reached"));
+        }
+        var start = System.nanoTime();
+        var future = doSend(p, record);
+        future.whenComplete((m, e) -> p.limiter.release(System.nanoTime() - start, null != e));
+        return future;
+    }
+
+    private static CompletableFuture<RecordMetadata> doSend(
+            PooledProducer p, ProducerRecord<String, Object> record) {
         var future = new CompletableFuture<RecordMetadata>();
-        kafkaProducer.send(record, (metadata, ex) -> {
-            if (ex == null) {
-                future.complete(metadata);
-            } else {
-                future.completeExceptionally(ex);
-            }
-        });
+        // KafkaProducer把send中的缓冲区满、元数据超时交给回调而不是抛出，
+        // 以是否在send返回前、在调用线程中回调区分；之后的回调（发送超时等）记录可能已经写入，不能按过载重试
+        var caller = Thread.currentThread();
+        var sending = new AtomicBoolean(true);
+        try {
+            p.producer.send(record, (metadata, ex) -> {
+                if (ex == null) {
+                    future.complete(metadata);
+                } else if (sending.get() && Thread.currentThread() == caller) {
+                    future.completeExceptionally(busyIfTimeout(p, ex));
+                } else {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (Exception e) {
+            // 序列化失败等
+            future.completeExceptionally(busyIfTimeout(p, e));
+        } finally {
+            sending.set(false);
+        }
         return future;
     }
 
+    /**
+     * 记录还没有进入发送缓冲区时的缓冲区满（BufferExhaustedException）、max.block.ms内拿不到元数据，
+     * 按过载处理，由节点重试
+     */
+    private static Throwable busyIfTimeout(PooledProducer p, Throwable e) {
+        if (e instanceof TimeoutException) {
+            var busy = new BusyException("Kafka producer-" + p.name + " busy: " + e.getMessage());
+            busy.initCause(e);
+            return busy;
+        }
+        return e;
+    }
+
+
+    //
+
+    private PooledProducer producer(String name) {
+        if (ValueUtil.isEmpty(name)) {
+            name = DEFAULT;
+        }
+        var producer = producers.get(name);
+        if (null != producer) {
+            return producer;
+        }
+        return producers.computeIfAbsent(name, this::create);
+    }
+
+    private PooledProducer create(String name) {
+        var profile = profiles.get(name);
+        if (null == profile) {
+            if (!DEFAULT.equals(name)) {
+                throw new IllegalArgumentException("kafka producer '" + name + "' not configured");
+            }
+            profile = new TaskProperties.KafkaProducerProfile();
+        }
+        var props = producerProperties(properties.buildProducerProperties(), name, profile);
+        log.info("create kafka producer {}: {}", name, props);
+        var producer = new PooledProducer(name, factory.apply(props), profile);
+
+        bindMetric(producer, "batch.size", "batch-size-avg", "stat", "avg");
+        bindMetric(producer, "batch.size", "batch-size-max", "stat", "max");
+        bindMetric(producer, "record.queue.time", "record-queue-time-avg", "stat", "avg");
+        bindMetric(producer, "record.queue.time", "record-queue-time-max", "stat", "max");
+        bindMetric(producer, "buffer.available", "buffer-available-bytes");
+        var limiter = producer.limiter;
+        if (null != limiter) {
+            MeterUtil.gauge("kafka.producer.in.flight", limiter, ConcurrencyLimiter::inFlight,
+                    "producer", name);
+            MeterUtil.functionCounter("kafka.producer.rejected", limiter, ConcurrencyLimiter::rejectedCount,
+                    "producer", name);
+        }
+        return producer;
+    }
+
+    static Map<String, Object> producerProperties(Map<String, Object> base, String name,
+                                                  TaskProperties.KafkaProducerProfile profile) {
+        var props = new HashMap<>(base);
+        var clientId = props.get(ProducerConfig.CLIENT_ID_CONFIG);
+        if (null != clientId && !DEFAULT.equals(name)) {
+            // 同名的客户端会注册冲突的JMX
+            props.put(ProducerConfig.CLIENT_ID_CONFIG, clientId + "-" + name);
+        }
+        if (!ValueUtil.isEmpty(profile.getCompressionType())) {
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, profile.getCompressionType());
+        }
+        if (null != profile.getLinger()) {
+            props.put(ProducerConfig.LINGER_MS_CONFIG, String.valueOf(profile.getLinger().toMillis()));
+        }
+        if (null != profile.getBatchSize()) {
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(profile.getBatchSize().toBytes()));
+        }
+        if (null != profile.getBufferMemory()) {
+            props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, String.valueOf(profile.getBufferMemory().toBytes()));
+        }
+        if (null != profile.getMaxBlock()) {
+            props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, String.valueOf(profile.getMaxBlock().toMillis()));
+        }
+        props.putAll(profile.getProperties());
+        return props;
+    }
+
+    private static void bindMetric(PooledProducer producer, String meter, String metric, String... tags) {
+        Metric m = null;
+        for (var entry : producer.producer.metrics().entrySet()) {
+            var mn = entry.getKey();
+            if (METRIC_GROUP.equals(mn.group()) && metric.equals(mn.name())) {
+                m = entry.getValue();
+                break;
+            }
+        }
+        if (null == m) {
+            log.warn("kafka producer metric {} not found", metric);
+            return;
+        }
+        // Gauge弱引用，由生产者的指标注册表持有
+        var allTags = new String[tags.length + 2];
+        allTags[0] = "producer";
+        allTags[1] = producer.name;
+        System.arraycopy(tags, 0, allTags, 2, tags.length);
+        MeterUtil.gauge("kafka.producer." + meter, m, KafkaPublisher::valueOf, allTags);
+    }
+
+    private static double valueOf(Metric m) {
+        var v = m.metricValue();
+        return v instanceof Number ? ((Number) v).doubleValue() : Double.NaN;
+    }
+
+
+    private static final class PooledProducer {
+        final String name;
+        final Producer<String, Object> producer;
+        // 未确认记录数的上限，不限制时为null
+        final ConcurrencyLimiter limiter;
+        final long maxWaitMillis;
+
+        PooledProducer(String name, Producer<String, Object> producer,
+                 TaskProperties.KafkaProducerProfile profile) {
+            this.name = name;
+            this.producer = producer;
+            this.limiter = profile.getMaxInFlight() > 0
+                    ? new ConcurrencyLimiter(ConcurrencyLimiter.Mode.FIXED,
+                    profile.getMaxInFlight(), profile.getMaxInFlight(), profile.getMaxQueue())
+                    : null;
+            this.maxWaitMillis = profile.getMaxWait().toMillis();
+        }
+    }
 
 }
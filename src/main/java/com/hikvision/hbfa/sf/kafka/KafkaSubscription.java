@@ -1,26 +1,54 @@
 package com.hikvision.hbfa.sf.kafka;
 
 import com.hikvision.hbfa.sf.entity.enumeration.TaskSourceStatus;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
 import com.hikvision.hbfa.sf.handler.dag.RetryException;
 import com.hikvision.hbfa.sf.util.FutureUtil;
+import com.hikvision.hbfa.sf.util.MeterUtil;
 import com.hikvision.hbfa.sf.util.RetryFuture;
 import com.hikvision.hbfa.sf.util.ThrowsUtil;
+import io.micrometer.core.instrument.Meter;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.serialization.Deserializer;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-
+import java.util.function.BooleanSupplier;
+
+/**
+ * kafka订阅，有两种消费方式：
+ * <ol>
+ *     <li>默认：每次poll的记录全部处理完成后同步提交</li>
+ *     <li>流水线（{@link Pipeline}）：处理中继续poll，按分区连续完成的offset定时异步提交，
+ *     未提交的记录超过上限时暂停分区</li>
+ * </ol>
+ * 两种方式都可以通过{@link #ordered(int)}按key顺序处理，通过{@link #pauseWhen(BooleanSupplier)}在下游饱和时暂停消费。
+ * <p>
+ * 指标（subscription标签为name）：记录延迟taskflow.kafka.lag（poll时距记录时间戳），
+ * 提交耗时taskflow.kafka.commit，流水线模式下处理中的记录数taskflow.kafka.in.flight
+ * 和已完成未提交的记录数taskflow.kafka.uncommitted。
+ */
 @Slf4j
 public class KafkaSubscription<Param, T> {
 
+    // 暂停分区时的poll超时，以便及时恢复
+    private static final Duration PAUSED_POLL_TIMEOUT = Duration.ofMillis(100);
+    // 停止时等待处理中记录的时间
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
     @AllArgsConstructor
     class UpdateTuple {
         private final boolean remove;
@@ -56,6 +84,20 @@ public class KafkaSubscription<Param, T> {
     private final int retries;
     private final String name;
 
+    // 流水线模式，以下状态只在loop线程中访问
+    private final Pipeline pipeline;
+    // 按key顺序消费
+    private KeyedDispatcher ordered;
+    // 下游饱和时暂停消费
+    private BooleanSupplier saturated;
+    private final Map<TopicPartition, PartitionProgress> progress = new HashMap<>();
+    private int outstanding;
+    private int completedSinceCommit;
+    private long lastCommitTime = System.currentTimeMillis();
+    private boolean paused;
+
+    private final List<Meter> meters = new ArrayList<>(2);
+
     private final CompletableFuture<Void> stopFuture = new CompletableFuture<>();
     private volatile boolean started = false;
     private volatile Thread loopThread;
@@ -64,7 +106,19 @@ public class KafkaSubscription<Param, T> {
                              Class<T> type,
                              KafkaRecvHandler<Param, T> handler,
                              Duration timeout, int retries, String name) {
+        this(props, type, handler, timeout, retries, name, null);
+    }
+
+    /**
+     * @param pipeline 流水线消费配置，null则使用默认方式
+     */
+    public KafkaSubscription(Map<String, Object> props,
+                             Class<T> type,
+                             KafkaRecvHandler<Param, T> handler,
+                             Duration timeout, int retries, String name,
+                             Pipeline pipeline) {
         this.handler = handler;
+        this.pipeline = pipeline;
         this.retries = Math.min(0, retries);
         this.name = null != name ? name : "KafkaLoop";
         props = new HashMap<>(props);
@@ -73,10 +127,46 @@ public class KafkaSubscription<Param, T> {
         props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "taskflow");
         consumer = new KafkaConsumer<>(props,
                 new StringDeserializer(),
-                new JsonDeserializer<>(type));
+                valueDeserializer(type));
         this.timeout = Objects.requireNonNull(timeout);
     }
 
+    @SuppressWarnings("unchecked")
+    static <T> Deserializer<T> valueDeserializer(Class<T> type) {
+        if (type == LazyJsonObject.class) {
+            return (Deserializer<T>) new LazyJsonDeserializer();
+        }
+        return new JsonDeserializer<>(type);
+    }
+
+
+    /**
+     * 同一个key（没有key则同一个分区）的记录按顺序处理，不同的key并行处理，
+     * 须在{@link #start()}之前调用
+     *
+     * @param concurrency 并行处理的key的上限
+     */
+    public KafkaSubscription<Param, T> ordered(int concurrency) {
+        if (started) {
+            throw new IllegalStateException("subscription started");
+        }
+        this.ordered = new KeyedDispatcher(concurrency);
+        return this;
+    }
+
+    /**
+     * 条件成立时暂停所有分区（仍然poll以保持在消费组中），不成立时恢复，
+     * 须在{@link #start()}之前调用
+     *
+     * @param saturated 下游是否饱和，在loop线程中调用，不能阻塞
+     */
+    public KafkaSubscription<Param, T> pauseWhen(BooleanSupplier saturated) {
+        if (started) {
+            throw new IllegalStateException("subscription started");
+        }
+        this.saturated = saturated;
+        return this;
+    }
 
     public void start() {
         if (!STARTED.compareAndSet(this, false, true)) {
@@ -84,6 +174,14 @@ public class KafkaSubscription<Param, T> {
             return;
         }
 
+        if (null != pipeline) {
+            // 只在loop线程中修改，读到旧值不影响
+            meters.add(MeterUtil.gauge("kafka.in.flight", this, s -> s.outstanding,
+                    "subscription", name));
+            meters.add(MeterUtil.gauge("kafka.uncommitted", this, s -> s.completedSinceCommit,
+                    "subscription", name));
+        }
+
         loopThread = new Thread(this::loop, name);
         loopThread.start();
 
@@ -136,11 +234,54 @@ public class KafkaSubscription<Param, T> {
                 consumer.unsubscribe();
             } else {
                 log.debug("update subscribed topics: {}", topicParamMap.keySet());
-                consumer.subscribe(topicParamMap.keySet());
+                consumer.subscribe(topicParamMap.keySet(), new RebalanceListener());
             }
         }
     }
 
+    private CompletableFuture<?> consume(Param param, T value) {
+        if (retries > 0) {
+            return RetryFuture.builder(() -> {
+                return handler.receive(param, value);
+            }).retries(retries).on(RetryException.class).name(name).build().exceptionally(e -> {
+                if (!(e instanceof CancellationException)) {
+                    if (e instanceof CompletionException) {
+                        e = e.getCause();
+                    }
+                    if (!(e instanceof CancellationException)) {
+                        log.error("kafka consume", e);
+                    }
+                }
+                return null;
+            });
+        } else {
+            try {
+                return handler.receive(param, value);
+            } catch (Throwable e) {
+                log.error("kafka consume", e);
+                return null;
+            }
+        }
+    }
+
+    private CompletableFuture<?> consume(ConsumerRecord<String, T> record) {
+        var param = topicParamMap.get(record.topic());
+        if (null == ordered) {
+            return consume(param, record.value());
+        }
+        return ordered.submit(orderKey(record), () -> consume(param, record.value()));
+    }
+
+    /**
+     * 有key的按topic+key排序，没有key的按分区
+     */
+    private static Object orderKey(ConsumerRecord<String, ?> record) {
+        if (null != record.key()) {
+            return Map.entry(record.topic(), record.key());
+        }
+        return new TopicPartition(record.topic(), record.partition());
+    }
+
     private void pollAndConsume(List<CompletableFuture<?>> futures) throws InterruptedException {
         checkUpdated();
 
@@ -149,41 +290,188 @@ public class KafkaSubscription<Param, T> {
             return;
         }
 
-        var records = consumer.poll(timeout);
+        if (null != pipeline) {
+            pollPipelined();
+            return;
+        }
+
+        flowControl(false);
+        var records = consumer.poll(paused ? PAUSED_POLL_TIMEOUT : timeout);
         if (records.isEmpty()) {
             return;
         }
+        recordLag(records);
 
 
         for (var record : records) {
-            var param = topicParamMap.get(record.topic());
-            CompletableFuture<?> future;
-            if (retries > 0) {
-                future = RetryFuture.builder(() -> {
-                    return handler.receive(param, record.value());
-                }).retries(retries).on(RetryException.class).build().exceptionally(e -> {
-                    if (!(e instanceof CancellationException)) {
-                        if (e instanceof CompletionException) {
-                            e = e.getCause();
-                        }
-                        if (!(e instanceof CancellationException)) {
-                            log.error("kafka consume", e);
-                        }
-                    }
-                    return null;
-                });
+            var future = consume(record);
+            if (null != future) {
                 futures.add(future);
-            } else {
-                try {
-                    future = handler.receive(param, record.value());
-                    futures.add(future);
-                } catch (Throwable e) {
-                    log.error("kafka consume", e);
-                }
             }
         }
         FutureUtil.allOf(futures).join();
+        var start = System.nanoTime();
         consumer.commitSync();
+        MeterUtil.time("kafka.commit", start, "subscription", name, "result", MeterUtil.SUCCESS);
+    }
+
+    private void recordLag(ConsumerRecords<String, T> records) {
+        var now = System.currentTimeMillis();
+        for (var record : records) {
+            if (record.timestamp() > 0) {
+                MeterUtil.timeMillis("kafka.lag", now - record.timestamp(),
+                        "subscription", name, "topic", record.topic());
+            }
+        }
+    }
+
+
+    //
+
+    private void pollPipelined() {
+        var records = consumer.poll(paused ? PAUSED_POLL_TIMEOUT : timeout);
+        recordLag(records);
+        for (var record : records) {
+            dispatch(record);
+        }
+
+        advance();
+        if (completedSinceCommit >= pipeline.commitRecords ||
+                System.currentTimeMillis() - lastCommitTime >= pipeline.commitIntervalMillis) {
+            commit(progress.keySet(), false);
+        }
+        flowControl(outstanding >= pipeline.maxInFlight);
+    }
+
+    private void dispatch(ConsumerRecord<String, T> record) {
+        var future = consume(record);
+        if (null == future) {
+            future = CompletableFuture.completedFuture(null);
+        } else if (retries <= 0) {
+            future = future.whenComplete((r, e) -> {
+                if (null != e && !(e instanceof CancellationException)) {
+                    log.error("kafka consume", e);
+                }
+            });
+        }
+        var tp = new TopicPartition(record.topic(), record.partition());
+        progress.computeIfAbsent(tp, k -> new PartitionProgress())
+                .add(record.offset(), future);
+        outstanding++;
+    }
+
+    /**
+     * 推进各分区的连续完成位置
+     */
+    private void advance() {
+        for (var p : progress.values()) {
+            int n = p.advance();
+            outstanding -= n;
+            completedSinceCommit += n;
+        }
+    }
+
+    private void commit(Collection<TopicPartition> partitions, boolean sync) {
+        var offsets = new HashMap<TopicPartition, OffsetAndMetadata>();
+        for (var tp : partitions) {
+            var p = progress.get(tp);
+            if (null == p) continue;
+            var offset = p.uncommitted();
+            if (offset >= 0) {
+                offsets.put(tp, new OffsetAndMetadata(offset));
+            }
+        }
+        completedSinceCommit = 0;
+        lastCommitTime = System.currentTimeMillis();
+        if (offsets.isEmpty()) {
+            return;
+        }
+
+        log.trace("commit offsets: {}", offsets);
+        var start = System.nanoTime();
+        if (sync) {
+            consumer.commitSync(offsets);
+            MeterUtil.time("kafka.commit", start, "subscription", name, "result", MeterUtil.SUCCESS);
+        } else {
+            // 失败了不重试，后面更大的offset会覆盖
+            consumer.commitAsync(offsets, (o, e) -> {
+                MeterUtil.time("kafka.commit", start, "subscription", name,
+                        "result", null == e ? MeterUtil.SUCCESS : MeterUtil.EXCEPTION);
+                if (null != e) {
+                    log.warn("commit offsets {} error", o, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 过载（未提交的记录超过上限，或者下游饱和）时暂停所有分区，恢复后再继续
+     *
+     * @param overloaded 未提交的记录超过上限
+     */
+    private void flowControl(boolean overloaded) {
+        if (!overloaded && null != saturated && saturated.getAsBoolean()) {
+            overloaded = true;
+        }
+        if (!paused && overloaded) {
+            log.debug("{} records outstanding, pause", outstanding);
+            consumer.pause(consumer.assignment());
+            paused = true;
+        } else if (paused && !overloaded) {
+            log.debug("{} records outstanding, resume", outstanding);
+            consumer.resume(consumer.paused());
+            paused = false;
+        }
+    }
+
+    /**
+     * 停止前等待处理中的记录，并同步提交
+     */
+    private void drainPipelined() {
+        var futures = new ArrayList<CompletableFuture<?>>(outstanding);
+        for (var p : progress.values()) {
+            p.collect(futures);
+        }
+        try {
+            FutureUtil.allOf(futures).get(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("wait in-flight records error", e);
+        }
+        try {
+            advance();
+            commit(progress.keySet(), true);
+        } catch (KafkaException e) {
+            log.error("commit error", e);
+        }
+    }
+
+    private class RebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            if (null == pipeline || progress.isEmpty()) return;
+            // 提交已连续完成的部分，其余的由新分配的消费者重新消费
+            advance();
+            try {
+                commit(partitions, true);
+            } catch (KafkaException e) {
+                log.error("commit revoked partitions error", e);
+            }
+            for (var tp : partitions) {
+                var p = progress.remove(tp);
+                if (null != p) {
+                    outstanding -= p.size();
+                }
+            }
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            if (paused) {
+                consumer.pause(partitions);
+            }
+        }
     }
 
 
@@ -205,7 +493,11 @@ public class KafkaSubscription<Param, T> {
                     futures.clear();
                 }
             }
+            if (null != pipeline) {
+                drainPipelined();
+            }
         } finally {
+            meters.forEach(MeterUtil::remove);
             stopFuture.complete(null);
         }
 
@@ -228,4 +520,78 @@ public class KafkaSubscription<Param, T> {
         return stopFuture.isDone() ? TaskSourceStatus.HALT : TaskSourceStatus.STOPPING;
     }
 
+
+    //
+
+    /**
+     * 流水线消费的配置
+     */
+    public static final class Pipeline {
+        private final int maxInFlight;
+        private final long commitIntervalMillis;
+        private final int commitRecords;
+
+        /**
+         * @param maxInFlight    未提交记录的上限，达到后暂停分区
+         * @param commitInterval 提交间隔
+         * @param commitRecords  完成的记录达到这个数量也提交
+         */
+        public Pipeline(int maxInFlight, Duration commitInterval, int commitRecords) {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("require maxInFlight>0");
+            }
+            this.maxInFlight = maxInFlight;
+            this.commitIntervalMillis = commitInterval.toMillis();
+            this.commitRecords = Math.max(1, commitRecords);
+        }
+    }
+
+    /**
+     * 分区内的消费进度：记录按offset递增加入，只有从头开始连续完成的部分才能提交
+     */
+    static final class PartitionProgress {
+        private final ArrayDeque<Long> offsets = new ArrayDeque<>();
+        private final ArrayDeque<CompletableFuture<?>> futures = new ArrayDeque<>();
+        // 下一个要提交的offset，即最后连续完成的offset+1
+        private long committable = -1;
+        private long committed = -1;
+
+        void add(long offset, CompletableFuture<?> future) {
+            offsets.addLast(offset);
+            futures.addLast(future);
+        }
+
+        /**
+         * @return 本次推进的记录数
+         */
+        int advance() {
+            int n = 0;
+            while (!futures.isEmpty() && futures.peekFirst().isDone()) {
+                futures.pollFirst();
+                committable = offsets.pollFirst() + 1;
+                n++;
+            }
+            return n;
+        }
+
+        /**
+         * @return 还未提交的offset，没有则返回-1，返回后视为已提交
+         */
+        long uncommitted() {
+            if (committable <= committed) {
+                return -1;
+            }
+            committed = committable;
+            return committable;
+        }
+
+        int size() {
+            return futures.size();
+        }
+
+        void collect(Collection<CompletableFuture<?>> to) {
+            to.addAll(futures);
+        }
+    }
+
 }
@@ -0,0 +1,141 @@
+package com.hikvision.hbfa.sf.kafka;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 按key分发：
+ * <ol>
+ *     <li>同一个key的任务按提交顺序串行执行，前一个完成后才开始下一个</li>
+ *     <li>不同key的任务并行执行，同时执行的key不超过{@link #concurrency}</li>
+ *     <li>提交不阻塞，超出并发的key排队等待</li>
+ * </ol>
+ */
+final class KeyedDispatcher {
+
+    private final int concurrency;
+
+    // 每个key的任务队列，队首是正在执行的任务
+    private final Map<Object, ArrayDeque<Job>> queues = new HashMap<>();
+    // 有任务但因为并发上限还未执行的key
+    private final ArrayDeque<Object> waiting = new ArrayDeque<>();
+    private int running;
+
+    KeyedDispatcher(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("require concurrency>0");
+        }
+        this.concurrency = concurrency;
+    }
+
+
+    /**
+     * @param key  顺序的key
+     * @param task 要执行的任务
+     * @return 任务完成的Future
+     */
+    CompletableFuture<Object> submit(Object key, Supplier<? extends CompletableFuture<?>> task) {
+        Objects.requireNonNull(key);
+        var job = new Job(key, task);
+        boolean start = false;
+        synchronized (this) {
+            var queue = queues.get(key);
+            if (null == queue) {
+                queue = new ArrayDeque<>();
+                queues.put(key, queue);
+                if (running < concurrency) {
+                    running++;
+                    start = true;
+                } else {
+                    waiting.add(key);
+                }
+            }
+            queue.add(job);
+        }
+        if (start) {
+            run(job);
+        }
+        return job.result;
+    }
+
+    synchronized int size() {
+        return queues.size();
+    }
+
+
+    //
+
+    /**
+     * 循环执行同步完成的任务，避免递归
+     */
+    private void run(Job job) {
+        while (null != job) {
+            CompletableFuture<?> future;
+            try {
+                future = job.task.get();
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            if (null == future) {
+                future = CompletableFuture.completedFuture(null);
+            }
+
+            if (!future.isDone()) {
+                var current = job;
+                future.whenComplete((r, e) -> {
+                    // 先出队再通知，回调里看到的状态是一致的
+                    var n = next(current.key);
+                    current.complete(r, e);
+                    run(n);
+                });
+                return;
+            }
+
+            var current = job;
+            job = next(current.key);
+            future.whenComplete(current::complete);
+        }
+    }
+
+    private synchronized Job next(Object key) {
+        var queue = queues.get(key);
+        queue.poll();
+        if (queue.isEmpty()) {
+            queues.remove(key);
+        } else {
+            // 排到后面，让等待的key也有机会执行
+            waiting.add(key);
+        }
+
+        var nextKey = waiting.poll();
+        if (null == nextKey) {
+            running--;
+            return null;
+        }
+        return queues.get(nextKey).peek();
+    }
+
+    private static final class Job {
+        final Object key;
+        final Supplier<? extends CompletableFuture<?>> task;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Job(Object key, Supplier<? extends CompletableFuture<?>> task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        void complete(Object r, Throwable e) {
+            if (null == e) {
+                result.complete(r);
+            } else {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.hikvision.hbfa.sf.kafka;
+
+import com.hikvision.hbfa.sf.entity.json.LazyJson;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * 延迟解析的JSON对象，直接持有记录的字节，不经过Jackson的反序列化器复制
+ */
+public class LazyJsonDeserializer implements Deserializer<LazyJsonObject> {
+
+    @Override
+    public LazyJsonObject deserialize(String topic, byte[] data) {
+        if (data == null) return null;
+        return LazyJson.parseObject(data);
+    }
+}
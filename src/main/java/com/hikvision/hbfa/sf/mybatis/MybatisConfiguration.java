@@ -7,6 +7,7 @@ import com.hikvision.hbfa.sf.entity.enumeration.CallType;
 import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.entity.enumeration.ScriptType;
 import com.hikvision.hbfa.sf.entity.enumeration.TaskSourceType;
+import com.hikvision.hbfa.sf.entity.json.CacheConfig;
 import com.hikvision.hbfa.sf.entity.json.ObjectMap;
 import com.hikvision.hbfa.sf.entity.json.Script;
 import com.hikvision.hbfa.sf.entity.json.SubmitConfig;
@@ -29,7 +30,7 @@ public class MybatisConfiguration implements ConfigurationCustomizer {
 
         var handlerRegistry = conf.getTypeHandlerRegistry();
         JsonTypeHandler.registerAlias(handlerRegistry,
-                ObjectMap.class, SubmitConfig.class, Script.class);
+                ObjectMap.class, SubmitConfig.class, Script.class, CacheConfig.class);
         TypedTypeHandler.registerAlias(handlerRegistry,
                 List.of(CallType.class, NodeType.class, ScriptType.class, TaskSourceType.class));
     }
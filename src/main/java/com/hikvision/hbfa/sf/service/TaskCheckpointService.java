@@ -0,0 +1,34 @@
+package com.hikvision.hbfa.sf.service;
+
+import com.hikvision.hbfa.sf.dag.DAGResult;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGTaskCheckpoint;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 持久化任务（工作流durable=true）的检查点，写入都只是入队，由后台线程按批写入
+ */
+public interface TaskCheckpointService {
+
+    void started(String taskId, String workflow, Map<String, Object> input,
+                 Instant startTime, Instant deadline);
+
+    void nodeCompleted(String taskId, String nodeName, String subtaskId,
+                       DAGResult<Map<String, Object>> result);
+
+    /**
+     * 异步子任务调用成功，等待回传
+     */
+    void asyncPending(String taskId, String nodeName, String subtaskId,
+                      Map<String, Object> input, Instant deadline);
+
+    void ended(String taskId);
+
+    /**
+     * @return 本实例未结束的任务
+     */
+    List<DAGTaskCheckpoint> listUnfinished();
+
+}
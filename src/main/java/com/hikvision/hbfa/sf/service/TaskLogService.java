@@ -0,0 +1,23 @@
+package com.hikvision.hbfa.sf.service;
+
+import com.hikvision.hbfa.sf.dto.TaskDto;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGTaskResult;
+
+public interface TaskLogService {
+
+    /**
+     * 记录结束的任务，只是入队，由后台线程批量写入
+     */
+    void record(DAGTaskResult result);
+
+    /**
+     * @return 已写入的任务，不存在或者未启用时返回null
+     */
+    TaskDto find(String taskId);
+
+    /**
+     * 删除过期的分区，并预先创建之后几天的分区
+     */
+    void maintain();
+
+}
@@ -10,12 +10,13 @@ import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
 import com.hikvision.hbfa.sf.entity.json.Script;
 import com.hikvision.hbfa.sf.entity.json.SubmitConfig;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGWorkflow;
 import com.hikvision.hbfa.sf.handler.dag.impl.DAGNodeHandlerManager;
 import com.hikvision.hbfa.sf.handler.script.ScriptExecutorsManager;
 import com.hikvision.hbfa.sf.service.NodeService;
 import com.hikvision.hbfa.sf.util.BatchSource;
 import com.hikvision.hbfa.sf.util.JsonUtil;
-import com.hikvision.hbfa.sf.util.SimpleCache;
+import com.hikvision.hbfa.sf.util.NamedRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -35,7 +36,9 @@ public class NodeServiceImpl implements NodeService {
     WorkflowDao workflowDao;
 
     @Autowired
-    SimpleCache<Object, DAGNode> nodeCache;
+    NamedRegistry<DAGNode> nodeRegistry;
+    @Autowired
+    NamedRegistry<DAGWorkflow> workflowRegistry;
 
     @Autowired
     ScriptExecutorsManager scriptExecutorsManager;
@@ -75,6 +78,7 @@ public class NodeServiceImpl implements NodeService {
         n.setSubmitConfig(sc);
 
         n.setMaxRetries(dto.getMaxRetries());
+        n.setCacheConfig(dto.getCacheConfig());
         n.setRemark(dto.getRemark());
         return n;
     }
@@ -108,6 +112,7 @@ public class NodeServiceImpl implements NodeService {
         d.setSubmitConfig(scDto);
 
         d.setMaxRetries(n.getMaxRetries());
+        d.setCacheConfig(n.getCacheConfig());
         d.setRemark(n.getRemark());
         d.setCreatedAt(n.getCreatedAt());
         d.setUpdatedAt(n.getUpdatedAt());
@@ -146,8 +151,7 @@ public class NodeServiceImpl implements NodeService {
     public void del(long id) {
         var node = nodeDao.delete(id);
         if (null == node) return;
-        nodeCache.del(node.getId());
-        nodeCache.del(node.getName());
+        nodeRegistry.remove(node.getName());
         subtaskSubmitSubscriber.updateSubscribe(node, true);
     }
 
@@ -179,8 +183,17 @@ public class NodeServiceImpl implements NodeService {
     private void updateCache(Node node) {
         var cachedNode = new DAGNode(node);
         log.debug("cache Node-{}", cachedNode.name());
-        nodeCache.set(cachedNode.id(), cachedNode);
-        nodeCache.set(cachedNode.name(), cachedNode);
+        // 与工作流的发布互斥：包含该节点的工作流整体替换为使用新节点的快照
+        synchronized (workflowRegistry) {
+            nodeRegistry.put(cachedNode);
+            workflowRegistry.forEach(w -> {
+                var updated = w.withNode(cachedNode);
+                if (updated != w) {
+                    workflowRegistry.put(updated);
+                    log.debug("publish {}", updated);
+                }
+            });
+        }
     }
 
 }
@@ -0,0 +1,216 @@
+package com.hikvision.hbfa.sf.service.impl;
+
+import com.hikvision.hbfa.sf.config.TaskProperties;
+import com.hikvision.hbfa.sf.dag.DAGResult;
+import com.hikvision.hbfa.sf.dao.TaskCheckpointDao;
+import com.hikvision.hbfa.sf.entity.AsyncCheckpoint;
+import com.hikvision.hbfa.sf.entity.NodeCheckpoint;
+import com.hikvision.hbfa.sf.entity.TaskCheckpoint;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGTaskCheckpoint;
+import com.hikvision.hbfa.sf.service.TaskCheckpointService;
+import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.WriteBehindQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * <h3>任务检查点</h3>
+ * <ol>
+ *     <li>检查点先入{@link WriteBehindQueue}，后台线程转换成记录按批写入，
+ *     一批中先写任务、节点、异步子任务，再删除已结束的任务</li>
+ *     <li>写入有flushInterval的延迟，重启前这段时间内完成的节点会重新执行（至少一次）</li>
+ *     <li>任务结束时删除其检查点（级联删除节点和异步子任务）；任务结束后才到的节点检查点忽略</li>
+ * </ol>
+ */
+@Slf4j
+@Service
+public class TaskCheckpointServiceImpl implements TaskCheckpointService {
+
+    private enum Kind {
+        START,
+        NODE,
+        ASYNC,
+        END,
+    }
+
+    /**
+     * 入队时只保存引用，JSON在后台线程中生成
+     */
+    private static final class Event {
+        final Kind kind;
+        final String taskId;
+        // 工作流名或节点名
+        String name;
+        String subtaskId;
+        Map<String, Object> data;
+        DAGResult<Map<String, Object>> result;
+        Instant startTime, deadline;
+
+        Event(Kind kind, String taskId) {
+            this.kind = kind;
+            this.taskId = taskId;
+        }
+    }
+
+    private final TaskCheckpointDao checkpointDao;
+    private final String owner;
+    private final WriteBehindQueue<Event> queue;
+
+    public TaskCheckpointServiceImpl(TaskCheckpointDao checkpointDao,
+                                     TaskProperties properties) {
+        this.checkpointDao = checkpointDao;
+        var config = properties.getCheckpoint();
+        this.owner = StringUtils.hasText(config.getOwner()) ? config.getOwner() : hostname();
+        this.queue = new WriteBehindQueue<>("TaskCheckpointWriter",
+                config.getQueueSize(), config.getBatchSize(),
+                config.getFlushInterval().toMillis(), this::flush);
+        log.info("task checkpoint owner: {}", owner);
+    }
+
+    @PreDestroy
+    public void close() {
+        queue.close();
+    }
+
+
+    @Override
+    public void started(String taskId, String workflow, Map<String, Object> input,
+                        Instant startTime, Instant deadline) {
+        var e = new Event(Kind.START, taskId);
+        e.name = workflow;
+        e.data = input;
+        e.startTime = startTime;
+        e.deadline = deadline;
+        offer(e);
+    }
+
+    @Override
+    public void nodeCompleted(String taskId, String nodeName, String subtaskId,
+                              DAGResult<Map<String, Object>> result) {
+        var e = new Event(Kind.NODE, taskId);
+        e.name = nodeName;
+        e.subtaskId = subtaskId;
+        e.result = result;
+        offer(e);
+    }
+
+    @Override
+    public void asyncPending(String taskId, String nodeName, String subtaskId,
+                             Map<String, Object> input, Instant deadline) {
+        var e = new Event(Kind.ASYNC, taskId);
+        e.name = nodeName;
+        e.subtaskId = subtaskId;
+        e.data = input;
+        e.deadline = deadline;
+        offer(e);
+    }
+
+    @Override
+    public void ended(String taskId) {
+        offer(new Event(Kind.END, taskId));
+    }
+
+    @Override
+    public List<DAGTaskCheckpoint> listUnfinished() {
+        var tasks = checkpointDao.listTasks(owner);
+        var list = new ArrayList<DAGTaskCheckpoint>(tasks.size());
+        for (var t : tasks) {
+            var results = new HashMap<String, DAGResult<Map<String, Object>>>();
+            var subtaskNodeMap = new HashMap<String, String>();
+            for (var n : checkpointDao.listNodes(t.getId())) {
+                Map<String, Object> output = null != n.getOutput() ? JsonUtil.parseJsonMap(n.getOutput()) : null;
+                results.put(n.getNodeName(), new DAGResult<>(n.isSuccess(), output, n.getErrMsg()));
+                subtaskNodeMap.put(n.getSubtaskId(), n.getNodeName());
+            }
+            var asyncs = new HashMap<String, DAGTaskCheckpoint.PendingAsync>();
+            for (var a : checkpointDao.listAsyncs(t.getId())) {
+                // 节点已完成（回传已处理）
+                if (results.containsKey(a.getNodeName())) continue;
+                Map<String, Object> input = null != a.getInput() ? JsonUtil.parseJsonMap(a.getInput()) : Map.of();
+                asyncs.put(a.getNodeName(),
+                        new DAGTaskCheckpoint.PendingAsync(a.getSubtaskId(), input, a.getDeadline()));
+            }
+            Map<String, Object> input = null != t.getInput() ? JsonUtil.parseJsonMap(t.getInput()) : null;
+            list.add(new DAGTaskCheckpoint(t.getId(), t.getWorkflowName(), input,
+                    t.getStartedAt(), t.getDeadline(), results, subtaskNodeMap, asyncs));
+        }
+        return list;
+    }
+
+
+    //
+
+    private void offer(Event e) {
+        if (!queue.offer(e)) {
+            log.warn("Task-{} checkpoint {} dropped: writer queue full", e.taskId, e.kind);
+        }
+    }
+
+    private void flush(List<Event> batch) {
+        var tasks = new ArrayList<TaskCheckpoint>();
+        var nodes = new ArrayList<NodeCheckpoint>();
+        var asyncs = new ArrayList<AsyncCheckpoint>();
+        var ended = new LinkedHashSet<String>();
+        for (var e : batch) {
+            switch (e.kind) {
+                case START:
+                    var t = new TaskCheckpoint();
+                    t.setId(e.taskId);
+                    t.setOwner(owner);
+                    t.setWorkflowName(e.name);
+                    t.setInput(toJson(e.data));
+                    t.setStartedAt(e.startTime);
+                    t.setDeadline(e.deadline);
+                    tasks.add(t);
+                    break;
+                case NODE:
+                    var n = new NodeCheckpoint();
+                    n.setTaskId(e.taskId);
+                    n.setNodeName(e.name);
+                    n.setSubtaskId(e.subtaskId);
+                    n.setSuccess(e.result.isSuccess());
+                    n.setOutput(toJson(e.result.getData()));
+                    n.setErrMsg(e.result.getError());
+                    nodes.add(n);
+                    break;
+                case ASYNC:
+                    var a = new AsyncCheckpoint();
+                    a.setSubtaskId(e.subtaskId);
+                    a.setTaskId(e.taskId);
+                    a.setNodeName(e.name);
+                    a.setInput(toJson(e.data));
+                    a.setDeadline(e.deadline);
+                    asyncs.add(a);
+                    break;
+                case END:
+                    ended.add(e.taskId);
+                    break;
+            }
+        }
+        if (!tasks.isEmpty()) checkpointDao.insertTasks(tasks);
+        if (!nodes.isEmpty()) checkpointDao.insertNodes(nodes);
+        if (!asyncs.isEmpty()) checkpointDao.insertAsyncs(asyncs);
+        if (!ended.isEmpty()) checkpointDao.deleteTasks(ended);
+    }
+
+    private static String toJson(Object o) {
+        return null == o ? null : JsonUtil.toJson(o);
+    }
+
+    private static String hostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            log.warn("get hostname error, use 'default' as checkpoint owner", e);
+            return "default";
+        }
+    }
+
+}
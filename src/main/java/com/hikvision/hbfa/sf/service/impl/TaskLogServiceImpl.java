@@ -0,0 +1,270 @@
+package com.hikvision.hbfa.sf.service.impl;
+
+import com.hikvision.hbfa.sf.config.TaskProperties;
+import com.hikvision.hbfa.sf.dao.TaskLogDao;
+import com.hikvision.hbfa.sf.dto.SubtaskDto;
+import com.hikvision.hbfa.sf.dto.TaskDto;
+import com.hikvision.hbfa.sf.entity.SubtaskLog;
+import com.hikvision.hbfa.sf.entity.TaskLog;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGTaskResult;
+import com.hikvision.hbfa.sf.service.TaskLogService;
+import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.TagThreadFactory;
+import com.hikvision.hbfa.sf.util.WriteBehindQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h3>任务执行记录</h3>
+ * <ol>
+ *     <li>结束的任务先入{@link WriteBehindQueue}，在后台线程中转换成记录，按批多行插入</li>
+ *     <li>task_log、subtask_log按天（UTC）分区，写入前确认分区存在</li>
+ *     <li>每小时删除超过expireDays的分区，并预先创建之后几天的分区</li>
+ * </ol>
+ */
+@Slf4j
+@Service
+public class TaskLogServiceImpl implements TaskLogService {
+
+    static final String TASK_TABLE = "task_log";
+    static final String SUBTASK_TABLE = "subtask_log";
+    private static final List<String> TABLES = List.of(TASK_TABLE, SUBTASK_TABLE);
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    // 预先创建的天数
+    private static final int PRECREATE_DAYS = 2;
+    private static final long MAINTAIN_INTERVAL_MINUTES = 60;
+
+    private final TaskLogDao taskLogDao;
+    private final int expireDays;
+
+    // 未启用时为null
+    private final WriteBehindQueue<DAGTaskResult> queue;
+    private final ScheduledExecutorService scheduler;
+    // 已经确认存在的分区
+    private final Set<String> partitions = ConcurrentHashMap.newKeySet();
+
+    public TaskLogServiceImpl(TaskLogDao taskLogDao,
+                              TaskProperties properties) {
+        this.taskLogDao = taskLogDao;
+        this.expireDays = properties.getExpireDays();
+        if (!properties.isEnableTaskLog()) {
+            this.queue = null;
+            this.scheduler = null;
+            return;
+        }
+        var writer = properties.getLogWriter();
+        this.queue = new WriteBehindQueue<>("TaskLogWriter",
+                writer.getQueueSize(), writer.getBatchSize(),
+                writer.getFlushInterval().toMillis(), this::flush);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new TagThreadFactory("TaskLogMaintain", true));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                maintain();
+            } catch (Throwable e) {
+                log.error("task log maintain error", e);
+            }
+        }, 0, MAINTAIN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (null != scheduler) {
+            scheduler.shutdown();
+        }
+        if (null != queue) {
+            queue.close();
+        }
+    }
+
+
+    @Override
+    public void record(DAGTaskResult result) {
+        if (null == queue) return;
+        if (!queue.offer(result)) {
+            log.warn("Task-{} log dropped: writer queue full", result.id());
+        }
+    }
+
+    @Override
+    public TaskDto find(String taskId) {
+        if (null == queue) return null;
+        var t = taskLogDao.find(taskId);
+        if (null == t) return null;
+
+        var dto = new TaskDto();
+        dto.setId(t.getId());
+        if (null != t.getWorkflowId()) {
+            dto.setWorkflowId(t.getWorkflowId());
+        }
+        dto.setWorkflowName(t.getWorkflowName());
+        dto.setInput(null != t.getInput() ? JsonUtil.parseJsonMap(t.getInput()) : null);
+        dto.setSuccess(t.isSuccess());
+        dto.setOutput(null != t.getOutput() ? JsonUtil.parseJsonMap(t.getOutput()) : null);
+        dto.setErrMsg(t.getErrMsg());
+        dto.setCreatedAt(t.getCreatedAt());
+        dto.setUpdatedAt(t.getUpdatedAt());
+        if (null != t.getCriticalPath()) {
+            dto.setCriticalPath(Arrays.asList(JsonUtil.fromJson(t.getCriticalPath(), String[].class)));
+        }
+
+        var subtasks = taskLogDao.listSubtasks(t.getId(), t.getCreatedAt());
+        var subs = new ArrayList<SubtaskDto>(subtasks.size());
+        for (var s : subtasks) {
+            var sd = new SubtaskDto();
+            sd.setId(s.getId());
+            if (null != s.getNodeId()) {
+                sd.setNodeId(s.getNodeId());
+            }
+            sd.setNodeName(s.getNodeName());
+            sd.setSuccess(s.isSuccess());
+            sd.setOutput(null != s.getOutput() ? JsonUtil.parseJsonMap(s.getOutput()) : null);
+            sd.setErrMsg(s.getErrMsg());
+            sd.setCreatedAt(s.getCreatedAt());
+            sd.setUpdatedAt(s.getUpdatedAt());
+            subs.add(sd);
+        }
+        dto.setSubtasks(subs);
+        return dto;
+    }
+
+    @Override
+    public void maintain() {
+        var today = LocalDate.now(ZoneOffset.UTC);
+        var expired = today.minusDays(expireDays);
+        for (var table : TABLES) {
+            for (var name : taskLogDao.listPartitions(table)) {
+                var day = dayOf(table, name);
+                if (null != day && day.isBefore(expired)) {
+                    log.info("drop expired partition {}", name);
+                    taskLogDao.dropPartition(name);
+                    partitions.remove(name);
+                }
+            }
+        }
+        for (int i = 0; i <= PRECREATE_DAYS; i++) {
+            ensurePartition(today.plusDays(i));
+        }
+    }
+
+
+    //
+
+    private void flush(List<DAGTaskResult> batch) {
+        var tasks = new ArrayList<TaskLog>(batch.size());
+        var subtasks = new ArrayList<SubtaskLog>(batch.size() * 4);
+        var days = new HashSet<LocalDate>();
+        for (var r : batch) {
+            int from = subtasks.size();
+            addSubtaskLogs(r, subtasks);
+            tasks.add(toTaskLog(r, subtasks.subList(from, subtasks.size())));
+            days.add(LocalDate.ofInstant(r.startTime(), ZoneOffset.UTC));
+        }
+        days.forEach(this::ensurePartition);
+        taskLogDao.insertTasks(tasks);
+        if (!subtasks.isEmpty()) {
+            taskLogDao.insertSubtasks(subtasks);
+        }
+        log.debug("flush {} tasks, {} subtasks", tasks.size(), subtasks.size());
+    }
+
+    private static TaskLog toTaskLog(DAGTaskResult r, List<SubtaskLog> subtasks) {
+        var t = new TaskLog();
+        t.setId(r.id());
+        t.setWorkflowId(r.workflow().id());
+        t.setWorkflowName(r.workflow().name());
+        t.setSuccess(r.success());
+        t.setInput(toJson(r.input()));
+        t.setOutput(toJson(r.output()));
+        t.setErrMsg(r.error());
+        t.setCriticalPath(toJson(r.task().criticalPath()));
+        t.setCreatedAt(r.startTime());
+        // 最后完成的子任务的时间
+        var updatedAt = r.startTime();
+        for (var s : subtasks) {
+            if (null != s.getUpdatedAt() && s.getUpdatedAt().isAfter(updatedAt)) {
+                updatedAt = s.getUpdatedAt();
+            }
+        }
+        t.setUpdatedAt(updatedAt);
+        return t;
+    }
+
+    private void addSubtaskLogs(DAGTaskResult r, List<SubtaskLog> to) {
+        var task = r.task();
+        var results = task.results();
+        for (var e : r.subtaskNodeMap().entrySet()) {
+            var nodeName = e.getValue();
+            var s = new SubtaskLog();
+            s.setId(e.getKey());
+            s.setTaskId(r.id());
+            // 任务开始时的快照
+            var io = r.workflow().apply(nodeName);
+            if (null != io) {
+                s.setNodeId(io.node().id());
+            }
+            s.setNodeName(nodeName);
+            var result = results.get(nodeName);
+            if (null != result) {
+                s.setSuccess(result.isSuccess());
+                s.setOutput(toJson(result.getData()));
+                s.setErrMsg(result.getError());
+            }
+            s.setCreatedAt(r.startTime());
+            s.setUpdatedAt(at(r, task.completedAt(nodeName)));
+            to.add(s);
+        }
+    }
+
+    private void ensurePartition(LocalDate day) {
+        var suffix = day.format(PARTITION_SUFFIX);
+        var from = day.atStartOfDay(ZoneOffset.UTC).toInstant().toString();
+        var to = day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toString();
+        for (var table : TABLES) {
+            var name = table + "_" + suffix;
+            if (partitions.contains(name)) continue;
+            taskLogDao.createPartition(table, name, from, to);
+            partitions.add(name);
+        }
+    }
+
+    /**
+     * @return 分区的日期，不是按天分区的返回null
+     */
+    static LocalDate dayOf(String table, String partition) {
+        var prefix = table + "_";
+        if (!partition.startsWith(prefix)) return null;
+        try {
+            return LocalDate.parse(partition.substring(prefix.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param nanos {@link System#nanoTime()}，0表示未发生
+     * @return 换算成时刻，以任务开始为基准
+     */
+    private static Instant at(DAGTaskResult r, long nanos) {
+        long started = r.task().startedAt();
+        if (0 == nanos || 0 == started) return null;
+        return r.startTime().plusNanos(nanos - started);
+    }
+
+    private static String toJson(Object o) {
+        return null == o ? null : JsonUtil.toJson(o);
+    }
+
+}
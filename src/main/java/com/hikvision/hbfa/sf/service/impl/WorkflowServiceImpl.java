@@ -11,6 +11,7 @@ import com.hikvision.hbfa.sf.entity.WorkflowNodeIo;
 import com.hikvision.hbfa.sf.entity.json.ObjectMap;
 import com.hikvision.hbfa.sf.ex.NotFoundException;
 import com.hikvision.hbfa.sf.handler.call.CallableManager;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
 import com.hikvision.hbfa.sf.handler.dag.data.DAGWorkflow;
 import com.hikvision.hbfa.sf.service.WorkflowService;
 import com.hikvision.hbfa.sf.util.*;
@@ -35,7 +36,9 @@ public class WorkflowServiceImpl implements WorkflowService {
     WorkflowDao workflowDao;
 
     @Autowired
-    SimpleCache<Object, DAGWorkflow> workflowCache;
+    NamedRegistry<DAGWorkflow> workflowRegistry;
+    @Autowired
+    NamedRegistry<DAGNode> nodeRegistry;
 
     @Autowired
     CallableManager callableManager;
@@ -54,6 +57,7 @@ public class WorkflowServiceImpl implements WorkflowService {
         if (notifierConfig != null)
             workflow.setNotifierConfig(JsonUtil.toJson(notifierConfig));
         workflow.setTimeout(dto.getTimeout());
+        workflow.setDurable(dto.isDurable());
         workflow.setRemark(dto.getRemark());
     }
 
@@ -72,16 +76,6 @@ public class WorkflowServiceImpl implements WorkflowService {
         var nodes = nodeDao.gets(nodeIds);
         var nodeMap = MapUtil.toLongMap(nodes, Node::getId);
 
-        var cachedIOs = new ArrayList<DAGWorkflow.DAGNodeIo>(ioList.size());
-        for (var io : ioList) {
-            var node = nodeMap.get(io.getNodeId());
-            cachedIOs.add(new DAGWorkflow.DAGNodeIo(
-                    node.getName(),
-                    node.getDefaultArguments(),
-                    io.getInputParameters(),
-                    io.isIgnoreError()));
-        }
-
         var edges = workflowDao.listEdge(workflow.getId());
         var cachedEdges = new ArrayList<Map.Entry<String, String>>(edges.size());
         for (var edge : edges) {
@@ -90,9 +84,22 @@ public class WorkflowServiceImpl implements WorkflowService {
                     nodeMap.get(edge.getToNodeId()).getName()));
         }
 
-        var cw = new DAGWorkflow(workflow, cachedIOs, cachedEdges);
-        workflowCache.set(cw.name(), cw);
-        workflowCache.set(cw.id(), cw);
+        // 与节点的发布互斥，快照中的节点都是最新版本；节点还没有加载时使用数据库中的
+        synchronized (workflowRegistry) {
+            var cachedIOs = new ArrayList<DAGWorkflow.DAGNodeIo>(ioList.size());
+            for (var io : ioList) {
+                var node = nodeMap.get(io.getNodeId());
+                var cachedNode = nodeRegistry.getByName(node.getName());
+                if (null == cachedNode) {
+                    cachedNode = new DAGNode(node);
+                }
+                cachedIOs.add(new DAGWorkflow.DAGNodeIo(
+                        cachedNode, io.getInputParameters(), io.isIgnoreError()));
+            }
+            var cw = new DAGWorkflow(workflow, cachedIOs, cachedEdges);
+            workflowRegistry.put(cw);
+            log.debug("publish {}", cw);
+        }
     }
 
     /**
@@ -198,8 +205,7 @@ public class WorkflowServiceImpl implements WorkflowService {
     public void delWorkflow(long id) {
         var workflow = workflowDao.delete(id);
         if (null != workflow) {
-            workflowCache.del(workflow.getId());
-            workflowCache.del(workflow.getName());
+            workflowRegistry.remove(workflow.getName());
         }
     }
 
@@ -273,6 +279,7 @@ public class WorkflowServiceImpl implements WorkflowService {
         if (null != wf.getNotifierConfig())
             dto.setNotifierConfig(JsonUtil.parseJsonMap(wf.getNotifierConfig()));
         dto.setTimeout(wf.getTimeout());
+        dto.setDurable(wf.isDurable());
         dto.setRemark(wf.getRemark());
         dto.setCreatedAt(wf.getCreatedAt());
         dto.setUpdatedAt(wf.getUpdatedAt());
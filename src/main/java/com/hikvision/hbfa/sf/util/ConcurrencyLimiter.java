@@ -0,0 +1,213 @@
+package com.hikvision.hbfa.sf.util;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3>并发上限</h3>
+ * 限制同时处理中的请求数，上限有三种算法（{@link Mode}）：
+ * <ol>
+ *     <li>FIXED：固定为maxLimit</li>
+ *     <li>AIMD：请求被丢弃（超时、过载）或者耗时超过长期平均的{@link #AIMD_BACKOFF_RATIO}倍时乘性减小，
+ *     否则上限用满一半以上时加1</li>
+ *     <li>GRADIENT：按长期平均耗时与本次耗时的比值（梯度，0.5~1）缩放上限，再加上sqrt(上限)的排队余量，平滑后生效</li>
+ * </ol>
+ * 超过上限的请求可以立即拒绝（{@link #tryAcquire()}），也可以排队等待一段时间（{@link #acquire(long)}），
+ * 排队按先后顺序，释放时直接转交给等待者。
+ * 每次{@link #tryAcquire()}/{@link #acquire(long)}成功后必须调用一次{@link #release(long, boolean)}或{@link #cancel()}。
+ */
+final
+public class ConcurrencyLimiter {
+
+    public enum Mode {
+        FIXED,
+        AIMD,
+        GRADIENT,
+    }
+
+    static final double AIMD_BACKOFF_RATIO = 2.0;
+    private static final double AIMD_DECREASE = 0.9;
+    private static final double GRADIENT_SMOOTHING = 0.2;
+    // 长期平均耗时的权重，约等于最近100次的平均
+    private static final double LONG_RTT_WEIGHT = 0.01;
+
+    private final Mode mode;
+    private final int minLimit, maxLimit;
+    private final int maxQueue;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<CompletableFuture<Boolean>> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+
+    // 以下在synchronized中修改
+    private volatile double limit;
+    private double longRtt;
+
+    /**
+     * @param mode     算法
+     * @param minLimit 自适应时上限的下界
+     * @param maxLimit 上限，自适应时是上界
+     * @param maxQueue 排队请求数的上限
+     */
+    public ConcurrencyLimiter(Mode mode, int minLimit, int maxLimit, int maxQueue) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException("require maxLimit>0");
+        }
+        this.mode = null != mode ? mode : Mode.FIXED;
+        this.maxLimit = maxLimit;
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxQueue = Math.max(0, maxQueue);
+        // 自适应的从一半开始
+        this.limit = this.mode == Mode.FIXED ? maxLimit : Math.max(this.minLimit, maxLimit / 2);
+    }
+
+    /**
+     * @return 是否获得许可，失败计入拒绝数
+     */
+    public boolean tryAcquire() {
+        if (waiters.isEmpty() && acquirePermit()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 获取许可，超过上限时排队等待
+     *
+     * @param maxWaitMillis 最长等待时间，不大于0则不等待
+     * @return true-获得许可，false-排队已满或者等待超时，计入拒绝数
+     */
+    public CompletableFuture<Boolean> acquire(long maxWaitMillis) {
+        if (waiters.isEmpty() && acquirePermit()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (maxWaitMillis <= 0 || queued.incrementAndGet() > maxQueue) {
+            if (maxWaitMillis > 0) queued.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.completedFuture(false);
+        }
+        var waiter = new CompletableFuture<Boolean>();
+        waiter.whenComplete((ok, e) -> {
+            queued.decrementAndGet();
+            if (!Boolean.TRUE.equals(ok)) {
+                // 超时的等待者不再占着队首
+                waiters.remove(waiter);
+                rejected.increment();
+            }
+        });
+        waiters.add(waiter);
+        waiter.completeOnTimeout(false, maxWaitMillis, TimeUnit.MILLISECONDS);
+        // 入队前许可可能已经释放
+        drain();
+        return waiter;
+    }
+
+    /**
+     * 释放许可并按本次耗时调整上限
+     *
+     * @param rttNanos 耗时
+     * @param dropped  请求被丢弃（超时、下游过载），自适应时减小上限
+     */
+    public void release(long rttNanos, boolean dropped) {
+        if (mode != Mode.FIXED) {
+            update(Math.max(1, rttNanos), dropped);
+        }
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * 释放许可，不调整上限（获得许可后没有执行请求）
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * @return 处理中的请求数达到上限
+     */
+    public boolean saturated() {
+        return inFlight.get() >= (int) limit;
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int queued() {
+        return queued.get();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+
+    //
+
+    private boolean acquirePermit() {
+        while (true) {
+            int n = inFlight.get();
+            if (n >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 有许可时转交给等待者，已超时的等待者跳过
+     */
+    private void drain() {
+        while (!waiters.isEmpty()) {
+            if (!acquirePermit()) {
+                return;
+            }
+            var waiter = waiters.poll();
+            if (null != waiter && waiter.complete(true)) {
+                continue;
+            }
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private synchronized void update(long rtt, boolean dropped) {
+        if (longRtt == 0) {
+            longRtt = rtt;
+        }
+        double newLimit = limit;
+        switch (mode) {
+            case AIMD:
+                if (dropped || rtt > longRtt * AIMD_BACKOFF_RATIO) {
+                    newLimit = limit * AIMD_DECREASE;
+                } else if (inFlight.get() * 2 >= (int) limit) {
+                    newLimit = limit + 1;
+                }
+                break;
+            case GRADIENT:
+                double gradient = dropped ? 0.5 :
+                        Math.max(0.5, Math.min(1.0, longRtt / rtt));
+                double target = limit * gradient + Math.sqrt(limit);
+                newLimit = limit * (1 - GRADIENT_SMOOTHING) + target * GRADIENT_SMOOTHING;
+                break;
+            default:
+                break;
+        }
+        longRtt = longRtt * (1 - LONG_RTT_WEIGHT) + rtt * LONG_RTT_WEIGHT;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+}
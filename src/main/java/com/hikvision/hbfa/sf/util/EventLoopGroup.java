@@ -0,0 +1,190 @@
+package com.hikvision.hbfa.sf.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <h3>事件循环组</h3>
+ * <ol>
+ *     <li>固定数量的单线程事件循环，只运行不阻塞的续作（编排、回调），耗时的处理应转交给工作线程池</li>
+ *     <li>同一个循环上的任务按提交顺序在同一个线程中执行，调用方可以把一组相关的续作固定到一个循环上</li>
+ *     <li>{@link #execute(Runnable)}不拒绝，用于已经接受的工作；新工作用{@link Loop#tryExecute(Runnable)}，
+ *     积压超过上限时返回false，由调用方决定如何处理，拒绝次数见{@link #rejectedCount()}</li>
+ * </ol>
+ */
+@Slf4j
+final
+public class EventLoopGroup implements Executor, AutoCloseable {
+
+    private final Loop[] loops;
+    private final int maxPending;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param name       线程名前缀
+     * @param size       循环数，不大于0则取CPU核数
+     * @param maxPending 单个循环积压任务数的上限，超过后{@link Loop#tryExecute(Runnable)}返回false
+     */
+    public EventLoopGroup(String name, int size, int maxPending) {
+        if (size <= 0) {
+            size = Runtime.getRuntime().availableProcessors();
+        }
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("require maxPending>0");
+        }
+        this.maxPending = maxPending;
+        var factory = new TagThreadFactory(name, true);
+        this.loops = new Loop[size];
+        for (int i = 0; i < size; i++) {
+            loops[i] = new Loop(factory);
+        }
+    }
+
+    /**
+     * 轮询选出两个循环，取积压较少的一个
+     */
+    public Loop next() {
+        if (loops.length == 1) {
+            return loops[0];
+        }
+        int i = cursor.getAndIncrement() & Integer.MAX_VALUE;
+        var a = loops[i % loops.length];
+        var b = loops[(i + 1) % loops.length];
+        return a.pending() <= b.pending() ? a : b;
+    }
+
+    /**
+     * 交给下一个循环执行，不拒绝
+     */
+    @Override
+    public void execute(Runnable command) {
+        next().execute(command);
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    /**
+     * @return 所有循环积压的任务数
+     */
+    public int pending() {
+        int n = 0;
+        for (var loop : loops) {
+            n += loop.pending();
+        }
+        return n;
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 停止接受任务，已提交的任务执行完后线程退出
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (var loop : loops) {
+            LockSupport.unpark(loop.thread);
+        }
+    }
+
+
+    //
+
+    public final class Loop implements Executor {
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        // 已提交未执行的任务数
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Thread thread;
+        // 循环线程准备park：先置位再检查队列，提交者先入队再检查置位，不会丢失唤醒
+        private volatile boolean sleeping;
+
+        private Loop(TagThreadFactory factory) {
+            this.thread = factory.newThread(this::loop);
+            this.thread.start();
+        }
+
+        /**
+         * @throws RejectedExecutionException 已经关闭
+         */
+        @Override
+        public void execute(Runnable command) {
+            Objects.requireNonNull(command);
+            if (!running) {
+                throw new RejectedExecutionException("event loop closed");
+            }
+            enqueue(command);
+        }
+
+        /**
+         * 准入：积压达到上限或者已经关闭时不接受
+         *
+         * @return 是否接受
+         */
+        public boolean tryExecute(Runnable command) {
+            Objects.requireNonNull(command);
+            if (!running || pending.get() >= maxPending) {
+                rejected.increment();
+                return false;
+            }
+            enqueue(command);
+            return true;
+        }
+
+        public int pending() {
+            return pending.get();
+        }
+
+        /**
+         * @return 当前线程是不是这个循环的线程
+         */
+        public boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        private void enqueue(Runnable command) {
+            pending.incrementAndGet();
+            queue.offer(command);
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void loop() {
+            while (true) {
+                var command = queue.poll();
+                if (null == command) {
+                    if (!running) {
+                        return;
+                    }
+                    sleeping = true;
+                    if (queue.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                pending.decrementAndGet();
+                try {
+                    command.run();
+                } catch (Throwable e) {
+                    log.error("event loop task error", e);
+                }
+            }
+        }
+    }
+
+}
@@ -2,76 +2,134 @@ package com.hikvision.hbfa.sf.util;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
  * 带过期时间的缓存
+ * <p>
+ * 过期由{@link HashedTimingWheel 时间轮}驱动，同一个槽里到期的key合并成一批回调给
+ * 过期监听器，监听器在时间轮线程中执行，不能阻塞。
  */
 @Slf4j
-public class ExpiringCache<K extends Comparable<K>, V> {
+public class ExpiringCache<K, V> implements AutoCloseable {
+
+    // 时间轮精度（毫秒）
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+
+    private static final AtomicInteger WHEEL_ID = new AtomicInteger();
 
     // 毫秒
     private final long defaultExpires;
 
     private final ConcurrentMap<K, ValueWrap<K, V>> inner
-            = new ConcurrentSkipListMap<>();
+            = new ConcurrentHashMap<>();
+
+    private final HashedTimingWheel<ValueWrap<K, V>> wheel;
+
+    private final Consumer<List<Map.Entry<K, V>>> expiredListener;
 
     private final AtomicInteger maxSize = new AtomicInteger();
+    private final LongAdder expiredCount = new LongAdder();
 
     public ExpiringCache(long defaultExpires) {
+        this(defaultExpires, null);
+    }
+
+    /**
+     * @param defaultExpires  默认过期时间（毫秒）
+     * @param expiredListener 过期监听，批量回调
+     */
+    public ExpiringCache(long defaultExpires,
+                         Consumer<List<Map.Entry<K, V>>> expiredListener) {
         this.defaultExpires = defaultExpires;
         if (this.defaultExpires <= 0) {
             throw new IllegalArgumentException("require expires>0");
         }
+        this.expiredListener = expiredListener;
+        this.wheel = new HashedTimingWheel<>(TICK_MILLIS, WHEEL_SIZE,
+                "ExpiringCache-" + WHEEL_ID.incrementAndGet(), this::onExpired);
     }
 
 
-    private CompletableFuture<Map.Entry<K, V>> addExpiring(K k, V v, long expires) {
-        return CompletableFuture.supplyAsync(() -> {
-            inner.remove(k);
-            return Map.entry(k, v);
-        }, CompletableFuture.delayedExecutor(
-                expires, TimeUnit.MILLISECONDS));
+    private void onExpired(List<ValueWrap<K, V>> expired) {
+        var entries = new ArrayList<Map.Entry<K, V>>(expired.size());
+        for (var w : expired) {
+            // 只删除仍是当前值的key，避免误删被覆盖后的新值
+            if (!inner.remove(w.key, w)) {
+                continue;
+            }
+            expiredCount.increment();
+            var entry = Map.entry(w.key, w.value);
+            if (null != w.ef) {
+                w.ef.complete(entry);
+            }
+            entries.add(entry);
+        }
+        if (null != expiredListener && !entries.isEmpty()) {
+            expiredListener.accept(entries);
+        }
     }
 
-    /**
-     * 设置一个会过期的key
-     *
-     * @param key     缓存的key
-     * @param value   缓存的value
-     * @param expires 过期时间（毫秒）
-     * @return 过期事件的 {@link CompletableFuture Future}
-     */
-    public CompletableFuture<Map.Entry<K, V>> set(K key, V value, long expires) {
+    private ValueWrap<K, V> add(K key, V value, long expires, boolean withFuture) {
         Objects.requireNonNull(key);
         Objects.requireNonNull(value);
         if (expires <= 0) {
             expires = defaultExpires;
         }
 
-        var expiredAt = System.currentTimeMillis() + expires;
-        var ef = addExpiring(key, value, expires);
-        var w = inner.put(key, new ValueWrap<>(value, ef, expiredAt));
-        if (null != w) {
+        var w = new ValueWrap<>(key, value, withFuture ? new CompletableFuture<>() : null,
+                System.currentTimeMillis() + expires);
+        var old = inner.put(key, w);
+        if (null != old) {
             log.error("Key-{} conflict", key);
-            w.cancel();
+            old.cancel();
         }
-        ef.defaultExecutor().execute(() -> {
-            synchronized (maxSize) {
-                int size = inner.size();
-                if (size > maxSize.get())
-                    maxSize.set(size);
-            }
-        });
-        return ef;
+        w.timeout = wheel.schedule(w, expires);
+        updateMaxSize();
+        return w;
+    }
+
+    private void updateMaxSize() {
+        // 只是统计用的峰值，不要求精确
+        int size = inner.size();
+        if (size > maxSize.get()) {
+            maxSize.set(size);
+        }
+    }
+
+    /**
+     * 设置一个会过期的key，过期时通知构造时传入的监听器
+     *
+     * @param key     缓存的key
+     * @param value   缓存的value
+     * @param expires 过期时间（毫秒）
+     */
+    public void put(K key, V value, long expires) {
+        add(key, value, expires, false);
+    }
+
+    /**
+     * 设置一个会过期的key
+     *
+     * @param key     缓存的key
+     * @param value   缓存的value
+     * @param expires 过期时间（毫秒）
+     * @return 过期事件的 {@link CompletableFuture Future}，在时间轮线程中完成，后续处理须用异步方法
+     */
+    public CompletableFuture<Map.Entry<K, V>> set(K key, V value, long expires) {
+        return add(key, value, expires, true).ef;
     }
 
 
@@ -87,13 +145,9 @@ public class ExpiringCache<K extends Comparable<K>, V> {
     public V get(K key) {
         Objects.requireNonNull(key);
 
-        var w = inner.computeIfPresent(key, (k, _w) -> {
-            if (_w.expired()) {
-                return null;
-            }
-            return _w;
-        });
-        return null == w ? null : w.value;
+        var w = inner.get(key);
+        // 已到期但时间轮还未处理的，留给时间轮删除并通知
+        return null == w || w.expired() ? null : w.value;
     }
 
     public V del(K key) {
@@ -115,22 +169,37 @@ public class ExpiringCache<K extends Comparable<K>, V> {
         return maxSize.get();
     }
 
+    /**
+     * @return 累计过期的key数
+     */
+    public long expiredCount() {
+        return expiredCount.sum();
+    }
+
     public <R> Stream<R> stream(BiFunction<K, V, R> mapper) {
         return inner.entrySet().stream()
                 .map(e -> mapper.apply(e.getKey(), e.getValue().value));
     }
 
+    @Override
+    public void close() {
+        wheel.stop();
+    }
+
 
     //
 
     private static class ValueWrap<K, V> {
+        private final K key;
         private final V value;
         private final CompletableFuture<Map.Entry<K, V>> ef;
         private final long expiredAt;
+        private volatile HashedTimingWheel.Timeout<ValueWrap<K, V>> timeout;
 
-        ValueWrap(V value, CompletableFuture<Map.Entry<K, V>> ef, long expiredAt) {
+        ValueWrap(K key, V value, CompletableFuture<Map.Entry<K, V>> ef, long expiredAt) {
+            this.key = Objects.requireNonNull(key);
             this.value = Objects.requireNonNull(value);
-            this.ef = Objects.requireNonNull(ef);
+            this.ef = ef;
             this.expiredAt = expiredAt;
         }
 
@@ -139,7 +208,13 @@ public class ExpiringCache<K extends Comparable<K>, V> {
         }
 
         void cancel() {
-            ef.cancel(false);
+            var t = timeout;
+            if (null != t) {
+                t.cancel();
+            }
+            if (null != ef) {
+                ef.cancel(false);
+            }
         }
     }
 
@@ -0,0 +1,319 @@
+package com.hikvision.hbfa.sf.util;
+
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.JmesPathException;
+import io.burt.jmespath.RuntimeConfiguration;
+import io.burt.jmespath.function.Function;
+import io.burt.jmespath.node.CreateObjectNode;
+import io.burt.jmespath.node.Node;
+import io.burt.jmespath.node.NodeFactory;
+import io.burt.jmespath.node.Operator;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * <h3>JMESPath表达式的静态依赖分析</h3>
+ * 计算表达式从根对象上读取了哪些key，用于只构造需要的实参。
+ * <p>
+ * 分析用的运行时只生成分析节点，不能执行。规则：
+ * <ol>
+ *     <li>管道/链式表达式只有第一段作用在根对象上</li>
+ *     <li>函数参数、比较、逻辑运算、多选（{...}/[...]）作用在当前对象上，取并集</li>
+ *     <li>投影、过滤里的子表达式和&amp;引用作用在元素上，与根对象无关</li>
+ *     <li>@、投影、过滤、索引、展开作用在根对象上时，视为读取整个根对象</li>
+ * </ol>
+ */
+final
+public class ExpressionDependency {
+    private ExpressionDependency() {
+    }
+
+    // CreateObjectNode.Entry#value()不是public的，取不到时按读取整个输入处理
+    private static final Field ENTRY_VALUE;
+
+    static {
+        Field f;
+        try {
+            f = CreateObjectNode.Entry.class.getDeclaredField("value");
+            f.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            f = null;
+        }
+        ENTRY_VALUE = f;
+    }
+
+    private static final AnalysisRuntime RUNTIME = new AnalysisRuntime(
+            RuntimeConfiguration.builder()
+                    .withFunctionRegistry(ParameterUtil.FUNCTION_REGISTRY)
+                    .build());
+
+    /**
+     * @param nudePath 裸的jsonpath，没有被${}包括
+     * @return 读取的根对象的key，null表示依赖整个根对象
+     * @throws IllegalArgumentException 表达式编译错误
+     */
+    public static Set<String> rootKeys(String nudePath) {
+        Expression<Object> e;
+        try {
+            e = RUNTIME.compile(nudePath);
+        } catch (JmesPathException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+        var keys = new HashSet<String>();
+        if (!((Dep) e).collect(keys)) {
+            return null;
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+
+    //
+
+    private static final class AnalysisRuntime extends ParamRuntime {
+        private final NodeFactory<Object> nodeFactory = new DepFactory(this);
+
+        AnalysisRuntime(RuntimeConfiguration configuration) {
+            super(configuration);
+        }
+
+        @Override
+        public NodeFactory<Object> nodeFactory() {
+            return nodeFactory;
+        }
+    }
+
+    /**
+     * 分析节点
+     */
+    private static abstract class Dep extends Node<Object> {
+        Dep(ParamRuntime runtime) {
+            super(runtime);
+        }
+
+        /**
+         * @param keys 收集从输入对象上读取的key
+         * @return false-读取整个输入对象
+         */
+        abstract boolean collect(Set<String> keys);
+
+        @Override
+        public Object search(Object input) {
+            throw new UnsupportedOperationException("analysis only");
+        }
+
+        @Override
+        protected boolean internalEquals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        protected int internalHashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * 不读取输入
+     */
+    private static final class None extends Dep {
+        None(ParamRuntime runtime) {
+            super(runtime);
+        }
+
+        @Override
+        boolean collect(Set<String> keys) {
+            return true;
+        }
+    }
+
+    /**
+     * 读取整个输入
+     */
+    private static final class Whole extends Dep {
+        Whole(ParamRuntime runtime) {
+            super(runtime);
+        }
+
+        @Override
+        boolean collect(Set<String> keys) {
+            return false;
+        }
+    }
+
+    private static final class Property extends Dep {
+        private final String name;
+
+        Property(ParamRuntime runtime, String name) {
+            super(runtime);
+            this.name = name;
+        }
+
+        @Override
+        boolean collect(Set<String> keys) {
+            keys.add(name);
+            return true;
+        }
+    }
+
+    /**
+     * 子表达式都作用在当前输入上
+     */
+    private static final class Union extends Dep {
+        private final List<? extends Expression<Object>> operands;
+
+        Union(ParamRuntime runtime, List<? extends Expression<Object>> operands) {
+            super(runtime);
+            this.operands = operands;
+        }
+
+        @Override
+        boolean collect(Set<String> keys) {
+            for (var o : operands) {
+                if (!((Dep) o).collect(keys)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 只有第一段作用在当前输入上
+     */
+    private static final class Chain extends Dep {
+        private final Dep first;
+
+        Chain(ParamRuntime runtime, Dep first) {
+            super(runtime);
+            this.first = first;
+        }
+
+        @Override
+        boolean collect(Set<String> keys) {
+            return first.collect(keys);
+        }
+    }
+
+    private static final class DepFactory implements NodeFactory<Object> {
+        private final ParamRuntime runtime;
+
+        DepFactory(ParamRuntime runtime) {
+            this.runtime = runtime;
+        }
+
+        @Override
+        public Node<Object> createCurrent() {
+            return new Whole(runtime);
+        }
+
+        @Override
+        public Node<Object> createProperty(String name) {
+            return new Property(runtime, name);
+        }
+
+        @Override
+        public Node<Object> createIndex(int index) {
+            return new Whole(runtime);
+        }
+
+        @Override
+        public Node<Object> createSlice(Integer start, Integer stop, Integer step) {
+            return new Whole(runtime);
+        }
+
+        @Override
+        public Node<Object> createProjection(Expression<Object> expression) {
+            return new Whole(runtime);
+        }
+
+        @Override
+        public Node<Object> createFlattenArray() {
+            return new Whole(runtime);
+        }
+
+        @Override
+        public Node<Object> createFlattenObject() {
+            return new Whole(runtime);
+        }
+
+        @Override
+        public Node<Object> createSelection(Expression<Object> test) {
+            return new Whole(runtime);
+        }
+
+        @Override
+        public Node<Object> createComparison(Operator operator, Expression<Object> left, Expression<Object> right) {
+            return new Union(runtime, List.of(left, right));
+        }
+
+        @Override
+        public Node<Object> createOr(Expression<Object> left, Expression<Object> right) {
+            return new Union(runtime, List.of(left, right));
+        }
+
+        @Override
+        public Node<Object> createAnd(Expression<Object> left, Expression<Object> right) {
+            return new Union(runtime, List.of(left, right));
+        }
+
+        @Override
+        public Node<Object> createFunctionCall(String functionName, List<? extends Expression<Object>> args) {
+            return createFunctionCall(runtime.functionRegistry().getFunction(functionName), args);
+        }
+
+        @Override
+        public Node<Object> createFunctionCall(Function implementation, List<? extends Expression<Object>> args) {
+            return new Union(runtime, args);
+        }
+
+        @Override
+        public Node<Object> createExpressionReference(Expression<Object> expression) {
+            // &expr作用在元素上
+            return new None(runtime);
+        }
+
+        @Override
+        public Node<Object> createString(String str) {
+            return new None(runtime);
+        }
+
+        @Override
+        public Node<Object> createNegate(Expression<Object> negated) {
+            return new Union(runtime, List.of(negated));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Node<Object> createCreateObject(List<CreateObjectNode.Entry<Object>> entries) {
+            if (null == ENTRY_VALUE) {
+                return new Whole(runtime);
+            }
+            var values = new ArrayList<Expression<Object>>(entries.size());
+            try {
+                for (var entry : entries) {
+                    values.add((Expression<Object>) ENTRY_VALUE.get(entry));
+                }
+            } catch (IllegalAccessException e) {
+                return new Whole(runtime);
+            }
+            return new Union(runtime, values);
+        }
+
+        @Override
+        public Node<Object> createCreateArray(List<? extends Expression<Object>> entries) {
+            return new Union(runtime, entries);
+        }
+
+        @Override
+        public Node<Object> createJsonLiteral(String rawValue) {
+            return new None(runtime);
+        }
+
+        @Override
+        public Node<Object> createSequence(List<Node<Object>> nodes) {
+            return new Chain(runtime, (Dep) nodes.get(0));
+        }
+    }
+
+}
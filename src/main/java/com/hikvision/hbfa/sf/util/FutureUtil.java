@@ -1,15 +1,15 @@
 package com.hikvision.hbfa.sf.util;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 final
 public class FutureUtil {
@@ -46,20 +46,183 @@ public class FutureUtil {
     public
     static <T, F extends CompletableFuture<T>, C extends Collection<F>, R, A>
     CompletableFuture<A> collect(C src, Collector<T, R, A> collector) {
-        var futures = new ArrayList<CompletableFuture<Void>>(src.size());
-        var builder = Stream.<T>builder();
-        for (var s : src) {
-            futures.add(s.thenAccept((t) -> {
-                synchronized (builder) {
-                    builder.add(t);
+        return collect(src).thenApply(l -> l.stream().collect(collector));
+    }
+
+    /**
+     * 按下标收集结果：结果写入预分配数组的对应位置，计数归零时完成，不加锁
+     *
+     * @return 与src顺序一致的结果，有异常时以第一个异常结束
+     */
+    @SuppressWarnings("unchecked")
+    public
+    static <T> CompletableFuture<List<T>>
+    collect(Collection<? extends CompletableFuture<? extends T>> src) {
+        int size = src.size();
+        if (size == 0) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        var results = new Object[size];
+        var remains = new AtomicInteger(size);
+        var result = new CompletableFuture<List<T>>();
+        int i = 0;
+        for (var f : src) {
+            int index = i++;
+            f.whenComplete((t, e) -> {
+                if (null != e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                results[index] = t;
+                // 计数是volatile写，归零的线程能看到所有结果
+                if (remains.decrementAndGet() == 0) {
+                    result.complete((List<T>) Arrays.asList(results));
                 }
-            }));
+            });
         }
-        return allOf(futures, v -> {
-            synchronized (builder) {
-                return builder.build().collect(collector);
+        return result;
+    }
+
+
+    /**
+     * 滑动窗口执行：同时最多concurrency个任务，完成一个再开始下一个
+     * <ol>
+     *     <li>任务按下标依次创建，未开始的任务不占用内存</li>
+     *     <li>有任务异常时不再开始新任务，已开始的完成后以该异常结束</li>
+     *     <li>abort不为null时，结果满足abort或有任务异常，立即取消未完成的任务</li>
+     * </ol>
+     *
+     * @param size        任务数
+     * @param concurrency 并发上限，&lt;=0不限制
+     * @param task        按下标创建任务
+     * @param abort       中止条件，null则不中止
+     * @return 按下标排列的结果，中止时未执行的任务结果为null
+     */
+    public
+    static <R> CompletableFuture<List<R>>
+    window(int size, int concurrency,
+           IntFunction<? extends CompletableFuture<? extends R>> task,
+           Predicate<? super R> abort) {
+        var w = new Window<R>(size, concurrency <= 0 ? size : concurrency, task, abort);
+        if (size <= 0) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        w.pump();
+        return w.result;
+    }
+
+    private static final class Window<R> {
+        private final int size;
+        private final int concurrency;
+        private final IntFunction<? extends CompletableFuture<? extends R>> task;
+        private final Predicate<? super R> abort;
+
+        private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+        private final Object[] results;
+        // 同步完成的任务不递归派发，由正在派发的线程继续
+        private final AtomicInteger wip = new AtomicInteger();
+
+        // 以下由this保护
+        private final Map<Integer, CompletableFuture<? extends R>> running = new HashMap<>();
+        private int next;
+        private boolean stopped;
+        private boolean aborted;
+        private Throwable error;
+
+        Window(int size, int concurrency,
+               IntFunction<? extends CompletableFuture<? extends R>> task,
+               Predicate<? super R> abort) {
+            this.size = size;
+            this.concurrency = concurrency;
+            this.task = task;
+            this.abort = abort;
+            this.results = new Object[Math.max(size, 0)];
+        }
+
+        void pump() {
+            if (wip.getAndIncrement() != 0) return;
+            do {
+                for (; ; ) {
+                    int i;
+                    synchronized (this) {
+                        if (stopped || next >= size || running.size() >= concurrency) break;
+                        i = next++;
+                        // 占位，完成时移除
+                        running.put(i, null);
+                    }
+                    launch(i);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void launch(int i) {
+            CompletableFuture<? extends R> f;
+            try {
+                f = task.apply(i);
+            } catch (Throwable e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            if (null == f) {
+                f = CompletableFuture.completedFuture(null);
+            }
+            boolean cancel;
+            synchronized (this) {
+                cancel = aborted;
+                running.put(i, f);
+            }
+            if (cancel) {
+                f.cancel(false);
+            }
+            f.whenComplete((r, e) -> onComplete(i, r, e));
+        }
+
+        private void onComplete(int i, R r, Throwable e) {
+            List<CompletableFuture<? extends R>> cancels = null;
+            boolean done;
+            synchronized (this) {
+                running.remove(i);
+                if (null != e) {
+                    if (!aborted && null == error) {
+                        error = e;
+                    }
+                    stopped = true;
+                } else {
+                    results[i] = r;
+                }
+                if (null != abort && !aborted && (null != error || null == e && abort.test(r))) {
+                    stopped = aborted = true;
+                    cancels = new ArrayList<>(running.size());
+                    for (var f : running.values()) {
+                        if (null != f) cancels.add(f);
+                    }
+                }
+                done = running.isEmpty() && (stopped || next >= size);
+            }
+            if (null != cancels) {
+                // 取消会同步回调onComplete，在锁外进行
+                for (var f : cancels) {
+                    f.cancel(false);
+                }
             }
-        });
+            if (done) {
+                finish();
+            } else {
+                pump();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void finish() {
+            Throwable e;
+            synchronized (this) {
+                e = error;
+            }
+            if (null != e) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete((List<R>) Arrays.asList(results));
+            }
+        }
     }
 
 
@@ -0,0 +1,242 @@
+package com.hikvision.hbfa.sf.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * <h3>哈希时间轮</h3>
+ * <ol>
+ *     <li>所有定时项由一个线程按tick推进，到期的同一个槽的元素合并成一批回调</li>
+ *     <li>新增只是入队，取消只是修改状态并释放元素，由工作线程延迟清理</li>
+ *     <li>回调在工作线程中执行，不能阻塞，耗时的处理应转交给其他线程</li>
+ * </ol>
+ */
+@Slf4j
+public class HashedTimingWheel<E> {
+
+    private static final int ST_INIT = 0, ST_CANCELLED = 1, ST_EXPIRED = 2;
+
+    private static final VarHandle STATE;
+
+    static {
+        MethodHandles.Lookup l = MethodHandles.lookup();
+        try {
+            STATE = l.findVarHandle(Timeout.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+
+    //
+
+    private final long tickNanos;
+    private final Bucket<E>[] wheel;
+    private final int mask;
+    private final Consumer<List<E>> expiredHandler;
+
+    private final Queue<Timeout<E>> pending = new ConcurrentLinkedQueue<>();
+    private final long startTime;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * @param tickMillis     每一格的时长（毫秒）
+     * @param wheelSize      格数，会调整为2的幂
+     * @param name           工作线程名
+     * @param expiredHandler 到期回调，每个槽一批
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int wheelSize, String name,
+                             Consumer<List<E>> expiredHandler) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("require tickMillis>0");
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize out of range");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (size <= 0) size = 1;
+        @SuppressWarnings("unchecked")
+        var buckets = (Bucket<E>[]) new Bucket<?>[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket<>();
+        }
+        this.wheel = buckets;
+        this.mask = size - 1;
+        this.expiredHandler = Objects.requireNonNull(expiredHandler);
+
+        this.startTime = System.nanoTime();
+        this.worker = new TagThreadFactory(name, true).newThread(this::loop);
+        this.worker.start();
+    }
+
+
+    /**
+     * 添加一个定时项
+     *
+     * @param element 到期时回调的元素
+     * @param delay   延迟（毫秒）
+     */
+    public Timeout<E> schedule(E element, long delay) {
+        Objects.requireNonNull(element);
+        var deadline = System.nanoTime() - startTime
+                + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+        var timeout = new Timeout<>(element, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+
+    //
+
+    private void loop() {
+        long tick = 0;
+        while (running) {
+            var deadline = tickNanos * (tick + 1);
+            long now;
+            while ((now = System.nanoTime() - startTime) < deadline) {
+                LockSupport.parkNanos(this, deadline - now);
+                if (!running) return;
+            }
+
+            transferPending(tick);
+            var expired = wheel[(int) (tick & mask)].expire(now);
+            if (!expired.isEmpty()) {
+                try {
+                    expiredHandler.accept(expired);
+                } catch (Throwable e) {
+                    log.error("expired handler error", e);
+                }
+            }
+            tick++;
+        }
+    }
+
+    private void transferPending(long tick) {
+        Timeout<E> t;
+        while ((t = pending.poll()) != null) {
+            if (t.isCancelled()) continue;
+
+            long calculated = t.deadline / tickNanos;
+            t.remainingRounds = (calculated - tick) >> Long.numberOfTrailingZeros(wheel.length);
+            // 已过期的放到当前槽
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(t);
+        }
+    }
+
+
+    //
+
+    public static final class Timeout<E> {
+        private volatile E element;
+        private final long deadline;
+        @SuppressWarnings("unused")
+        private volatile int state = ST_INIT;
+        // 以下由工作线程访问
+        private long remainingRounds;
+        private Timeout<E> next, prev;
+
+        Timeout(E element, long deadline) {
+            this.element = element;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消定时，同时释放元素的引用
+         *
+         * @return true-取消成功，false-已经到期或者已取消
+         */
+        public boolean cancel() {
+            if (STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                element = null;
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        E expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return null;
+            }
+            var e = element;
+            element = null;
+            return e;
+        }
+    }
+
+    /**
+     * 槽：双向链表，只有工作线程访问
+     */
+    private static final class Bucket<E> {
+        private Timeout<E> head, tail;
+
+        void add(Timeout<E> t) {
+            if (null == head) {
+                head = tail = t;
+            } else {
+                tail.next = t;
+                t.prev = tail;
+                tail = t;
+            }
+        }
+
+        private Timeout<E> remove(Timeout<E> t) {
+            var next = t.next;
+            if (null != t.prev) t.prev.next = next;
+            if (null != next) next.prev = t.prev;
+            if (t == head) head = next;
+            if (t == tail) tail = t.prev;
+            t.next = t.prev = null;
+            return next;
+        }
+
+        List<E> expire(long now) {
+            List<E> expired = List.of();
+            var t = head;
+            while (null != t) {
+                if (t.isCancelled()) {
+                    t = remove(t);
+                } else if (t.remainingRounds <= 0 && t.deadline <= now) {
+                    var next = remove(t);
+                    var e = t.expire();
+                    if (null != e) {
+                        if (expired.isEmpty()) expired = new ArrayList<>();
+                        expired.add(e);
+                    }
+                    t = next;
+                } else {
+                    t.remainingRounds--;
+                    t = t.next;
+                }
+            }
+            return expired;
+        }
+    }
+
+}
@@ -3,11 +3,13 @@ package com.hikvision.hbfa.sf.util;
 import com.fasterxml.jackson.databind.JavaType;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
 import com.hikvision.hbfa.sf.ex.HttpStatusException;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -22,6 +24,7 @@ import reactor.netty.Connection;
 import reactor.netty.ReactorNetty;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.http.client.HttpClientResponse;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.netty.resources.LoopResources;
 import reactor.netty.tcp.TcpClient;
 
@@ -56,14 +59,27 @@ public class HttpClientUtil {
 
     //
 
+    /**
+     * {@link HttpBuilder}在订阅时写入Reactor上下文的开始时刻（{@link System#nanoTime()}），
+     * 可以在{@link HttpClient#doOnRequest}中计算获取连接的耗时
+     */
+    public static final String REQUEST_START = HttpClientUtil.class.getName() + ".requestStart";
+
+    static final LoopResources Loop;
     static final HttpClient DefaultClient;
     static final HttpClient StatusCheckedClient;
     static final HttpClient RestfulClient;
 
     static {
-        var loop = LoopResources.create("HttpClient", 1,
+        Loop = LoopResources.create("HttpClient", 1,
                 ValueUtil.getThreadCount(ReactorNetty.IO_WORKER_COUNT), true);
-        DefaultClient = HttpClient.create().runOn(loop).secure(spec -> {
+        DefaultClient = configure(HttpClient.create()).compress(true).responseTimeout(Duration.ofHours(1));
+        StatusCheckedClient = DefaultClient.doOnResponse(HTTP_OK_CHECKER);
+        RestfulClient = restful(StatusCheckedClient);
+    }
+
+    private static HttpClient configure(HttpClient client) {
+        return client.runOn(Loop).secure(spec -> {
             var builder = SslContextBuilder.forClient()
                     .trustManager(InsecureTrustManagerFactory.INSTANCE);
             try {
@@ -71,9 +87,11 @@ public class HttpClientUtil {
             } catch (SSLException e) {
                 throw new UncheckedIOException(e);
             }
-        }).compress(true).responseTimeout(Duration.ofHours(1));
-        StatusCheckedClient = DefaultClient.doOnResponse(HTTP_OK_CHECKER);
-        RestfulClient = StatusCheckedClient.headers(headers -> {
+        });
+    }
+
+    private static HttpClient restful(HttpClient client) {
+        return client.headers(headers -> {
             headers.set(HttpHeaderNames.ACCEPT, HttpHeaderValues.APPLICATION_JSON);
             headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
         });
@@ -95,6 +113,14 @@ public class HttpClientUtil {
         return client().doOnResponse(httpStatusChecker(okFilter));
     }
 
+    /**
+     * 使用独立连接池的restful客户端，事件循环、SSL与{@link #restfulClient()}相同，
+     * 压缩、超时、协议等由调用者设置
+     */
+    public static HttpClient restfulClient(ConnectionProvider provider) {
+        return restful(configure(HttpClient.create(provider)).doOnResponse(HTTP_OK_CHECKER));
+    }
+
 
     public static Function<TcpClient, TcpClient>
     timeoutHandler(long writeTimeout, long readTimeout, TimeUnit timeUnit) {
@@ -203,6 +229,7 @@ public class HttpClientUtil {
         private Map<String, String> headers = null;
         private Object requestBody = null;
         private JavaType responseType = null;
+        private Duration timeout = null;
 
         private boolean logTrace;
         private Logger log = HttpClientUtil.log;
@@ -273,6 +300,16 @@ public class HttpClientUtil {
             return this;
         }
 
+        /**
+         * default null, use responseTimeout of the client
+         *
+         * @param timeout response timeout of this request
+         */
+        public HttpBuilder<R> timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
         //
 
         /**
@@ -346,17 +383,26 @@ public class HttpClientUtil {
         }
 
         private HttpClient.ResponseReceiver<?> send() {
-            if (ValueUtil.isEmpty(headers)) {
+            if (ValueUtil.isEmpty(headers) && null == timeout) {
                 return prepare().send(encodeRequest());
             } else {
                 return prepare().send((request, outbound) -> {
-                    headers.forEach(request::addHeader);
+                    if (null != headers) {
+                        headers.forEach(request::addHeader);
+                    }
+                    if (null != timeout) {
+                        request.responseTimeout(timeout);
+                    }
                     return outbound.send(encodeRequest());
                 });
             }
         }
 
         public Mono<R> build() {
+            return doBuild().contextWrite(ctx -> ctx.put(REQUEST_START, System.nanoTime()));
+        }
+
+        private Mono<R> doBuild() {
             if (null == responseType) {
                 return send().response().then(Mono.empty());
             }
@@ -377,6 +423,10 @@ public class HttpClientUtil {
                     });
                 }
             }
+            if (responseType.hasRawClass(LazyJsonObject.class)) {
+                // 持有响应的字节，用到时才解析
+                return dataMono.map(recvBuf -> JsonUtil.fromJson(ByteBufUtil.getBytes(recvBuf), responseType));
+            }
             return dataMono.map(recvBuf -> {
                 try (var in = new ByteBufInputStream(recvBuf)) {
                     return JsonUtil.readJson(in, responseType);
@@ -11,6 +11,8 @@ import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.datatype.jsr310.deser.DurationDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.DurationSerializer;
 import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.hikvision.hbfa.sf.entity.json.LazyJson;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
 import com.hikvision.hbfa.sf.entity.json.ObjectMap;
 
 import java.io.DataInput;
@@ -30,6 +32,7 @@ public class JsonUtil {
 
 
     static final JsonMapper jsonMapper;
+    static final ObjectWriter canonicalWriter;
 
     static {
         var module = new SimpleModule();
@@ -50,6 +53,7 @@ public class JsonUtil {
                 .enable(MapperFeature.PROPAGATE_TRANSIENT_MARKER)
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
                 .build();
+        canonicalWriter = jsonMapper.writer(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
     }
 
     public static <T> JsonSerializer<T> serializer(Function<T, String> translator) {
@@ -86,7 +90,12 @@ public class JsonUtil {
         }
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> T fromJson(byte[] j, Class<T> type) {
+        if (type == LazyJsonObject.class) {
+            // 直接持有字节，不经过反序列化器的复制
+            return (T) LazyJson.parseObject(j);
+        }
         try {
             return jsonMapper.readValue(j, type);
         } catch (IOException e) {
@@ -102,7 +111,11 @@ public class JsonUtil {
         }
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> T fromJson(byte[] j, JavaType type) {
+        if (type.hasRawClass(LazyJsonObject.class)) {
+            return (T) fromJson(j, LazyJsonObject.class);
+        }
         try {
             return jsonMapper.readValue(j, type);
         } catch (IOException e) {
@@ -126,6 +139,17 @@ public class JsonUtil {
         }
     }
 
+    /**
+     * @return Map按键排序的JSON，相等的对象结果相同，可以用于计算哈希
+     */
+    public static byte[] toCanonicalJsonBytes(Object o) {
+        try {
+            return canonicalWriter.writeValueAsBytes(o);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("serial json error", e);
+        }
+    }
+
     public static void writeJson(DataOutput out, Object o) throws IOException {
         try {
             jsonMapper.writeValue(out, o);
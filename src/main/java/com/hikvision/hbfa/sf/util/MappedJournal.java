@@ -0,0 +1,370 @@
+package com.hikvision.hbfa.sf.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * <h3>内存映射的日志</h3>
+ * 键值记录追加写入按固定大小分段的文件（{@link MappedByteBuffer}），堆上只保留键到位置的索引。
+ * <ol>
+ *     <li>记录：[int 长度][byte 类型][short 键长][键][值]，先写内容再写长度，长度为0表示段的结尾，
+ *     进程崩溃时写了一半的记录在重放时丢弃</li>
+ *     <li>删除也是追加一条删除记录；段只能从最老的开始删除，保证删除记录不会早于被删除的记录消失</li>
+ *     <li>换段时，最老的段存活数据不足1/4则把存活记录搬到当前段，然后删除整个段</li>
+ *     <li>打开时按顺序重放所有段重建索引</li>
+ * </ol>
+ * 写入在页缓存中，进程崩溃不丢失；机器掉电需要{@link #force()}。所有方法同步。
+ */
+@Slf4j
+public class MappedJournal implements AutoCloseable {
+
+    private static final byte PUT = 1;
+    private static final byte DEL = 2;
+    // 长度、类型、键长
+    private static final int HEADER = 4 + 1 + 2;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    // 键 -> 段号<<32 | 段内位置
+    private final Map<String, Long> index = new HashMap<>();
+    private Segment current;
+    private boolean compacting = false;
+
+    /**
+     * @param dir         目录，不存在则创建
+     * @param segmentSize 段文件大小，也是单条记录的上限
+     */
+    public MappedJournal(Path dir, int segmentSize) {
+        if (segmentSize <= HEADER) {
+            throw new IllegalArgumentException("segmentSize too small");
+        }
+        this.dir = Objects.requireNonNull(dir);
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            var ids = new ArrayList<Integer>();
+            try (var files = Files.list(dir)) {
+                files.map(p -> p.getFileName().toString())
+                        .filter(n -> n.startsWith(PREFIX) && n.endsWith(SUFFIX))
+                        .forEach(n -> ids.add(Integer.parseInt(
+                                n.substring(PREFIX.length(), n.length() - SUFFIX.length()))));
+            }
+            Collections.sort(ids);
+            for (int id : ids) {
+                var segment = open(id);
+                segments.put(id, segment);
+                replay(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        current = segments.isEmpty() ? roll() : segments.lastEntry().getValue();
+        dropHead();
+        log.info("journal {} opened: {} segments, {} entries", dir, segments.size(), index.size());
+    }
+
+    public synchronized void put(String key, byte[] value) {
+        var k = key.getBytes(StandardCharsets.UTF_8);
+        long location = append(PUT, k, value);
+        var old = index.put(key, location);
+        if (null != old) {
+            dead(old);
+        }
+    }
+
+    /**
+     * @return 值，不存在返回null
+     */
+    public synchronized byte[] get(String key) {
+        var location = index.get(key);
+        if (null == location) {
+            return null;
+        }
+        var segment = segments.get(segmentOf(location));
+        return readValue(segment.buffer, positionOf(location));
+    }
+
+    /**
+     * @return 是否存在
+     */
+    public synchronized boolean remove(String key) {
+        var old = index.remove(key);
+        if (null == old) {
+            return false;
+        }
+        append(DEL, key.getBytes(StandardCharsets.UTF_8), null);
+        dead(old);
+        return true;
+    }
+
+    public synchronized boolean containsKey(String key) {
+        return index.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return 段文件数
+     */
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 遍历所有存活的记录，不能在回调中修改
+     */
+    public synchronized void forEach(BiConsumer<String, byte[]> action) {
+        for (var e : index.entrySet()) {
+            var segment = segments.get(segmentOf(e.getValue()));
+            action.accept(e.getKey(), readValue(segment.buffer, positionOf(e.getValue())));
+        }
+    }
+
+    /**
+     * 刷到磁盘
+     */
+    public synchronized void force() {
+        current.buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        // 映射在GC时释放
+        for (var segment : segments.values()) {
+            try {
+                segment.buffer.force();
+            } catch (UncheckedIOException e) {
+                log.warn("force journal segment {} error", segment.path, e);
+            }
+        }
+    }
+
+
+    //
+
+    private long append(byte type, byte[] key, byte[] value) {
+        int length = HEADER + key.length + (null != value ? value.length : 0);
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("record too large: " + length);
+        }
+        if (current.position + length > segmentSize) {
+            current = roll();
+            compactHead();
+        }
+        var buffer = current.buffer;
+        int pos = current.position;
+        var b = buffer.duplicate();
+        b.position(pos + 4);
+        b.put(type);
+        b.putShort((short) key.length);
+        b.put(key);
+        if (null != value) {
+            b.put(value);
+        }
+        // 最后写长度，作为提交标记
+        buffer.putInt(pos, length);
+        current.position = pos + length;
+        if (type == PUT) {
+            current.live++;
+            current.liveBytes += length;
+        }
+        return location(current.id, pos);
+    }
+
+    private void dead(long location) {
+        var segment = segments.get(segmentOf(location));
+        segment.live--;
+        segment.liveBytes -= segment.buffer.getInt(positionOf(location));
+        dropHead();
+    }
+
+    /**
+     * 从最老的开始删除已经没有存活记录的段
+     */
+    private void dropHead() {
+        while (segments.size() > 1) {
+            var head = segments.firstEntry().getValue();
+            if (head == current || head.live > 0) {
+                return;
+            }
+            delete(head);
+        }
+    }
+
+    /**
+     * 最老的段存活数据不多时，把存活记录搬到当前段
+     */
+    private void compactHead() {
+        if (compacting) {
+            return;
+        }
+        compacting = true;
+        try {
+            while (segments.size() > 1) {
+                var head = segments.firstEntry().getValue();
+                if (head == current || head.liveBytes >= segmentSize / 4) {
+                    return;
+                }
+                for (var e : liveEntries(head)) {
+                    put(e.getKey(), e.getValue());
+                }
+                dropHead();
+                if (segments.containsKey(head.id)) {
+                    log.warn("journal segment {} still has {} live records", head.path, head.live);
+                    return;
+                }
+            }
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private List<Map.Entry<String, byte[]>> liveEntries(Segment segment) {
+        var list = new ArrayList<Map.Entry<String, byte[]>>(segment.live);
+        int pos = 0;
+        var b = segment.buffer.duplicate();
+        while (pos + HEADER <= segmentSize) {
+            int length = b.getInt(pos);
+            if (length <= 0) break;
+            if (b.get(pos + 4) == PUT) {
+                var key = readKey(b, pos);
+                var location = index.get(key);
+                if (null != location && location == location(segment.id, pos)) {
+                    list.add(Map.entry(key, readValue(b, pos)));
+                }
+            }
+            pos += length;
+        }
+        return list;
+    }
+
+    private void replay(Segment segment) {
+        var b = segment.buffer;
+        int pos = 0;
+        while (pos + HEADER <= segmentSize) {
+            int length = b.getInt(pos);
+            if (length <= 0) {
+                break;
+            }
+            if (length < HEADER || pos + length > segmentSize) {
+                log.warn("journal segment {} broken at {}", segment.path, pos);
+                break;
+            }
+            byte type = b.get(pos + 4);
+            var key = readKey(b, pos);
+            Long old;
+            if (type == PUT) {
+                old = index.put(key, location(segment.id, pos));
+                segment.live++;
+                segment.liveBytes += length;
+            } else {
+                old = index.remove(key);
+            }
+            if (null != old) {
+                var s = segments.get(segmentOf(old));
+                s.live--;
+                s.liveBytes -= s.buffer.getInt(positionOf(old));
+            }
+            pos += length;
+        }
+        segment.position = pos;
+    }
+
+    private static String readKey(ByteBuffer buffer, int pos) {
+        int keyLength = buffer.getShort(pos + 5) & 0xFFFF;
+        var key = new byte[keyLength];
+        var b = buffer.duplicate();
+        b.position(pos + HEADER);
+        b.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readValue(ByteBuffer buffer, int pos) {
+        int length = buffer.getInt(pos);
+        int keyLength = buffer.getShort(pos + 5) & 0xFFFF;
+        var value = new byte[length - HEADER - keyLength];
+        var b = buffer.duplicate();
+        b.position(pos + HEADER + keyLength);
+        b.get(value);
+        return value;
+    }
+
+    private Segment roll() {
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        var segment = open(id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment open(int id) {
+        var path = dir.resolve(String.format("%s%08d%s", PREFIX, id, SUFFIX));
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < segmentSize) {
+                file.setLength(segmentSize);
+            }
+            // 关闭文件后映射仍然有效
+            var buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(id, path, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.id);
+        try {
+            // 映射在GC时释放，Linux下可以先删除文件
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("delete journal segment {} error", segment.path, e);
+        }
+    }
+
+    private static long location(int segment, int position) {
+        return ((long) segment << 32) | position;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int positionOf(long location) {
+        return (int) location;
+    }
+
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        // 下一条记录的位置
+        int position;
+        // 存活的记录数和字节数
+        int live;
+        long liveBytes;
+
+        Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.hikvision.hbfa.sf.util;
+
+import io.micrometer.core.instrument.*;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <h3>指标</h3>
+ * 注册到{@link Metrics#globalRegistry 全局注册表}，Spring Boot会把Prometheus注册表加入其中，
+ * 非Spring管理的对象（缓存、重试、kafka订阅）也可以直接使用。
+ * 指标名统一加{@link #PREFIX}前缀。
+ */
+final
+public class MeterUtil {
+    private MeterUtil() {
+    }
+
+    public static final String PREFIX = "taskflow.";
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String EXCEPTION = "exception";
+    public static final String TIMEOUT = "timeout";
+    public static final String CANCELLED = "cancelled";
+    public static final String REJECTED = "rejected";
+
+    public static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+
+    /**
+     * 记录从startNanos到现在的耗时
+     *
+     * @param startNanos {@link System#nanoTime()}
+     * @param tags       key、value交替
+     */
+    public static void time(String name, long startNanos, String... tags) {
+        Timer.builder(PREFIX + name)
+                .tags(tags)
+                .register(registry())
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录耗时（毫秒）
+     */
+    public static void timeMillis(String name, long millis, String... tags) {
+        Timer.builder(PREFIX + name)
+                .tags(tags)
+                .register(registry())
+                .record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+    }
+
+    public static void count(String name, String... tags) {
+        Counter.builder(PREFIX + name)
+                .tags(tags)
+                .register(registry())
+                .increment();
+    }
+
+    public static <T> Gauge gauge(String name, T obj, ToDoubleFunction<T> f, String... tags) {
+        return Gauge.builder(PREFIX + name, obj, f)
+                .tags(tags)
+                .register(registry());
+    }
+
+    public static <T> FunctionCounter functionCounter(String name, T obj, ToDoubleFunction<T> f, String... tags) {
+        return FunctionCounter.builder(PREFIX + name, obj, f)
+                .tags(tags)
+                .register(registry());
+    }
+
+    public static void remove(Meter meter) {
+        if (null != meter) {
+            registry().remove(meter);
+        }
+    }
+
+    /**
+     * 缓存的大小、峰值和过期数
+     */
+    public static void bindCache(String cache, ExpiringCache<?, ?> c) {
+        gauge("cache.size", c, ExpiringCache::size, "cache", cache);
+        gauge("cache.size.max", c, ExpiringCache::maxSize, "cache", cache);
+        functionCounter("cache.expired", c, ExpiringCache::expiredCount, "cache", cache);
+    }
+
+    /**
+     * @return 结果标签：success、error，异常时见{@link #outcome(Throwable)}
+     */
+    public static String outcome(boolean success, Throwable e) {
+        if (null != e) {
+            return outcome(e);
+        }
+        return success ? SUCCESS : ERROR;
+    }
+
+    /**
+     * @return 异常的结果标签：timeout、cancelled、exception
+     */
+    public static String outcome(Throwable e) {
+        if (e instanceof CompletionException && null != e.getCause()) {
+            e = e.getCause();
+        }
+        if (e instanceof CancellationException) {
+            return CANCELLED;
+        }
+        if (e instanceof TimeoutException) {
+            return TIMEOUT;
+        }
+        return EXCEPTION;
+    }
+
+}
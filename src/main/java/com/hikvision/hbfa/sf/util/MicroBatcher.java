@@ -0,0 +1,132 @@
+package com.hikvision.hbfa.sf.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * <h3>微批</h3>
+ * 把并发提交的元素攒成一批交给flusher，再把结果按位置分发给每个元素的Future。
+ * <ol>
+ *     <li>一批达到maxSize时在提交线程中立即发出；否则从这一批的第一个元素起最多等待linger，在scheduler中发出</li>
+ *     <li>flusher不能阻塞，返回的结果数必须和这一批的元素数相同，否则整批异常完成</li>
+ *     <li>没有工作线程，空闲时没有开销</li>
+ * </ol>
+ */
+public class MicroBatcher<T, R> {
+
+    private final int maxSize;
+    private final long lingerMillis;
+    private final Function<List<T>, CompletableFuture<List<R>>> flusher;
+    private final ScheduledExecutorService scheduler;
+
+    // 正在攒的一批，没有时为null
+    private Batch<T, R> pending;
+
+    /**
+     * @param maxSize      每批的最大元素数
+     * @param lingerMillis 批次的最长等待时间（毫秒）
+     * @param flusher      发出一批
+     * @param scheduler    执行等待超时的批次
+     */
+    public MicroBatcher(int maxSize, long lingerMillis,
+                        Function<List<T>, CompletableFuture<List<R>>> flusher,
+                        ScheduledExecutorService scheduler) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("require maxSize>0");
+        }
+        this.maxSize = maxSize;
+        this.lingerMillis = Math.max(0, lingerMillis);
+        this.flusher = Objects.requireNonNull(flusher);
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    public CompletableFuture<R> submit(T value) {
+        var future = new CompletableFuture<R>();
+        Batch<T, R> full = null;
+        synchronized (this) {
+            var batch = pending;
+            if (null == batch) {
+                batch = pending = new Batch<>(maxSize);
+                if (maxSize > 1) {
+                    var b = batch;
+                    batch.timer = scheduler.schedule(() -> expire(b), lingerMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            batch.values.add(value);
+            batch.futures.add(future);
+            if (batch.values.size() >= maxSize) {
+                full = batch;
+                pending = null;
+                if (null != full.timer) {
+                    full.timer.cancel(false);
+                }
+            }
+        }
+        if (null != full) {
+            flush(full);
+        }
+        return future;
+    }
+
+    /**
+     * @return 正在攒的元素数
+     */
+    public synchronized int pendingSize() {
+        return null == pending ? 0 : pending.values.size();
+    }
+
+
+    //
+
+    private void expire(Batch<T, R> batch) {
+        synchronized (this) {
+            // 已经满了发出
+            if (pending != batch) {
+                return;
+            }
+            pending = null;
+        }
+        flush(batch);
+    }
+
+    private void flush(Batch<T, R> batch) {
+        CompletableFuture<List<R>> results;
+        try {
+            results = flusher.apply(batch.values);
+        } catch (Throwable e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((list, e) -> {
+            var futures = batch.futures;
+            if (null == e && (null == list || list.size() != futures.size())) {
+                e = new IllegalStateException("expect " + futures.size() + " results, got "
+                        + (null == list ? null : list.size()));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                if (null != e) {
+                    futures.get(i).completeExceptionally(e);
+                } else {
+                    futures.get(i).complete(list.get(i));
+                }
+            }
+        });
+    }
+
+    private static final class Batch<T, R> {
+        final List<T> values;
+        final List<CompletableFuture<R>> futures;
+        ScheduledFuture<?> timer;
+
+        Batch(int capacity) {
+            this.values = new ArrayList<>(Math.min(capacity, 64));
+            this.futures = new ArrayList<>(Math.min(capacity, 64));
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.hikvision.hbfa.sf.util;
+
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <h3>按名字和ID索引的注册表</h3>
+ * 每个值只存一份，名字和ID都从值中取出：
+ * <ol>
+ *     <li>替换同名的值时旧的ID失效，读取方要么看到旧版本、要么看到新版本</li>
+ *     <li>ID索引写时复制，读取不装箱</li>
+ * </ol>
+ * 注册、删除同步，读取无锁。
+ */
+public class NamedRegistry<V> {
+
+    private final Function<V, String> nameOf;
+    private final Function<V, Long> idOf;
+
+    private final Map<String, V> names = new ConcurrentHashMap<>();
+    // 写时复制
+    private volatile LongObjectMap<V> ids = new LongObjectHashMap<>();
+
+    public NamedRegistry(Function<V, String> nameOf, Function<V, Long> idOf) {
+        this.nameOf = nameOf;
+        this.idOf = idOf;
+    }
+
+    public V getByName(String name) {
+        return names.get(name);
+    }
+
+    public V getById(long id) {
+        return ids.get(id);
+    }
+
+    /**
+     * @param key ID（数字）或名字
+     */
+    public V getByKey(Object key) {
+        if (key instanceof Number) {
+            return getById(((Number) key).longValue());
+        }
+        return null != key ? getByName(key.toString()) : null;
+    }
+
+    /**
+     * 注册或替换同名的值
+     *
+     * @return 被替换的值，没有返回null
+     */
+    public synchronized V put(V value) {
+        var old = names.put(nameOf.apply(value), value);
+        var newIds = new LongObjectHashMap<V>(ids.size() + 1);
+        newIds.putAll(ids);
+        if (null != old) {
+            newIds.remove(idOf.apply(old).longValue());
+        }
+        newIds.put(idOf.apply(value).longValue(), value);
+        ids = newIds;
+        return old;
+    }
+
+    /**
+     * @return 删除的值，不存在返回null
+     */
+    public synchronized V remove(String name) {
+        var old = names.remove(name);
+        if (null != old) {
+            var newIds = new LongObjectHashMap<V>(ids.size());
+            newIds.putAll(ids);
+            newIds.remove(idOf.apply(old).longValue());
+            ids = newIds;
+        }
+        return old;
+    }
+
+    /**
+     * 遍历已注册的值，回调中可以注册、删除
+     */
+    public void forEach(Consumer<V> action) {
+        names.values().forEach(action);
+    }
+
+    /**
+     * @return 已注册的值的数量
+     */
+    public int size() {
+        return names.size();
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.hikvision.hbfa.sf.util;
 
+import com.hikvision.hbfa.sf.entity.json.LazyJson;
 import io.burt.jmespath.BaseRuntime;
 import io.burt.jmespath.JmesPathType;
 import io.burt.jmespath.RuntimeConfiguration;
@@ -9,6 +10,11 @@ import java.util.*;
 
 import static io.burt.jmespath.JmesPathType.*;
 
+/**
+ * 参数的JMESPath运行时，值是JSON解析出的Java对象。
+ * 延迟解析的JSON（{@link LazyJson}）按Map、List访问，只有表达式经过的层会被索引，
+ * 其余子树保持原始字节；转成字符串时没有修改过的直接取原文
+ */
 class ParamRuntime extends BaseRuntime<Object> {
 
     private static final StringEscapeHelper jsonEscapeHelper = new StringEscapeHelper(
@@ -186,9 +192,13 @@ class ParamRuntime extends BaseRuntime<Object> {
             case STRING:
                 return '"' + jsonEscapeHelper.escape(toString(object)) + '"';
             case OBJECT:
-                return unparseObject(object);
             case ARRAY:
-                return unparseArray(object);
+                // 没有修改过的延迟节点直接取原文
+                var raw = LazyJson.rawText(object);
+                if (null != raw) {
+                    return raw;
+                }
+                return typeOf(object) == OBJECT ? unparseObject(object) : unparseArray(object);
             default:
                 throw new IllegalStateException();
         }
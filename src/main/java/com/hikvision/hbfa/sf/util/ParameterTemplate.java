@@ -0,0 +1,257 @@
+package com.hikvision.hbfa.sf.util;
+
+import io.burt.jmespath.Expression;
+
+import java.util.*;
+
+import static com.hikvision.hbfa.sf.util.ParameterUtil.REF_PREFIX;
+import static com.hikvision.hbfa.sf.util.ParameterUtil.REF_SUFFIX;
+
+/**
+ * <h3>预编译的参数模板</h3>
+ * 将形参树编译成不可变的模板，与{@link ParameterUtil#replaceAllParams(Map, Map)}的结果一致：
+ * <ol>
+ *     <li>形如<code>${...}</code>的字符串预先编译成{@link Expression}，运行时只执行表达式</li>
+ *     <li>不含表达式的子树是常量，编译时转为不可变对象，运行时直接共享，不再复制</li>
+ *     <li>表达式编译失败的，运行时再抛出{@link IllegalArgumentException}，与未编译时一样</li>
+ *     <li>编译时分析表达式读取的实参key（{@link ExpressionDependency}），调用方可以只构造需要的实参</li>
+ * </ol>
+ */
+final
+public class ParameterTemplate {
+
+    private static final ParameterTemplate IDENTITY = new ParameterTemplate(null, null);
+    private static final ParameterTemplate EMPTY = new ParameterTemplate(new Constant(Map.of()), Set.of());
+
+    private final Slot root;
+    // 读取的实参key，null表示读取整个实参
+    private final Set<String> references;
+
+    private ParameterTemplate(Slot root, Set<String> references) {
+        this.root = root;
+        this.references = references;
+    }
+
+
+    /**
+     * @param parameters 形参，null则编译为原样返回实参的模板
+     */
+    public static ParameterTemplate compile(Map<String, ?> parameters) {
+        if (null == parameters) return IDENTITY;
+        if (parameters.isEmpty()) return EMPTY;
+        var compiler = new Compiler();
+        var root = compiler.compileMap(parameters);
+        return new ParameterTemplate(root, compiler.references());
+    }
+
+    /**
+     * 替换注入参数
+     *
+     * @param arguments 实参数据源
+     * @return 实参，第一层是新的可修改的Map（脚本节点会写入变量），嵌套的常量部分是共享的不可变对象
+     * @throws IllegalArgumentException 表达式编译错误
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> apply(Map<String, Object> arguments) {
+        if (null == root) return arguments;
+        if (root instanceof Constant) {
+            return new HashMap<>((Map<String, Object>) ((Constant) root).value);
+        }
+        return (Map<String, Object>) root.apply(arguments);
+    }
+
+    /**
+     * @return 不含任何表达式
+     */
+    public boolean isConstant() {
+        return root instanceof Constant;
+    }
+
+    /**
+     * @param key 实参的key
+     * @return 是否可能读取这个实参
+     */
+    public boolean references(String key) {
+        return null == references || references.contains(key);
+    }
+
+
+    //
+
+    private static final class Compiler {
+        private final Set<String> keys = new HashSet<>();
+        private boolean whole;
+
+        Set<String> references() {
+            return whole ? null : Set.copyOf(keys);
+        }
+
+        private void addReferences(String path) {
+            if (whole) return;
+            var k = ExpressionDependency.rootKeys(path);
+            if (null == k) {
+                whole = true;
+            } else {
+                keys.addAll(k);
+            }
+        }
+
+        Slot compileValue(Object value) {
+            if (value instanceof String) {
+                return compileString((String) value);
+            } else if (value instanceof Map) {
+                @SuppressWarnings("unchecked")
+                var subMap = (Map<String, ?>) value;
+                if (subMap.size() > 0) {
+                    return compileMap(subMap);
+                }
+            } else if (value instanceof Collection) {
+                return compileList(((Collection<?>) value).toArray());
+            } else if (value instanceof Object[]) {
+                return compileList((Object[]) value);
+            }
+            return new Constant(value);
+        }
+
+        Slot compileString(String param) {
+            int len = param.length();
+            if (len <= 3 || !param.startsWith(REF_PREFIX) || !param.endsWith(REF_SUFFIX)) {
+                return new Constant(param);
+            }
+
+            var path = param.substring(2, len - 1);
+            try {
+                var expression = ParameterUtil.getExpression(path);
+                addReferences(path);
+                return new ExpressionSlot(expression);
+            } catch (IllegalArgumentException e) {
+                return new ErrorSlot(e);
+            }
+        }
+
+        Slot compileMap(Map<String, ?> parameters) {
+            var keys = new ArrayList<String>(parameters.size());
+            var slots = new ArrayList<Slot>(parameters.size());
+            boolean constant = true;
+            for (var entry : parameters.entrySet()) {
+                var key = entry.getKey();
+                var value = entry.getValue();
+                if (null == key || null == value) continue;
+
+                var slot = compileValue(value);
+                constant &= slot instanceof Constant;
+                keys.add(key);
+                slots.add(slot);
+            }
+            if (constant) {
+                var m = new HashMap<String, Object>(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    m.put(keys.get(i), ((Constant) slots.get(i)).value);
+                }
+                return new Constant(Collections.unmodifiableMap(m));
+            }
+            return new MapSlot(keys.toArray(new String[0]), slots.toArray(new Slot[0]));
+        }
+
+        Slot compileList(Object[] values) {
+            var slots = new Slot[values.length];
+            boolean constant = true;
+            for (int i = 0; i < values.length; i++) {
+                slots[i] = compileValue(values[i]);
+                constant &= slots[i] instanceof Constant;
+            }
+            if (constant) {
+                // 元素可能是null，不能用List.of
+                var l = new ArrayList<>(slots.length);
+                for (var s : slots) {
+                    l.add(((Constant) s).value);
+                }
+                return new Constant(Collections.unmodifiableList(l));
+            }
+            return new ListSlot(slots);
+        }
+    }
+
+
+    //
+
+    private interface Slot {
+        Object apply(Map<String, Object> arguments);
+    }
+
+    private static final class Constant implements Slot {
+        final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object apply(Map<String, Object> arguments) {
+            return value;
+        }
+    }
+
+    private static final class ExpressionSlot implements Slot {
+        final Expression<Object> expression;
+
+        ExpressionSlot(Expression<Object> expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public Object apply(Map<String, Object> arguments) {
+            return expression.search(arguments);
+        }
+    }
+
+    private static final class ErrorSlot implements Slot {
+        final IllegalArgumentException error;
+
+        ErrorSlot(IllegalArgumentException error) {
+            this.error = error;
+        }
+
+        @Override
+        public Object apply(Map<String, Object> arguments) {
+            throw new IllegalArgumentException(error.getMessage(), error.getCause());
+        }
+    }
+
+    private static final class MapSlot implements Slot {
+        final String[] keys;
+        final Slot[] slots;
+
+        MapSlot(String[] keys, Slot[] slots) {
+            this.keys = keys;
+            this.slots = slots;
+        }
+
+        @Override
+        public Object apply(Map<String, Object> arguments) {
+            var dst = new HashMap<String, Object>(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                dst.put(keys[i], slots[i].apply(arguments));
+            }
+            return dst;
+        }
+    }
+
+    private static final class ListSlot implements Slot {
+        final Slot[] slots;
+
+        ListSlot(Slot[] slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public Object apply(Map<String, Object> arguments) {
+            var l = new ArrayList<>(slots.length);
+            for (var s : slots) {
+                l.add(s.apply(arguments));
+            }
+            return l;
+        }
+    }
+
+}
@@ -63,7 +63,7 @@ public class ParameterUtil {
     //
 
     private static final Map<String, Function> FUNCTIONS;
-    private static final FunctionRegistry FUNCTION_REGISTRY;
+    static final FunctionRegistry FUNCTION_REGISTRY;
 
     static {
         Function[] functions = {
@@ -157,6 +157,7 @@ public class ParameterUtil {
     public static final String KEY_INPUT = "input";             // 输入参数
     public static final String KEY_OUTPUT = "output";           // 输出参数
     public static final String KEY_ERROR = "error";             // 输出参数
+    public static final String KEY_INDEX = "index";             // 下标
     // key其他参数
     public static final String KEY_SUBMIT = "submit";           // 提交参数
     // *** -参数引用key *** //
@@ -20,6 +20,8 @@ public class RetryFuture<T> extends CompletableFuture<T>
     private final int retryTimes;
     private final Executor executor;
     private final Predicate<? super Throwable> errorFilter;
+    // 指标的name标签，null则不记录
+    private final String name;
 
     private volatile CompletableFuture<T> sourceFuture;
     private volatile int times = 0;
@@ -27,7 +29,18 @@ public class RetryFuture<T> extends CompletableFuture<T>
     public RetryFuture(Supplier<CompletableFuture<T>> source,
                        int retryTimes, Duration retryDelay,
                        Predicate<? super Throwable> errorFilter) {
+        this(source, retryTimes, retryDelay, errorFilter, null);
+    }
+
+    /**
+     * @param name 指标的name标签，重试计入taskflow.retry，重试用尽计入taskflow.retry.exhausted
+     */
+    public RetryFuture(Supplier<CompletableFuture<T>> source,
+                       int retryTimes, Duration retryDelay,
+                       Predicate<? super Throwable> errorFilter,
+                       String name) {
         this.errorFilter = errorFilter;
+        this.name = name;
         if (retryTimes < 0) {
             throw new IllegalArgumentException("retryTimes cannot be negative");
         }
@@ -72,9 +85,15 @@ public class RetryFuture<T> extends CompletableFuture<T>
             int retries = incrRetries();
             if (retries <= retryTimes) {
                 log.warn("error retry {}: {}", retries, ex.getMessage());
+                if (null != name) {
+                    MeterUtil.count("retry", "name", name);
+                }
                 executor.execute(this);
                 return;
             }
+            if (null != name && retryTimes > 0) {
+                MeterUtil.count("retry.exhausted", "name", name);
+            }
         }
         log.error("error retry out", ex);
         completeExceptionally(ex);
@@ -102,6 +121,7 @@ public class RetryFuture<T> extends CompletableFuture<T>
         private int retries;
         private Duration delay;
         private Predicate<? super Throwable> on;
+        private String name;
 
         public Builder<T> src(Supplier<CompletableFuture<T>> src) {
             this.src = src;
@@ -133,8 +153,13 @@ public class RetryFuture<T> extends CompletableFuture<T>
             return this;
         }
 
+        public Builder<T> name(String name) {
+            this.name = name;
+            return this;
+        }
+
         public RetryFuture<T> build() {
-            var f = new RetryFuture<>(src, retries, delay, on);
+            var f = new RetryFuture<>(src, retries, delay, on, name);
             f.run();
             return f;
         }
@@ -122,6 +122,47 @@ public class ValueUtil {
     }
 
 
+    // 按ASCII升序，定长时字符串顺序与数值顺序一致
+    private static final byte[] BASE62 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
+                    .getBytes(StandardCharsets.US_ASCII);
+
+    // 62^11 > 2^64
+    public static final int BASE62_SIZE = 11;
+
+    /**
+     * 非负long转定长的62进制字符串，左边补0
+     */
+    public static String toBase62(long val) {
+        if (val < 0) {
+            throw new IllegalArgumentException("require val>=0");
+        }
+        byte[] buf = new byte[BASE62_SIZE];
+        for (int pos = BASE62_SIZE - 1; pos >= 0; pos--) {
+            buf[pos] = BASE62[(int) (val % 62)];
+            val /= 62;
+        }
+        return new String(buf, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @see #toBase62(long)
+     */
+    public static long fromBase62(String s) {
+        long val = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int d;
+            if (c >= '0' && c <= '9') d = c - '0';
+            else if (c >= 'A' && c <= 'Z') d = c - 'A' + 10;
+            else if (c >= 'a' && c <= 'z') d = c - 'a' + 36;
+            else throw new IllegalArgumentException("invalid base62: " + s);
+            val = Math.addExact(Math.multiplyExact(val, 62), d);
+        }
+        return val;
+    }
+
+
     //
 
     public static int getSystemProp(String key, int defaultValue) {
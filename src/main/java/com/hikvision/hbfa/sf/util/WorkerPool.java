@@ -0,0 +1,100 @@
+package com.hikvision.hbfa.sf.util;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h3>有界工作线程池</h3>
+ * 固定线程数和队列长度，用于脚本等耗CPU或者阻塞的处理，满了不向调用方抛出{@link RejectedExecutionException}：
+ * <ol>
+ *     <li>{@link #tryExecute(Runnable)}：准入失败返回false，由调用方决定如何处理（比如让节点重试）</li>
+ *     <li>{@link #execute(Runnable)}：准入失败在调用线程中执行，对提交方形成背压</li>
+ *     <li>{@link #executeLater(Runnable, ScheduledExecutorService, long)}：准入失败延后重试，
+ *     用于不能阻塞的提交方（时间轮、网络事件循环等）</li>
+ * </ol>
+ * 两种情况分别计数，见{@link #rejectedCount()}和{@link #callerRunsCount()}
+ */
+final
+public class WorkerPool extends ThreadPoolExecutor {
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+
+    /**
+     * @param name      线程名前缀
+     * @param threads   线程数
+     * @param queueSize 队列长度
+     */
+    public WorkerPool(String name, int threads, int queueSize) {
+        super(threads, threads, 0L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize),
+                new TagThreadFactory(name),
+                new AbortPolicy());
+    }
+
+    /**
+     * @return 是否接受
+     */
+    public boolean tryExecute(Runnable command) {
+        try {
+            super.execute(command);
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * 队列满时在调用线程中执行
+     *
+     * @throws RejectedExecutionException 已经关闭
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (tryExecute(command)) {
+            return;
+        }
+        if (isShutdown()) {
+            throw new RejectedExecutionException("worker pool shutdown");
+        }
+        callerRuns.increment();
+        command.run();
+    }
+
+    /**
+     * 准入失败时由scheduler延后重新提交，直到被接受或者线程池关闭，不在调用线程中执行
+     *
+     * @param retryMillis 重试间隔（毫秒）
+     */
+    public void executeLater(Runnable command, ScheduledExecutorService scheduler, long retryMillis) {
+        if (tryExecute(command) || isShutdown()) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> executeLater(command, scheduler, retryMillis),
+                    retryMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 关闭中，丢弃
+        }
+    }
+
+    /**
+     * @return 准入失败的次数，包括在调用线程中执行的
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 在调用线程中执行的次数
+     */
+    public long callerRunsCount() {
+        return callerRuns.sum();
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.hikvision.hbfa.sf.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * <h3>后写队列</h3>
+ * <ol>
+ *     <li>{@link #offer(Object)}只是入队，不阻塞；队列满时丢弃并计数</li>
+ *     <li>一个工作线程攒批：达到batchSize或者距批次开始超过flushInterval时整批交给flusher</li>
+ *     <li>flusher在工作线程中执行，抛出的异常只记录日志，这一批丢弃</li>
+ *     <li>{@link #close()}后写完队列中剩余的元素再退出，最多等待{@link #CLOSE_TIMEOUT_MILLIS}</li>
+ * </ol>
+ * 指标（name标签）：taskflow.writer.queued、taskflow.writer.dropped、taskflow.writer.flush
+ */
+@Slf4j
+public class WriteBehindQueue<E> implements AutoCloseable {
+
+    static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+    private final String name;
+    private final BlockingQueue<E> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Consumer<List<E>> flusher;
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * @param name            工作线程名，也是指标的name标签
+     * @param capacity        队列长度
+     * @param batchSize       每批的最大元素数
+     * @param flushIntervalMs 批次的最长等待时间（毫秒）
+     * @param flusher         写一批
+     */
+    public WriteBehindQueue(String name, int capacity, int batchSize, long flushIntervalMs,
+                            Consumer<List<E>> flusher) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("require batchSize>0");
+        }
+        this.name = Objects.requireNonNull(name);
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+        this.flusher = Objects.requireNonNull(flusher);
+
+        MeterUtil.gauge("writer.queued", queue, BlockingQueue::size, "name", name);
+        MeterUtil.functionCounter("writer.dropped", dropped, LongAdder::sum, "name", name);
+
+        this.worker = new TagThreadFactory(name, true).newThread(this::loop);
+        this.worker.start();
+    }
+
+    /**
+     * @return 是否入队，队列满或者已关闭时返回false
+     */
+    public boolean offer(E e) {
+        if (running && queue.offer(e)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            // 不中断工作线程，以免打断正在进行的写入
+            worker.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    //
+
+    private void loop() {
+        var batch = new ArrayList<E>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fill(batch);
+            } catch (InterruptedException e) {
+                log.warn("{} interrupted, {} elements dropped", name, queue.size() + batch.size());
+                return;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 攒一批：满了或者超时
+     */
+    private void fill(List<E> batch) throws InterruptedException {
+        long deadline = 0;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize || !running) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (batch.isEmpty()) {
+                // 第一个元素到达才开始计时
+                var e = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (null != e) {
+                    batch.add(e);
+                    deadline = System.nanoTime() + flushIntervalNanos;
+                }
+                continue;
+            }
+            if (0 == deadline) {
+                deadline = now + flushIntervalNanos;
+            }
+            long remains = deadline - now;
+            if (remains <= 0) {
+                return;
+            }
+            var e = queue.poll(remains, TimeUnit.NANOSECONDS);
+            if (null != e) {
+                batch.add(e);
+            }
+        }
+    }
+
+    private void flush(List<E> batch) {
+        long start = System.nanoTime();
+        try {
+            flusher.accept(batch);
+            MeterUtil.time("writer.flush", start, "name", name, "result", MeterUtil.SUCCESS);
+        } catch (Throwable e) {
+            MeterUtil.time("writer.flush", start, "name", name, "result", MeterUtil.EXCEPTION);
+            log.error("{} flush {} elements error", name, batch.size(), e);
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+--
+-- 任务执行记录
+-- 按天（UTC）分区，分区由应用预先创建，超过task.expire-days的分区整个删除
+--
+create table task_log
+(
+    id            varchar     not null,
+    workflow_id   bigint,
+    workflow_name varchar     not null,
+    success       bool        not null,
+    input         json,
+    output        json,
+    err_msg       varchar,
+    critical_path json,
+    created_at    timestamptz not null,
+    updated_at    timestamptz,
+    primary key (id, created_at)
+) partition by range (created_at);
+
+-- 子任务执行记录，created_at取任务的开始时间，与任务在同一个分区
+create table subtask_log
+(
+    id         varchar     not null,
+    task_id    varchar     not null,
+    node_id    bigint,
+    node_name  varchar     not null,
+    success    bool        not null,
+    output     json,
+    err_msg    varchar,
+    created_at timestamptz not null,
+    updated_at timestamptz,
+    primary key (id, created_at)
+) partition by range (created_at);
+create index on subtask_log (task_id);
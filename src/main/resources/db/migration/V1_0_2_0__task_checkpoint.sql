@@ -0,0 +1,42 @@
+--
+-- 持久化任务的检查点
+-- 工作流durable=true时记录任务启动、节点完成和等待回传的异步子任务，任务结束时删除；
+-- 进程重启后由同一个owner（实例）恢复未结束的任务
+--
+alter table workflow
+    add column durable bool not null default false;
+
+create table task_checkpoint
+(
+    id            varchar primary key,
+    owner         varchar     not null,
+    workflow_name varchar     not null,
+    input         json,
+    started_at    timestamptz not null,
+    deadline      timestamptz not null
+);
+create index on task_checkpoint (owner);
+
+-- 已完成的节点
+create table node_checkpoint
+(
+    task_id    varchar references task_checkpoint (id) on delete cascade,
+    node_name  varchar not null,
+    primary key (task_id, node_name),
+
+    subtask_id varchar not null,
+    success    bool    not null,
+    output     json,
+    err_msg    varchar
+);
+
+-- 调用成功、等待回传的异步子任务
+create table async_checkpoint
+(
+    subtask_id varchar primary key,
+    task_id    varchar     not null references task_checkpoint (id) on delete cascade,
+    node_name  varchar     not null,
+    input      json,
+    deadline   timestamptz not null
+);
+create index on async_checkpoint (task_id);
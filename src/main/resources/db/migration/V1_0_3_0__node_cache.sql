@@ -0,0 +1,5 @@
+--
+-- 节点结果缓存的配置，为空不缓存
+--
+alter table node
+    add column cache_config json;
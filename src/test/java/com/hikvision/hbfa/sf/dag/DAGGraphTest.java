@@ -22,6 +22,37 @@ public class DAGGraphTest {
         new DAGGraph<>(nodes, edges);
     }
 
+    @Test
+    public void testCriticalPath() {
+        var nodes = Set.of(1, 2, 3, 4, 5);
+        var edges = List.of(
+                Map.entry(1, 2),
+                Map.entry(1, 3),
+                Map.entry(2, 4),
+                Map.entry(3, 4),
+                Map.entry(1, 5)
+        );
+        var graph = new DAGGraph<>(nodes, edges);
+        var finish = new long[graph.size()];
+        finish[graph.indexOf(1)] = 10;
+        finish[graph.indexOf(2)] = 15;
+        finish[graph.indexOf(3)] = 30;
+        finish[graph.indexOf(4)] = 35;
+        finish[graph.indexOf(5)] = 20;
+        var path = Arrays.stream(graph.criticalPath(finish))
+                .mapToObj(graph::keyOf).collect(Collectors.toList());
+        // 4最晚完成，它的前驱中3最晚完成
+        Assert.assertEquals(List.of(1, 3, 4), path);
+
+        // 未完成的节点不在路径上
+        finish[graph.indexOf(4)] = 0;
+        path = Arrays.stream(graph.criticalPath(finish))
+                .mapToObj(graph::keyOf).collect(Collectors.toList());
+        Assert.assertEquals(List.of(1, 3), path);
+
+        Assert.assertEquals(0, graph.criticalPath(new long[graph.size()]).length);
+    }
+
     @Test
     public void testIllegal1() {
         var nodes = Set.of(1, 2, 3, 4);
@@ -106,6 +137,32 @@ public class DAGGraphTest {
         Assert.assertTrue(r.prev(1).isEmpty());
     }
 
+    @Test
+    public void testPlan() {
+        var r = randDAG(ThreadLocalRandom.current().nextInt(10, 200));
+        Assert.assertEquals(r.allNodes().size(), r.size());
+        for (int i = 0; i < r.size(); i++) {
+            var key = r.keyOf(i);
+            Assert.assertEquals(i, r.indexOf(key));
+            Assert.assertEquals(r.prev(key).size(), r.inDegrees()[i]);
+            // 拓扑序：前驱下标都更小，后继下标都更大
+            for (int p : r.predecessors(i)) {
+                Assert.assertTrue(p < i);
+                Assert.assertTrue(r.prev(key).contains(r.keyOf(p)));
+            }
+            for (int n : r.successors(i)) {
+                Assert.assertTrue(n > i);
+                Assert.assertTrue(r.next(key).contains(r.keyOf(n)));
+            }
+        }
+        var heads = new HashSet<Integer>();
+        for (int h : r.headIndexes()) {
+            heads.add(r.keyOf(h));
+        }
+        Assert.assertEquals(r.heads(), heads);
+        Assert.assertEquals(-1, r.indexOf(-1));
+    }
+
 
     @Test
     public void testBFS() {
@@ -1,13 +1,18 @@
 package com.hikvision.hbfa.sf.dag;
 
+import com.hikvision.hbfa.sf.util.EventLoopGroup;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.jupiter.api.AfterAll;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.function.BiFunction;
 
 import static com.hikvision.hbfa.sf.dag.DAGTaskTest.TestNode.*;
 
@@ -69,6 +74,143 @@ public class DAGTaskTest {
         System.out.println(sum);
     }
 
+    @Test
+    public void testRandGraph() {
+        var graph = DAGGraphTest.randDAG(ThreadLocalRandom.current().nextInt(10, 500));
+        var times = new ConcurrentHashMap<Integer, Integer>();
+        var task = new DAGTask<Integer, Integer>(graph, (k, results) -> {
+            times.merge(k, 1, Integer::sum);
+            // 前驱必须全部完成
+            Assert.assertEquals(graph.prev(k), results.keySet());
+            return CompletableFuture.supplyAsync(() -> k, EXECUTOR);
+        });
+        task.run();
+        var re = task.join();
+        Assert.assertEquals(graph.allNodes(), re.keySet());
+        for (var e : re.entrySet()) {
+            Assert.assertEquals(e.getKey(), e.getValue());
+            Assert.assertEquals(Integer.valueOf(1), times.get(e.getKey()));
+        }
+    }
+
+    @Test
+    public void testLongSyncChain() {
+        final int size = 100_000;
+        var nodes = new ArrayList<Integer>(size);
+        var edges = new ArrayList<Map.Entry<Integer, Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            nodes.add(i);
+            if (i > 0) edges.add(Map.entry(i - 1, i));
+        }
+        var chain = new DAGGraph<>(nodes, edges);
+        // 同步完成的长链不能递归过深
+        var task = new DAGTask<Integer, Integer>(chain,
+                (k, results) -> CompletableFuture.completedFuture(k));
+        task.run();
+        Assert.assertEquals(size, task.join().size());
+    }
+
+    @Test
+    public void testPinnedExecutor() {
+        var graph = DAGGraphTest.randDAG(200);
+        try (var group = new EventLoopGroup("TestLoop", 4, 1000)) {
+            var loop = group.next();
+            var threads = ConcurrentHashMap.<Thread>newKeySet();
+            var task = new DAGTask<Integer, Integer>(graph, (k, results) -> {
+                // 派发都在事件循环线程中
+                threads.add(Thread.currentThread());
+                return CompletableFuture.supplyAsync(() -> k, EXECUTOR);
+            }, null, null, loop);
+            loop.execute(task);
+            var re = task.join();
+            Assert.assertEquals(graph.allNodes(), re.keySet());
+            Assert.assertEquals(1, threads.size());
+            Assert.assertTrue(threads.iterator().next().getName().startsWith("TestLoop"));
+        }
+    }
+
+    @Test
+    public void testRestore() {
+        BiFunction<TestNode, Map<TestNode, Integer>, CompletableFuture<Integer>> handler =
+                (k, results) -> CompletableFuture.completedFuture(
+                        results.isEmpty() ? 2 : sumDAGResults(results.values()) + 1);
+        var expected = new DAGTask<>(graph, handler);
+        expected.run();
+
+        var dispatched = ConcurrentHashMap.<TestNode>newKeySet();
+        var task = new DAGTask<TestNode, Integer>(graph, (k, results) -> {
+            dispatched.add(k);
+            return handler.apply(k, results);
+        });
+        var completed = Map.of(N1, expected.join().get(N1),
+                N2, expected.join().get(N2),
+                N3, expected.join().get(N3));
+        task.restore(completed);
+        task.run();
+        // 只派发剩余的节点，结果与完整执行一致
+        Assert.assertEquals(Set.of(N4, N5, N6), dispatched);
+        Assert.assertEquals(new HashMap<>(expected.join()), new HashMap<>(task.join()));
+
+        // 全部恢复时直接完成
+        var done = new DAGTask<TestNode, Integer>(graph, (k, results) -> {
+            throw new IllegalStateException("should not dispatch");
+        });
+        done.restore(expected.join());
+        done.run();
+        Assert.assertEquals(6, done.join().size());
+        Assert.assertThrows(IllegalStateException.class, () -> done.restore(Map.of()));
+    }
+
+    @Test
+    public void testTiming() {
+        var task = new DAGTask<TestNode, Integer>(graph, (k, results) -> {
+            // N3最慢，N6比N4晚完成
+            var delay = N3 == k ? 200 : N6 == k ? 100 : 10;
+            return CompletableFuture.supplyAsync(() -> 0,
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, EXECUTOR));
+        });
+        task.run();
+        task.join();
+        for (var k : values()) {
+            Assert.assertTrue(task.readyAt(k) - task.startedAt() >= 0);
+            Assert.assertTrue(task.dispatchedAt(k) - task.readyAt(k) >= 0);
+            Assert.assertTrue(task.completedAt(k) - task.dispatchedAt(k) >= 0);
+        }
+        // N6最晚完成，回溯到N5、N3
+        Assert.assertEquals(List.of(N1, N3, N5, N6), task.criticalPath());
+    }
+
+    @Test
+    public void testPruneResults() {
+        final int size = 1000;
+        var nodes = new ArrayList<Integer>(size);
+        var edges = new ArrayList<Map.Entry<Integer, Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            nodes.add(i);
+            if (i > 0) edges.add(Map.entry(i - 1, i));
+        }
+        // 0同时是最后一个节点的前驱
+        edges.add(Map.entry(0, size - 1));
+        var chain = new DAGGraph<>(nodes, edges);
+        // 负数表示已裁剪
+        var task = new DAGTask<Integer, Integer>(chain, (k, results) -> {
+            for (var v : results.values()) {
+                Assert.assertTrue(v >= 0);
+            }
+            return CompletableFuture.completedFuture(k);
+        }, k -> k == size / 2, v -> -1);
+        task.run();
+        var re = task.join();
+        Assert.assertEquals(size, re.size());
+        for (var e : re.entrySet()) {
+            int expected = e.getKey() == size / 2 ? e.getKey() : -1;
+            Assert.assertEquals(expected, e.getValue().intValue());
+        }
+        // 最多同时保留：0、保留的节点、链上相邻的两个节点
+        Assert.assertTrue(task.maxRetainedResults() <= 4);
+        Assert.assertEquals(1, task.retainedResults());
+    }
+
     @Test
     public void testCancelSubtask() {
         final var executor = CompletableFuture.delayedExecutor(
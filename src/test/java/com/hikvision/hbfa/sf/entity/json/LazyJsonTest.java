@@ -0,0 +1,145 @@
+package com.hikvision.hbfa.sf.entity.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.hikvision.hbfa.sf.util.JsonUtil;
+import com.hikvision.hbfa.sf.util.ParameterUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class LazyJsonTest {
+
+    // 空格和键的顺序用来区分是否原样写出
+    private static final String JSON =
+            "{\"id\": 7, \"user\": {\"name\": \"张三\", \"tags\": [\"a\", {\"k\": 1.5}]}, \"ok\": true, \"none\": null}";
+
+    private static LazyJsonObject parse() {
+        return JsonUtil.fromJson(JSON.getBytes(StandardCharsets.UTF_8), LazyJsonObject.class);
+    }
+
+    @Test
+    public void testRead() {
+        var o = parse();
+        Assert.assertEquals(4, o.size());
+        Assert.assertEquals(7, o.get("id"));
+        Assert.assertEquals(Boolean.TRUE, o.get("ok"));
+        Assert.assertTrue(o.containsKey("none"));
+        Assert.assertTrue(o.get("user") instanceof LazyJsonObject);
+
+        Assert.assertEquals("张三", ParameterUtil.readParam(o, "${user.name}"));
+        Assert.assertEquals(1.5, ParameterUtil.readParam(o, "${user.tags[1].k}"));
+        Assert.assertEquals(List.of("a"), ParameterUtil.readParam(o, "${user.tags[?type(@)=='string']}"));
+        Assert.assertEquals("[\"a\", {\"k\": 1.5}]", ParameterUtil.readParam(o, "${to_string(user.tags)}"));
+        // 和完全解析的结果相等
+        Assert.assertEquals(JsonUtil.fromJson(JSON, Map.class), o);
+    }
+
+    @Test
+    public void testPassThrough() {
+        var o = parse();
+        ParameterUtil.readParam(o, "${user.tags[1].k}");
+        Assert.assertTrue(o.untouched());
+        Assert.assertEquals(JSON, JsonUtil.toJson(o));
+        Assert.assertEquals(JSON, new String(JsonUtil.toJsonBytes(o), StandardCharsets.UTF_8));
+        // 作为其它Map的值
+        Assert.assertEquals("{\"in\":" + JSON + "}", JsonUtil.toJson(Map.of("in", o)));
+    }
+
+    @Test
+    public void testModified() {
+        var o = parse();
+        ((LazyJsonArray) ((Map<?, ?>) o.get("user")).get("tags")).add("b");
+        Assert.assertFalse(o.untouched());
+        // 修改过的重新编码，没有修改的成员仍原样写出
+        o.put("extra", 1);
+        var json = JsonUtil.toJson(o);
+        Assert.assertTrue(json, json.startsWith("{\"id\":7,\"user\":{\"name\":\"张三\",\"tags\":[\"a\",{\"k\": 1.5},\"b\"]}"));
+        Assert.assertTrue(json, json.endsWith("\"extra\":1}"));
+        Assert.assertEquals(3, ((List<?>) ParameterUtil.readParam(JsonUtil.parseJsonMap(json), "${user.tags}")).size());
+
+        var removed = parse();
+        removed.remove("ok");
+        Assert.assertFalse(removed.untouched());
+        Assert.assertFalse(JsonUtil.toJson(removed).contains("ok"));
+    }
+
+    @Test
+    public void testCanonical() {
+        var o = parse();
+        Assert.assertArrayEquals(JsonUtil.toCanonicalJsonBytes(JsonUtil.fromJson(JSON, Map.class)),
+                JsonUtil.toCanonicalJsonBytes(o));
+    }
+
+    @Test
+    public void testDeserializeNested() {
+        var holder = JsonUtil.fromJson("{\"data\": " + JSON + "}", Holder.class);
+        Assert.assertEquals("张三", ParameterUtil.readParam(holder.data, "${user.name}"));
+    }
+
+    @Test
+    public void testTokenBuffer() throws IOException {
+        var mapper = new ObjectMapper();
+        // convertValue经过TokenBuffer
+        Assert.assertEquals(JsonUtil.fromJson(JSON, Map.class), mapper.convertValue(parse(), Map.class));
+        var nested = mapper.convertValue(Map.of("in", parse()), Map.class);
+        Assert.assertEquals(Map.of("in", JsonUtil.fromJson(JSON, Map.class)), nested);
+
+        var buffer = new TokenBuffer(mapper, false);
+        mapper.writeValue(buffer, parse());
+        Assert.assertEquals(JsonUtil.fromJson(JSON, Map.class), mapper.readValue(buffer.asParser(), Map.class));
+    }
+
+    @Test
+    public void testRawQuoted() throws IOException {
+        var bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        var raw = new LazyJson.Raw(bytes, 0, bytes.length);
+        // 作为字符串值写出时转义
+        var quoted = JsonUtil.toJson(JSON);
+        quoted = quoted.substring(1, quoted.length() - 1);
+        var quotedBytes = quoted.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(quoted, new String(raw.asQuotedChars()));
+        Assert.assertArrayEquals(quotedBytes, raw.asQuotedUTF8());
+
+        var buf = new byte[quotedBytes.length + 1];
+        Assert.assertEquals(quotedBytes.length, raw.appendQuotedUTF8(buf, 1));
+        Assert.assertEquals(-1, raw.appendQuotedUTF8(buf, 2));
+        var chars = new char[quoted.length()];
+        Assert.assertEquals(quoted.length(), raw.appendQuoted(chars, 0));
+        Assert.assertEquals(quoted, new String(chars));
+        var out = new ByteArrayOutputStream();
+        Assert.assertEquals(quotedBytes.length, raw.writeQuotedUTF8(out));
+        Assert.assertArrayEquals(quotedBytes, out.toByteArray());
+        Assert.assertEquals(-1, raw.putQuotedUTF8(ByteBuffer.allocate(1)));
+        Assert.assertEquals(quotedBytes.length, raw.putQuotedUTF8(ByteBuffer.allocate(quotedBytes.length)));
+
+        // 作为字符串值写出
+        var sw = new StringWriter();
+        try (var g = new ObjectMapper().getFactory().createGenerator(sw)) {
+            g.writeString(raw);
+        }
+        Assert.assertEquals(JsonUtil.toJson(JSON), sw.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() {
+        JsonUtil.fromJson("{\"a\": [1, }".getBytes(StandardCharsets.UTF_8), LazyJsonObject.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotObject() {
+        JsonUtil.fromJson("[1]".getBytes(StandardCharsets.UTF_8), LazyJsonObject.class);
+    }
+
+    public static class Holder {
+        public LazyJsonObject data;
+    }
+
+}
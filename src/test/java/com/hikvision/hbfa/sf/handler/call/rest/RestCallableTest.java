@@ -0,0 +1,66 @@
+package com.hikvision.hbfa.sf.handler.call.rest;
+
+import com.hikvision.hbfa.sf.entity.enumeration.ResultCode;
+import com.hikvision.hbfa.sf.handler.call.CallResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class RestCallableTest {
+
+    private static RestConfig.Batch batch(String results) {
+        var batch = new RestConfig.Batch();
+        batch.setResults(results);
+        return batch;
+    }
+
+    private static List<ResultCode> codes(List<CallResult> crs) {
+        return crs.stream().map(CallResult::getCode).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSplit() {
+        // 响应就是数组，按位置对应
+        var crs = RestCallable.split(batch(null),
+                Arrays.asList(Map.of("v", 0), null, "x"), 3);
+        Assert.assertEquals(List.of(ResultCode.SUCCESS, ResultCode.SUCCESS, ResultCode.BAD_RESPONSE), codes(crs));
+        Assert.assertEquals(Map.of("v", 0), crs.get(0).getData());
+        Assert.assertNull(crs.get(1).getData());
+
+        // 按results取出数组
+        crs = RestCallable.split(batch("data.items"),
+                Map.of("data", Map.of("items", List.of(Map.of("v", 0), Map.of("v", 1)))), 2);
+        Assert.assertEquals(Map.of("v", 1), crs.get(1).getData());
+    }
+
+    @Test
+    public void testSplitMismatch() {
+        // 个数不对、不是数组时每次调用都失败
+        var crs = RestCallable.split(batch(null), List.of(Map.of()), 2);
+        Assert.assertEquals(List.of(ResultCode.BAD_RESPONSE, ResultCode.BAD_RESPONSE), codes(crs));
+        crs = RestCallable.split(batch("data"), Map.of("data", Map.of()), 1);
+        Assert.assertEquals(List.of(ResultCode.BAD_RESPONSE), codes(crs));
+        crs = RestCallable.split(batch("data[?"), List.of(Map.of()), 1);
+        Assert.assertEquals(List.of(ResultCode.BAD_CONFIG), codes(crs));
+    }
+
+    @Test
+    public void testBatchKeyByUri() {
+        var config = new RestConfig();
+        config.setUri("http://localhost/query");
+        config.setQueries(Map.of("id", "${id}"));
+        config.setBatch(new RestConfig.Batch());
+        var u1 = RestCallable.uriOf(config, Map.of("id", 1));
+        var u2 = RestCallable.uriOf(config, Map.of("id", 2));
+        Assert.assertEquals("http://localhost/query?id=1", u1);
+        // queries读取的输入不同，不在同一批
+        Assert.assertNotEquals(new RestCallable.BatchKey(config, u1), new RestCallable.BatchKey(config, u2));
+        Assert.assertEquals(new RestCallable.BatchKey(config, u1),
+                new RestCallable.BatchKey(config, RestCallable.uriOf(config, Map.of("id", 1))));
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.hikvision.hbfa.sf.handler.dag;
+
+import com.hikvision.hbfa.sf.util.ValueUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+public class SnowflakeGeneratorTest {
+
+    @Test
+    public void testOrdered() {
+        var clock = new AtomicLong(SnowflakeGenerator.EPOCH + 1000);
+        var generator = new SnowflakeGenerator(7, clock::get);
+        long last = -1;
+        String lastString = "";
+        // 同一毫秒内序号用完后借用后面的时间戳
+        for (int i = 0; i < 10000; i++) {
+            long id = generator.nextLong();
+            Assert.assertTrue(id > last);
+            Assert.assertEquals(7, SnowflakeGenerator.nodeOf(id));
+            var s = ValueUtil.toBase62(id);
+            Assert.assertTrue(s.compareTo(lastString) > 0);
+            Assert.assertEquals(id, ValueUtil.fromBase62(s));
+            last = id;
+            lastString = s;
+        }
+        // 时钟回拨时仍然递增
+        clock.addAndGet(-500);
+        Assert.assertTrue(generator.nextLong() > last);
+
+        clock.addAndGet(10_000);
+        long id = generator.nextLong();
+        Assert.assertEquals(clock.get(), SnowflakeGenerator.timeOf(id));
+    }
+
+    @Test
+    public void testConcurrent() {
+        var generator = new SnowflakeGenerator(1);
+        var ids = ConcurrentHashMap.<Long>newKeySet();
+        IntStream.range(0, 100_000).parallel().forEach(i -> ids.add(generator.nextLong()));
+        Assert.assertEquals(100_000, ids.size());
+    }
+
+    @Test
+    public void testBase62() {
+        Assert.assertEquals("00000000000", ValueUtil.toBase62(0));
+        Assert.assertEquals(Long.MAX_VALUE, ValueUtil.fromBase62(ValueUtil.toBase62(Long.MAX_VALUE)));
+        var set = new HashSet<String>();
+        for (long v = 0; v < 1000; v++) {
+            set.add(ValueUtil.toBase62(v));
+        }
+        Assert.assertEquals(1000, set.size());
+        Assert.assertThrows(IllegalArgumentException.class, () -> new SnowflakeGenerator(1024));
+    }
+
+}
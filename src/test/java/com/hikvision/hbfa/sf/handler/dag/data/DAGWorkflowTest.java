@@ -0,0 +1,55 @@
+package com.hikvision.hbfa.sf.handler.dag.data;
+
+import com.hikvision.hbfa.sf.entity.Node;
+import com.hikvision.hbfa.sf.entity.Workflow;
+import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
+import com.hikvision.hbfa.sf.entity.json.ObjectMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class DAGWorkflowTest {
+
+    private static DAGNode node(long id, String name, String defaultValue) {
+        var n = new Node();
+        n.setId(id);
+        n.setName(name);
+        n.setType(NodeType.SCRIPT);
+        var defaultArguments = new ObjectMap();
+        defaultArguments.put("d", defaultValue);
+        n.setDefaultArguments(defaultArguments);
+        return new DAGNode(n);
+    }
+
+    @Test
+    public void testWithNode() {
+        var w = new Workflow();
+        w.setId(1);
+        w.setName("w");
+        var a = node(1, "a", "a1");
+        var b = node(2, "b", "b1");
+        var workflow = new DAGWorkflow(w, List.of(
+                new DAGWorkflow.DAGNodeIo(a, Map.of("x", 1), false),
+                new DAGWorkflow.DAGNodeIo(b, null, true)),
+                List.of(Map.entry("a", "b")));
+        Assert.assertEquals(Map.of("d", "a1", "x", 1), workflow.apply("a").inputParameters());
+
+        // 不包含的节点、同一版本的节点不生成新快照
+        Assert.assertSame(workflow, workflow.withNode(node(3, "c", "c1")));
+        Assert.assertSame(workflow, workflow.withNode(a));
+
+        var a2 = node(1, "a", "a2");
+        var updated = workflow.withNode(a2);
+        Assert.assertTrue(updated.version() > workflow.version());
+        Assert.assertSame(a2, updated.apply("a").node());
+        Assert.assertEquals(Map.of("d", "a2", "x", 1), updated.apply("a").inputParameters());
+        Assert.assertSame(workflow.apply("b"), updated.apply("b"));
+        Assert.assertSame(workflow.graph(), updated.graph());
+        // 旧快照不变
+        Assert.assertSame(a, workflow.apply("a").node());
+        Assert.assertEquals(Map.of("d", "a1", "x", 1), workflow.apply("a").inputParameters());
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.hikvision.hbfa.sf.handler.dag.impl;
+
+import com.hikvision.hbfa.sf.dag.DAGResult;
+import com.hikvision.hbfa.sf.util.ParameterTemplate;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class BatchDAGNodeExecutorTest {
+
+    // 2个成功、2个失败
+    private static List<DAGResult<Map<String, Object>>> mixed() {
+        return Arrays.asList(
+                DAGResult.success(Map.of("v", 0)),
+                DAGResult.error("e1"),
+                DAGResult.success(Map.of("v", 2)),
+                DAGResult.error("e3"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMixedFaultTolerant() {
+        for (var indexed : new boolean[]{false, true}) {
+            var r = BatchDAGNodeExecutor.join(mixed(), indexed, true,
+                    "data", ParameterTemplate.compile(null));
+            Assert.assertTrue("indexed=" + indexed, r.isSuccess());
+            Assert.assertEquals("e1,e3", r.getError());
+            var data = (List<Map<String, Object>>) r.getData().get("data");
+            if (indexed) {
+                Assert.assertEquals(4, data.size());
+                Assert.assertEquals(Map.of("v", 2), data.get(2).get("output"));
+                Assert.assertEquals("e3", data.get(3).get("error"));
+            } else {
+                Assert.assertEquals(List.of(Map.of("v", 0), Map.of("v", 2)), data);
+            }
+        }
+    }
+
+    @Test
+    public void testMixedNotFaultTolerant() {
+        for (var indexed : new boolean[]{false, true}) {
+            var r = BatchDAGNodeExecutor.join(mixed(), indexed, false,
+                    "data", ParameterTemplate.compile(null));
+            Assert.assertFalse("indexed=" + indexed, r.isSuccess());
+            Assert.assertEquals("e1,e3", r.getError());
+        }
+    }
+
+    @Test
+    public void testAllFailed() {
+        for (var indexed : new boolean[]{false, true}) {
+            var r = BatchDAGNodeExecutor.join(
+                    Arrays.asList(DAGResult.error("e0"), null, DAGResult.error("e2")),
+                    indexed, true, "data", ParameterTemplate.compile(null));
+            Assert.assertFalse("indexed=" + indexed, r.isSuccess());
+            Assert.assertEquals("e0,e2", r.getError());
+        }
+    }
+
+}
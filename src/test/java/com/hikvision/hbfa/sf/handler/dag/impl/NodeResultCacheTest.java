@@ -0,0 +1,147 @@
+package com.hikvision.hbfa.sf.handler.dag.impl;
+
+import com.hikvision.hbfa.sf.dag.DAGResult;
+import com.hikvision.hbfa.sf.entity.Node;
+import com.hikvision.hbfa.sf.entity.enumeration.NodeType;
+import com.hikvision.hbfa.sf.entity.json.CacheConfig;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGNode;
+import com.hikvision.hbfa.sf.handler.dag.data.DAGNodeTrace;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NodeResultCacheTest {
+
+    private static DAGNode node(boolean cached, boolean async) {
+        var n = new Node();
+        n.setId(1);
+        n.setName("lookup");
+        n.setType(NodeType.REST);
+        n.setAsync(async);
+        if (cached) {
+            var cc = new CacheConfig();
+            cc.setTtl(60_000);
+            n.setCacheConfig(cc);
+        }
+        return new DAGNode(n);
+    }
+
+    @Test
+    public void testHitAndCoalesce() {
+        var cache = new NodeResultCache();
+        var node = node(true, false);
+        var calls = new AtomicInteger();
+        var pending = new CompletableFuture<DAGResult<Map<String, Object>>>();
+
+        var f1 = cache.get(node, Map.of("a", 1, "b", 2), null, () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        // 键的顺序不同也命中，进行中的调用合并
+        var input = new LinkedHashMap<String, Object>();
+        input.put("b", 2);
+        input.put("a", 1);
+        var f2 = cache.get(node, input, null, () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        Assert.assertEquals(1, calls.get());
+        Assert.assertFalse(f2.isDone());
+
+        pending.complete(DAGResult.success(Map.of("v", "x")));
+        Assert.assertEquals("x", f1.join().getData().get("v"));
+        Assert.assertEquals("x", f2.join().getData().get("v"));
+
+        // 命中时不调用
+        var f3 = cache.get(node, Map.of("a", 1, "b", 2), null, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(DAGResult.error("no"));
+        });
+        Assert.assertEquals(1, calls.get());
+        Assert.assertTrue(f3.join().isSuccess());
+
+        // 不同输入
+        cache.get(node, Map.of("a", 2), null, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(DAGResult.success(Map.of()));
+        }).join();
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(2, cache.size(node));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHitIsolated() {
+        var cache = new NodeResultCache();
+        var node = node(true, false);
+        var pending = new CompletableFuture<DAGResult<Map<String, Object>>>();
+        var output = new HashMap<String, Object>(Map.of("v", "x", "list", List.of(1, 2)));
+
+        var f1 = cache.get(node, Map.of(), null, () -> pending);
+        var trace = new DAGNodeTrace();
+        var f2 = cache.get(node, Map.of(), trace, () -> pending);
+        pending.complete(new DAGResult<>(true, output, "partial"));
+
+        // 调用的任务拿到原始结果，合并的调用拿到新的对象
+        Assert.assertSame(output, f1.join().getData());
+        var r2 = f2.join();
+        Assert.assertNotSame(output, r2.getData());
+        Assert.assertEquals(output, r2.getData());
+        Assert.assertEquals("partial", r2.getError());
+        Assert.assertTrue(trace.cached());
+        Assert.assertTrue(trace.returnedAt() > 0);
+
+        // 修改拿到的结果不影响缓存
+        output.put("v", "y");
+        r2.getData().put("v", "z");
+        ((List<Object>) r2.getData().get("list")).add(3);
+        var r3 = cache.get(node, Map.of(), null, CompletableFuture::new).join();
+        Assert.assertEquals(Map.of("v", "x", "list", List.of(1, 2)), r3.getData());
+        Assert.assertNotSame(r2.getData(), r3.getData());
+    }
+
+    @Test
+    public void testErrorNotCached() {
+        var cache = new NodeResultCache();
+        var node = node(true, false);
+        var calls = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            var r = cache.get(node, Map.of(), null, () -> {
+                calls.incrementAndGet();
+                return CompletableFuture.completedFuture(DAGResult.error("fail"));
+            }).join();
+            Assert.assertFalse(r.isSuccess());
+        }
+        Assert.assertEquals(3, calls.get());
+
+        var failed = cache.get(node, Map.of(), null, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException());
+        });
+        Assert.assertTrue(failed.isCompletedExceptionally());
+        Assert.assertEquals(0, cache.size(node));
+    }
+
+    @Test
+    public void testDisabled() {
+        var cache = new NodeResultCache();
+        var calls = new AtomicInteger();
+        // 未配置、异步节点都不缓存
+        for (var node : new DAGNode[]{node(false, false), node(true, true)}) {
+            for (int i = 0; i < 2; i++) {
+                cache.get(node, Map.of(), null, () -> {
+                    calls.incrementAndGet();
+                    return CompletableFuture.completedFuture(DAGResult.success(Map.of()));
+                }).join();
+            }
+        }
+        Assert.assertEquals(4, calls.get());
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.hikvision.hbfa.sf.handler.script;
+
+import com.hikvision.hbfa.sf.util.ParameterTemplate;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class QLExpressScriptExecutorTest {
+
+    @Test
+    public void testAssignOnConstantInput() {
+        var executor = new QLExpressScriptExecutor();
+        var function = executor.createFunction(
+                "x = a + 1; m = new java.util.HashMap(); m.put(\"y\", x); return m;");
+        // 全常量的模板，节点输入是共享常量的副本
+        var template = ParameterTemplate.compile(Map.of("a", 1));
+        for (int i = 0; i < 2; i++) {
+            var input = template.apply(Map.of());
+            var output = function.apply(input);
+            Assert.assertEquals(2, output.get("y"));
+            Assert.assertEquals(2, input.get("x"));
+        }
+        Assert.assertFalse(template.apply(Map.of()).containsKey("x"));
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.hikvision.hbfa.sf.kafka;
+
+import com.hikvision.hbfa.sf.config.KafkaProperties;
+import com.hikvision.hbfa.sf.config.TaskProperties;
+import com.hikvision.hbfa.sf.handler.dag.BusyException;
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class KafkaPublisherTest {
+
+    @Test
+    public void testProducerProperties() {
+        var base = Map.<String, Object>of(
+                ProducerConfig.CLIENT_ID_CONFIG, "taskflow",
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, "none",
+                ProducerConfig.ACKS_CONFIG, "all");
+        var profile = new TaskProperties.KafkaProducerProfile();
+        profile.setCompressionType("lz4");
+        profile.setLinger(Duration.ofMillis(20));
+        profile.setBatchSize(DataSize.ofKilobytes(64));
+        profile.setProperties(Map.of(ProducerConfig.ACKS_CONFIG, "1"));
+
+        var props = KafkaPublisher.producerProperties(base, "bulk", profile);
+        Assert.assertEquals("taskflow-bulk", props.get(ProducerConfig.CLIENT_ID_CONFIG));
+        Assert.assertEquals("lz4", props.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        Assert.assertEquals("20", props.get(ProducerConfig.LINGER_MS_CONFIG));
+        Assert.assertEquals("65536", props.get(ProducerConfig.BATCH_SIZE_CONFIG));
+        Assert.assertEquals("1", props.get(ProducerConfig.ACKS_CONFIG));
+        Assert.assertEquals("500", props.get(ProducerConfig.MAX_BLOCK_MS_CONFIG));
+        Assert.assertFalse(props.containsKey(ProducerConfig.BUFFER_MEMORY_CONFIG));
+
+        // default不改客户端ID，除了max.block.ms，未配置的沿用spring.kafka.producer
+        var defaults = KafkaPublisher.producerProperties(base, KafkaPublisher.DEFAULT,
+                new TaskProperties.KafkaProducerProfile());
+        var expected = new HashMap<>(base);
+        expected.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, "500");
+        Assert.assertEquals(expected, defaults);
+    }
+
+    private static MockProducer<String, Object> mock() {
+        return new MockProducer<>(false, new StringSerializer(), (topic, data) -> new byte[0]);
+    }
+
+    private static void assertBusy(CompletableFuture<?> future) {
+        // 不阻塞，立即以BusyException结束
+        Assert.assertTrue(future.isCompletedExceptionally());
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof BusyException);
+        }
+    }
+
+    @Test
+    public void testOverLimitRejected() {
+        var profile = new TaskProperties.KafkaProducerProfile();
+        profile.setMaxInFlight(1);
+        profile.setMaxWait(Duration.ZERO);
+        var mock = mock();
+        var publisher = new KafkaPublisher(new KafkaProperties(),
+                Map.of(KafkaPublisher.DEFAULT, profile), props -> mock);
+
+        var first = publisher.send(null, "topic", "k", Map.of(), null);
+        Assert.assertFalse(first.isDone());
+        assertBusy(publisher.send(null, "topic", "k", Map.of(), null));
+        // 不带生产者名的旧接口不受上限限制
+        var legacy = publisher.send("topic", Map.of());
+        Assert.assertFalse(legacy.isDone());
+
+        Assert.assertTrue(mock.completeNext());
+        Assert.assertTrue(first.join().hasOffset());
+        var next = publisher.send(null, "topic", "k", Map.of(), null);
+        Assert.assertFalse(next.isCompletedExceptionally());
+        // 被拒绝的没有发出
+        Assert.assertEquals(3, mock.history().size());
+    }
+
+    @Test
+    public void testBufferExhaustedBusy() {
+        var mock = mock();
+        var publisher = new KafkaPublisher(new KafkaProperties(), Map.of(), props -> mock);
+        // 发出后的超时可能已经写入，不按过载重试
+        var future = publisher.send(null, "topic", null, Map.of(), null);
+        Assert.assertTrue(mock.errorNext(new TimeoutException("delivery timeout")));
+        Assert.assertTrue(future.isCompletedExceptionally());
+        try {
+            future.join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof TimeoutException);
+        }
+
+        // send中缓冲区满
+        mock.sendException = new BufferExhaustedException("full");
+        assertBusy(publisher.send(null, "topic", null, Map.of(), null));
+        assertBusy(publisher.send("topic", Map.of()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProducer() {
+        var publisher = new KafkaPublisher(new KafkaProperties(), Map.of());
+        publisher.send("missing", "topic", null, Map.of(), null);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.hikvision.hbfa.sf.kafka;
+
+import com.hikvision.hbfa.sf.entity.json.LazyJson;
+import com.hikvision.hbfa.sf.entity.json.LazyJsonObject;
+import com.hikvision.hbfa.sf.util.JsonUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class KafkaSubscriptionTest {
+
+    @Test
+    public void testLazyJsonDeserializer() {
+        var deserializer = KafkaSubscription.valueDeserializer(LazyJsonObject.class);
+        Assert.assertTrue(deserializer instanceof LazyJsonDeserializer);
+        Assert.assertNull(deserializer.deserialize("topic", null));
+
+        var json = "{\"a\": [1, {\"b\": 2}]}";
+        var o = deserializer.deserialize("topic", json.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(Map.of("a", List.of(1, Map.of("b", 2))), o);
+        // 原样写出
+        Assert.assertEquals(json, LazyJson.rawText(o));
+        Assert.assertEquals(json, JsonUtil.toJson(o));
+
+        Assert.assertTrue(KafkaSubscription.valueDeserializer(Map.class) instanceof JsonDeserializer);
+    }
+
+    @Test
+    public void testPartitionProgress() {
+        var p = new KafkaSubscription.PartitionProgress();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 5; i++) {
+            var f = new CompletableFuture<Void>();
+            futures.add(f);
+            p.add(100 + i, f);
+        }
+        Assert.assertEquals(0, p.advance());
+        Assert.assertEquals(-1, p.uncommitted());
+
+        // 后面的先完成，不能越过未完成的记录
+        futures.get(1).complete(null);
+        futures.get(3).complete(null);
+        Assert.assertEquals(0, p.advance());
+        Assert.assertEquals(-1, p.uncommitted());
+
+        futures.get(0).complete(null);
+        Assert.assertEquals(2, p.advance());
+        Assert.assertEquals(102, p.uncommitted());
+        // 已提交过的不再返回
+        Assert.assertEquals(-1, p.uncommitted());
+        Assert.assertEquals(3, p.size());
+
+        // 失败的记录也算完成
+        futures.get(2).completeExceptionally(new IllegalStateException());
+        futures.get(4).complete(null);
+        Assert.assertEquals(3, p.advance());
+        Assert.assertEquals(105, p.uncommitted());
+        Assert.assertEquals(0, p.size());
+    }
+
+}
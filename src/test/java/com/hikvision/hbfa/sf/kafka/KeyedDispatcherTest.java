@@ -0,0 +1,84 @@
+package com.hikvision.hbfa.sf.kafka;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KeyedDispatcherTest {
+
+    @Test
+    public void testOrderAndConcurrency() {
+        int keys = 16, perKey = 50, concurrency = 4;
+        var dispatcher = new KeyedDispatcher(concurrency);
+        var executor = Executors.newFixedThreadPool(8);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var orders = new ConcurrentHashMap<Integer, List<Integer>>();
+
+        var futures = new ArrayList<CompletableFuture<Object>>();
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                int key = k, seq = i;
+                futures.add(dispatcher.submit(key, () -> CompletableFuture.runAsync(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(500));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    orders.computeIfAbsent(key, x -> new CopyOnWriteArrayList<>()).add(seq);
+                    running.decrementAndGet();
+                }, executor)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        executor.shutdown();
+
+        Assert.assertTrue(maxRunning.get() <= concurrency);
+        Assert.assertEquals(keys, orders.size());
+        for (var e : orders.entrySet()) {
+            var seq = e.getValue();
+            Assert.assertEquals(perKey, seq.size());
+            for (int i = 0; i < perKey; i++) {
+                Assert.assertEquals(i, seq.get(i).intValue());
+            }
+        }
+        Assert.assertEquals(0, dispatcher.size());
+    }
+
+    @Test
+    public void testSyncAndError() {
+        var dispatcher = new KeyedDispatcher(1);
+        var gate = new CompletableFuture<Void>();
+        var blocked = dispatcher.submit("a", () -> gate);
+        // 同步完成的长队列不应该递归
+        var futures = new ArrayList<CompletableFuture<Object>>();
+        for (int i = 0; i < 100_000; i++) {
+            int v = i;
+            futures.add(dispatcher.submit(i % 2 == 0 ? "a" : "b",
+                    () -> CompletableFuture.completedFuture(v)));
+        }
+        var failed = dispatcher.submit("b", () -> {
+            throw new IllegalStateException();
+        });
+        Assert.assertFalse(futures.get(0).isDone());
+
+        gate.complete(null);
+        Assert.assertTrue(blocked.isDone());
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals(i, futures.get(i).join());
+        }
+        Assert.assertTrue(failed.isCompletedExceptionally());
+        Assert.assertEquals(0, dispatcher.size());
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testFixed() {
+        var limiter = new ConcurrencyLimiter(ConcurrencyLimiter.Mode.FIXED, 1, 2, 0);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.saturated());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertFalse(limiter.acquire(0).join());
+        Assert.assertEquals(2, limiter.rejectedCount());
+
+        limiter.release(1000, false);
+        Assert.assertFalse(limiter.saturated());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        var limiter = new ConcurrencyLimiter(ConcurrencyLimiter.Mode.FIXED, 1, 1, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+        var waiter = limiter.acquire(5000);
+        Assert.assertFalse(waiter.isDone());
+        Assert.assertEquals(1, limiter.queued());
+        // 排队已满
+        Assert.assertFalse(limiter.acquire(5000).join());
+
+        // 释放时转交给等待者
+        limiter.release(1000, false);
+        Assert.assertTrue(waiter.get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(1, limiter.inFlight());
+        Assert.assertEquals(0, limiter.queued());
+
+        // 等待超时
+        var timeout = limiter.acquire(50);
+        Assert.assertFalse(timeout.get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, limiter.queued());
+        limiter.cancel();
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testAimd() {
+        var limiter = new ConcurrencyLimiter(ConcurrencyLimiter.Mode.AIMD, 1, 100, 0);
+        int initial = limiter.limit();
+        // 用满时加性增长
+        for (int i = 0; i < 10; i++) {
+            while (limiter.tryAcquire()) ;
+            limiter.release(1000, false);
+        }
+        Assert.assertTrue(limiter.limit() > initial);
+        int grown = limiter.limit();
+        // 丢弃时乘性减小
+        Assert.assertTrue(limiter.tryAcquire());
+        limiter.release(1000, true);
+        Assert.assertTrue(limiter.limit() < grown);
+        // 耗时远超平均也减小
+        int before = limiter.limit();
+        limiter.release(1000 * 10, false);
+        Assert.assertTrue(limiter.inFlight() >= 0);
+        Assert.assertTrue(limiter.limit() < before);
+    }
+
+    @Test
+    public void testGradient() {
+        var limiter = new ConcurrencyLimiter(ConcurrencyLimiter.Mode.GRADIENT, 5, 100, 0);
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(1_000_000, false);
+        }
+        // 耗时稳定时增长到上界
+        Assert.assertEquals(100, limiter.limit());
+        // 耗时变长时收缩，不低于下界
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(100_000_000L * (i + 2), false);
+        }
+        Assert.assertTrue(limiter.limit() < 100);
+        Assert.assertTrue(limiter.limit() >= 5);
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventLoopGroupTest {
+
+    @Test
+    public void testOrderAndThread() throws InterruptedException {
+        try (var group = new EventLoopGroup("TestLoop", 4, 100_000)) {
+            var loop = group.next();
+            final int size = 10_000;
+            var seq = Collections.synchronizedList(new ArrayList<Integer>(size));
+            var threads = Collections.synchronizedSet(new HashSet<Thread>());
+            var done = new CountDownLatch(size);
+            for (int i = 0; i < size; i++) {
+                int n = i;
+                loop.execute(() -> {
+                    seq.add(n);
+                    if (loop.inLoop()) threads.add(Thread.currentThread());
+                    done.countDown();
+                });
+            }
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            // 同一个循环：按提交顺序、在同一个线程中执行
+            Assert.assertEquals(1, threads.size());
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(i, seq.get(i).intValue());
+            }
+            Assert.assertEquals(0, loop.pending());
+        }
+    }
+
+    @Test
+    public void testAdmission() throws InterruptedException {
+        try (var group = new EventLoopGroup("TestLoop", 1, 2)) {
+            var loop = group.next();
+            var block = new CountDownLatch(1);
+            var started = new CountDownLatch(1);
+            loop.execute(() -> {
+                started.countDown();
+                try {
+                    block.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 阻塞期间积压到上限后拒绝，execute不受限
+            Assert.assertTrue(loop.tryExecute(() -> {
+            }));
+            Assert.assertTrue(loop.tryExecute(() -> {
+            }));
+            Assert.assertFalse(loop.tryExecute(() -> {
+            }));
+            loop.execute(() -> {
+            });
+            Assert.assertEquals(3, group.pending());
+            Assert.assertEquals(1, group.rejectedCount());
+
+            var done = new CountDownLatch(1);
+            loop.execute(done::countDown);
+            block.countDown();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(loop.tryExecute(() -> {
+            }));
+        }
+    }
+
+    @Test
+    public void testWorkerPool() throws InterruptedException {
+        var pool = new WorkerPool("TestWorker", 1, 1);
+        try {
+            var block = new CountDownLatch(1);
+            Runnable blocking = () -> {
+                try {
+                    block.await();
+                } catch (InterruptedException ignored) {
+                }
+            };
+            Assert.assertTrue(pool.tryExecute(blocking));
+            Assert.assertTrue(pool.tryExecute(blocking));
+            // 线程和队列都满了
+            Assert.assertFalse(pool.tryExecute(blocking));
+            // execute在调用线程中执行
+            List<Thread> ran = new ArrayList<>();
+            pool.execute(() -> ran.add(Thread.currentThread()));
+            Assert.assertEquals(List.of(Thread.currentThread()), ran);
+            Assert.assertEquals(2, pool.rejectedCount());
+            Assert.assertEquals(1, pool.callerRunsCount());
+            block.countDown();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -4,7 +4,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.time.Instant;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class ExpiringCacheTest {
 
@@ -58,5 +62,52 @@ public class ExpiringCacheTest {
         }
     }
 
+    @Test
+    public void testExpiredListener() throws InterruptedException {
+        int n = 1000;
+        var expired = ConcurrentHashMap.<String>newKeySet();
+        var latch = new CountDownLatch(n / 2);
+        var cache = new ExpiringCache<String, Object>(100, entries -> {
+            for (var e : entries) {
+                Assert.assertEquals(e.getKey(), e.getValue());
+                expired.add(e.getKey());
+                latch.countDown();
+            }
+        });
+        var kept = new HashSet<String>();
+        for (int i = 0; i < n; i++) {
+            var key = ValueUtil.newUUID();
+            cache.put(key, key, 0);
+            // 删掉一半，不应再通知
+            if (i % 2 == 0) {
+                Assert.assertEquals(key, cache.del(key));
+            } else {
+                kept.add(key);
+            }
+        }
+        Assert.assertEquals(n / 2, cache.size());
+        Assert.assertEquals(n / 2, cache.maxSize());
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(kept, expired);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(n / 2, cache.expiredCount());
+        cache.close();
+    }
+
+    @Test
+    public void testOverwrite() throws InterruptedException {
+        var expired = new CountDownLatch(1);
+        var cache = new ExpiringCache<String, Object>(Integer.MAX_VALUE,
+                entries -> expired.countDown());
+        var key = ValueUtil.newUUID();
+        var ef = cache.set(key, 1, 50);
+        // 覆盖后旧值的过期事件取消，新值不受影响
+        cache.set(key, 2, Integer.MAX_VALUE);
+        Assert.assertTrue(ef.isCancelled());
+        Assert.assertFalse(expired.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, cache.get(key));
+        cache.close();
+    }
 
 }
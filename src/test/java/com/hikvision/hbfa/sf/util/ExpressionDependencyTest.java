@@ -0,0 +1,63 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ExpressionDependencyTest {
+
+    @Test
+    public void testRootKeys() {
+        Assert.assertEquals(Set.of("task"), ExpressionDependency.rootKeys("task.input.device.id"));
+        Assert.assertEquals(Set.of("detect"), ExpressionDependency.rootKeys("detect.output.targets[?score > `0.5`].{id: id, label: label}"));
+        Assert.assertEquals(Set.of("detect"), ExpressionDependency.rootKeys("join(',', detect.output.targets[*].label)"));
+        Assert.assertEquals(Set.of("id", "name"), ExpressionDependency.rootKeys("{id: id, name: name} | json(@)"));
+        Assert.assertEquals(Set.of("a", "b"), ExpressionDependency.rootKeys("[a, 'x', b]"));
+        Assert.assertEquals(Set.of("a", "b"), ExpressionDependency.rootKeys("a.x > b.y && !a.z"));
+        Assert.assertEquals(Set.of("list"), ExpressionDependency.rootKeys("sort_by(list, &age)[0].name"));
+        Assert.assertEquals(Set.of(), ExpressionDependency.rootKeys("`{\"a\": 1}`"));
+        Assert.assertEquals(Set.of("submit"), ExpressionDependency.rootKeys("def(submit.rest, 'none')"));
+
+        // 读取整个根对象
+        Assert.assertNull(ExpressionDependency.rootKeys("@"));
+        Assert.assertNull(ExpressionDependency.rootKeys("keys(@)"));
+        Assert.assertNull(ExpressionDependency.rootKeys("*.output"));
+        Assert.assertNull(ExpressionDependency.rootKeys("values(@)[0]"));
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> ExpressionDependency.rootKeys("a[}"));
+    }
+
+    @Test
+    public void testRestrictedArguments() {
+        var arguments = Map.<String, Object>of(
+                "a", Map.of("x", 3, "z", false, "list", List.of(1, 2)),
+                "b", Map.of("y", 2),
+                "list", List.of(Map.of("age", 3, "name", "c"), Map.of("age", 1, "name", "d")),
+                "id", 7,
+                "name", "n"
+        );
+        var paths = List.of(
+                "a.x > b.y && !a.z",
+                "sort_by(list, &age)[0].name",
+                "{id: id, sum: sum(a.list)}",
+                "a.list[?@ > `1`] | [0]",
+                "[a.x, b.y] | max(@)"
+        );
+        for (var path : paths) {
+            var keys = ExpressionDependency.rootKeys(path);
+            Assert.assertNotNull(path, keys);
+            var restricted = new HashMap<String, Object>();
+            for (var k : keys) {
+                restricted.put(k, arguments.get(k));
+            }
+            Assert.assertEquals(path,
+                    ParameterUtil.readParamByNudeJsonpath(arguments, path),
+                    ParameterUtil.readParamByNudeJsonpath(restricted, path));
+        }
+    }
+
+}
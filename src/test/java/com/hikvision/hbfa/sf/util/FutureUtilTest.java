@@ -0,0 +1,112 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FutureUtilTest {
+
+    @Test
+    public void testCollect() {
+        final int size = 100;
+        var futures = new ArrayList<CompletableFuture<Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        var result = FutureUtil.collect(futures);
+        // 倒序完成，结果仍按下标排列
+        for (int i = size - 1; i >= 0; i--) {
+            Assert.assertFalse(result.isDone());
+            futures.get(i).complete(i);
+        }
+        var list = result.join();
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(i, list.get(i).intValue());
+        }
+        Assert.assertTrue(FutureUtil.collect(List.<CompletableFuture<Integer>>of()).join().isEmpty());
+
+        var failed = FutureUtil.collect(List.of(new CompletableFuture<Integer>(),
+                CompletableFuture.<Integer>failedFuture(new IllegalStateException())));
+        Assert.assertTrue(failed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testWindow() {
+        final int size = 200;
+        final int concurrency = 8;
+        var executor = CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS);
+        var active = new AtomicInteger();
+        var maxActive = new AtomicInteger();
+        var results = FutureUtil.<Integer>window(size, concurrency, i -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                active.decrementAndGet();
+                return i;
+            }, executor);
+        }, null).join();
+
+        Assert.assertTrue(maxActive.get() <= concurrency);
+        Assert.assertEquals(size, results.size());
+        for (int i = 0; i < size; i++) {
+            // 结果按下标排列
+            Assert.assertEquals(i, results.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testWindowSync() {
+        // 同步完成的任务不能递归过深
+        final int size = 100_000;
+        var results = FutureUtil.<Integer>window(size, 1,
+                CompletableFuture::completedFuture, null).join();
+        Assert.assertEquals(size, results.size());
+        Assert.assertTrue(FutureUtil.<Integer>window(0, 1,
+                CompletableFuture::completedFuture, null).join().isEmpty());
+    }
+
+    @Test
+    public void testWindowAbort() {
+        var pending = new ArrayList<CompletableFuture<Integer>>();
+        var started = new AtomicInteger();
+        var future = FutureUtil.<Integer>window(100, 4, i -> {
+            started.incrementAndGet();
+            if (i == 2) {
+                return CompletableFuture.completedFuture(-1);
+            }
+            var f = new CompletableFuture<Integer>();
+            pending.add(f);
+            return f;
+        }, r -> r < 0);
+
+        // 中止后取消未完成的，不再开始新任务
+        List<Integer> results = future.join();
+        Assert.assertEquals(3, started.get());
+        Assert.assertEquals(-1, results.get(2).intValue());
+        Assert.assertNull(results.get(0));
+        Assert.assertNull(results.get(3));
+        for (var f : pending) {
+            Assert.assertTrue(f.isCancelled());
+        }
+    }
+
+    @Test
+    public void testWindowError() {
+        var future = FutureUtil.<Integer>window(10, 2, i -> {
+            if (i == 5) throw new IllegalStateException("error");
+            return CompletableFuture.completedFuture(i);
+        }, null);
+        try {
+            future.join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+public class MappedJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return null == b ? null : new String(b, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        var dir = folder.newFolder().toPath();
+        var journal = new MappedJournal(dir, 4096);
+        journal.put("a", bytes("1"));
+        journal.put("b", bytes("2"));
+        journal.put("a", bytes("3"));
+        Assert.assertEquals("3", string(journal.get("a")));
+        Assert.assertEquals("2", string(journal.get("b")));
+        Assert.assertTrue(journal.remove("b"));
+        Assert.assertFalse(journal.remove("b"));
+        Assert.assertNull(journal.get("b"));
+        Assert.assertEquals(1, journal.size());
+        journal.close();
+
+        // 重放恢复
+        var reopened = new MappedJournal(dir, 4096);
+        Assert.assertEquals(1, reopened.size());
+        Assert.assertEquals("3", string(reopened.get("a")));
+        Assert.assertFalse(reopened.containsKey("b"));
+        reopened.close();
+    }
+
+    @Test
+    public void testSegments() throws Exception {
+        var dir = folder.newFolder().toPath();
+        var journal = new MappedJournal(dir, 1024);
+        var value = new byte[100];
+        // 写满多个段
+        for (int i = 0; i < 100; i++) {
+            journal.put("k" + i, value);
+        }
+        Assert.assertTrue(journal.segmentCount() > 5);
+        // 只保留最后一个，老的段删除或者搬走
+        for (int i = 0; i < 99; i++) {
+            journal.remove("k" + i);
+        }
+        for (int i = 0; i < 20; i++) {
+            journal.put("n" + i, value);
+            journal.remove("n" + i);
+        }
+        Assert.assertEquals(1, journal.size());
+        Assert.assertTrue(journal.segmentCount() <= 2);
+        journal.close();
+
+        var reopened = new MappedJournal(dir, 1024);
+        var all = new HashMap<String, byte[]>();
+        reopened.forEach(all::put);
+        Assert.assertEquals(1, all.size());
+        Assert.assertArrayEquals(value, all.get("k99"));
+        reopened.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLarge() throws Exception {
+        var journal = new MappedJournal(folder.newFolder().toPath(), 128);
+        journal.put("a", new byte[200]);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class MicroBatcherTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private CompletableFuture<List<String>> flush(List<Integer> values) {
+        batches.add(List.copyOf(values));
+        return CompletableFuture.completedFuture(
+                values.stream().map(v -> "r" + v).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testMaxSize() {
+        // 等待时间很长，只有满了才发出
+        var batcher = new MicroBatcher<Integer, String>(3, 60_000, this::flush, scheduler);
+        var f1 = batcher.submit(1);
+        var f2 = batcher.submit(2);
+        Assert.assertFalse(f1.isDone());
+        Assert.assertEquals(2, batcher.pendingSize());
+        var f3 = batcher.submit(3);
+        Assert.assertEquals("r1", f1.join());
+        Assert.assertEquals("r2", f2.join());
+        Assert.assertEquals("r3", f3.join());
+        Assert.assertEquals(List.of(List.of(1, 2, 3)), batches);
+        Assert.assertEquals(0, batcher.pendingSize());
+    }
+
+    @Test
+    public void testLinger() throws Exception {
+        var batcher = new MicroBatcher<Integer, String>(100, 20, this::flush, scheduler);
+        var f1 = batcher.submit(1);
+        var f2 = batcher.submit(2);
+        Assert.assertEquals("r2", f2.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("r1", f1.join());
+        Assert.assertEquals(List.of(List.of(1, 2)), batches);
+
+        // 新的一批
+        Assert.assertEquals("r3", batcher.submit(3).get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void testFailure() {
+        var batcher = new MicroBatcher<Integer, String>(2, 60_000,
+                values -> CompletableFuture.completedFuture(List.of("only-one")), scheduler);
+        var f1 = batcher.submit(1);
+        var f2 = batcher.submit(2);
+        Assert.assertTrue(f1.isCompletedExceptionally());
+        Assert.assertTrue(f2.isCompletedExceptionally());
+
+        var throwing = new MicroBatcher<Integer, String>(1, 0, values -> {
+            throw new IllegalStateException("down");
+        }, scheduler);
+        Assert.assertTrue(throwing.submit(1).isCompletedExceptionally());
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+public class NamedRegistryTest {
+
+    private static NamedRegistry<Map.Entry<String, Long>> registry() {
+        return new NamedRegistry<>(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    @Test
+    public void testPutGet() {
+        var registry = registry();
+        Assert.assertNull(registry.getByName("a"));
+        Assert.assertNull(registry.put(Map.entry("a", 1L)));
+        Assert.assertEquals(1L, registry.getByName("a").getValue().longValue());
+        Assert.assertEquals("a", registry.getById(1L).getKey());
+        Assert.assertEquals("a", registry.getByKey(1L).getKey());
+        Assert.assertEquals("a", registry.getByKey("a").getKey());
+        Assert.assertNull(registry.getByKey(null));
+        Assert.assertEquals(1, registry.size());
+
+        // 替换后旧ID失效
+        Assert.assertEquals(1L, registry.put(Map.entry("a", 2L)).getValue().longValue());
+        Assert.assertNull(registry.getById(1L));
+        Assert.assertEquals("a", registry.getById(2L).getKey());
+        Assert.assertEquals(1, registry.size());
+
+        Assert.assertNotNull(registry.remove("a"));
+        Assert.assertNull(registry.remove("a"));
+        Assert.assertNull(registry.getByName("a"));
+        Assert.assertNull(registry.getById(2L));
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testForEachReplace() {
+        var registry = registry();
+        for (long i = 0; i < 100; i++) {
+            registry.put(Map.entry("n" + i, i));
+        }
+        // 回调中替换
+        registry.forEach(e -> registry.put(Map.entry(e.getKey(), e.getValue() + 1000)));
+        var seen = new ArrayList<Long>();
+        registry.forEach(e -> seen.add(e.getValue()));
+        Assert.assertEquals(100, seen.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i + 1000L, registry.getByName("n" + i).getValue().longValue());
+            Assert.assertEquals("n" + i, registry.getById(i + 1000L).getKey());
+        }
+    }
+
+}
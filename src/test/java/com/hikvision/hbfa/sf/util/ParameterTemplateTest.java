@@ -0,0 +1,103 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ParameterTemplateTest {
+
+    static final Map<String, Object> arguments = Map.of(
+            "id", 1234,
+            "name", "jjj",
+            "book", Map.of("id", 554, "tags", List.of("a", "b")),
+            "list", List.of(1, 2, 3)
+    );
+
+    @Test
+    public void testSameAsReplaceAll() {
+        var nullValue = new HashMap<String, Object>();
+        nullValue.put("x", null);
+        nullValue.put("y", "${id}");
+        var parameters = Map.of(
+                "userid", "${id}",
+                "username", "${name}",
+                "short", "${}",
+                "text", "hello",
+                "tags", "${join('-', book.tags)}",
+                "nested", Map.of("book", "${book}", "c", Map.of("k", 1)),
+                "list", List.of("${list[0]}", "const", List.of("${name}")),
+                "array", new Object[]{"${id}", 1},
+                "empty", Map.of(),
+                "nullValue", nullValue
+        );
+        var template = ParameterTemplate.compile(parameters);
+        Assert.assertFalse(template.isConstant());
+
+        var expected = ParameterUtil.replaceAllParams(parameters, arguments);
+        var actual = template.apply(arguments);
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(Map.of("y", 1234), actual.get("nullValue"));
+        Assert.assertEquals(Arrays.asList(1234, 1), actual.get("array"));
+    }
+
+    @Test
+    public void testConstantShared() {
+        var parameters = Map.<String, Object>of(
+                "id", "${id}",
+                "const", Map.of("a", List.of(1, 2), "b", "text")
+        );
+        var template = ParameterTemplate.compile(parameters);
+        var r1 = template.apply(arguments);
+        var r2 = template.apply(arguments);
+        Assert.assertNotSame(r1, r2);
+        Assert.assertSame(r1.get("const"), r2.get("const"));
+        Assert.assertEquals(parameters.get("const"), r1.get("const"));
+        Assert.assertThrows(UnsupportedOperationException.class,
+                () -> ((Map<?, ?>) r1.get("const")).clear());
+
+        var constant = ParameterTemplate.compile(Map.of("a", 1, "n", Map.of("b", 2)));
+        Assert.assertTrue(constant.isConstant());
+        var c1 = constant.apply(arguments);
+        var c2 = constant.apply(Map.of());
+        Assert.assertEquals(c1, c2);
+        Assert.assertSame(c1.get("n"), c2.get("n"));
+        // 第一层每次是新的可修改的Map，脚本节点会写入变量
+        Assert.assertNotSame(c1, c2);
+        c1.put("x", 1);
+        Assert.assertFalse(c2.containsKey("x"));
+        Assert.assertNull(ParameterTemplate.compile(Map.of()).apply(arguments).put("x", 1));
+    }
+
+    @Test
+    public void testNullAndError() {
+        Assert.assertSame(arguments, ParameterTemplate.compile(null).apply(arguments));
+        Assert.assertEquals(Map.of(), ParameterTemplate.compile(Map.of()).apply(arguments));
+
+        // 表达式错误在执行时抛出
+        var template = ParameterTemplate.compile(Map.of("bad", "${id[}"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> template.apply(arguments));
+    }
+
+    @Test
+    public void testReferences() {
+        var template = ParameterTemplate.compile(Map.of(
+                "id", "${id}",
+                "device", "${task.input.device}",
+                "nested", List.of(Map.of("url", "${detect.output.url}"))
+        ));
+        Assert.assertTrue(template.references("id"));
+        Assert.assertTrue(template.references("task"));
+        Assert.assertTrue(template.references("detect"));
+        Assert.assertFalse(template.references("submit"));
+        Assert.assertFalse(template.references("other"));
+
+        Assert.assertFalse(ParameterTemplate.compile(Map.of("a", 1)).references("task"));
+        Assert.assertTrue(ParameterTemplate.compile(Map.of("all", "${@}")).references("task"));
+        Assert.assertTrue(ParameterTemplate.compile(null).references("task"));
+    }
+
+}
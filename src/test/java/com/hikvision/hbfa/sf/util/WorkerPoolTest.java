@@ -0,0 +1,49 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class WorkerPoolTest {
+
+    @Test
+    public void testExecuteLater() throws InterruptedException {
+        var pool = new WorkerPool("TestPool", 1, 1);
+        var scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            // 占满线程和队列
+            var block = new CountDownLatch(1);
+            pool.execute(() -> {
+                try {
+                    block.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            pool.execute(() -> {
+            });
+
+            var ran = new CountDownLatch(1);
+            var thread = new AtomicReference<Thread>();
+            pool.executeLater(() -> {
+                thread.set(Thread.currentThread());
+                ran.countDown();
+            }, scheduler, 10);
+            // 被拒绝后没有在调用线程中执行
+            Assert.assertEquals(1, ran.getCount());
+            Assert.assertEquals(0, pool.callerRunsCount());
+            Assert.assertTrue(pool.rejectedCount() > 0);
+
+            block.countDown();
+            Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(thread.get().getName(), thread.get().getName().contains("TestPool"));
+        } finally {
+            scheduler.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+}
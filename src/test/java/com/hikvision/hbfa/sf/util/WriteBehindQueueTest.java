@@ -0,0 +1,76 @@
+package com.hikvision.hbfa.sf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindQueueTest {
+
+    @Test
+    public void testBatch() throws Exception {
+        var batches = new CopyOnWriteArrayList<List<Integer>>();
+        var latch = new CountDownLatch(1);
+        try (var queue = new WriteBehindQueue<Integer>("test-batch", 100, 3, 10_000, b -> {
+            batches.add(new ArrayList<>(b));
+            latch.countDown();
+        })) {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(queue.offer(i));
+            }
+            // 满一批立即写，不等flushInterval
+            Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+            Assert.assertEquals(List.of(List.of(0, 1, 2)), batches);
+        }
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        var batches = new CopyOnWriteArrayList<List<Integer>>();
+        var latch = new CountDownLatch(1);
+        try (var queue = new WriteBehindQueue<Integer>("test-interval", 100, 100, 50, b -> {
+            batches.add(new ArrayList<>(b));
+            latch.countDown();
+        })) {
+            queue.offer(1);
+            queue.offer(2);
+            Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+            Assert.assertEquals(List.of(List.of(1, 2)), batches);
+        }
+    }
+
+    @Test
+    public void testDropAndClose() throws Exception {
+        var written = new CopyOnWriteArrayList<Integer>();
+        var blocked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var queue = new WriteBehindQueue<Integer>("test-drop", 2, 1, 10, b -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.addAll(b);
+        });
+        // 第一个被工作线程取走并阻塞在写入
+        queue.offer(0);
+        Assert.assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(queue.offer(1));
+        Assert.assertTrue(queue.offer(2));
+        // 队列已满
+        Assert.assertFalse(queue.offer(3));
+        Assert.assertEquals(1, queue.droppedCount());
+
+        release.countDown();
+        // 关闭时写完剩余的
+        queue.close();
+        Assert.assertEquals(List.of(0, 1, 2), written);
+        Assert.assertFalse(queue.offer(4));
+    }
+
+}